@@ -0,0 +1,101 @@
+package com.apkbuilder.pro;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+
+/**
+ * An API call that reached the server but got an unexpected HTTP status.
+ * Keeps the status code so callers can tell a transient server error
+ * (worth retrying later) from a permanent one (bad token, missing repo).
+ */
+public class ApiException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+    private final long retryAfterMillis;
+
+    public ApiException(int statusCode, String message) {
+        this(statusCode, message, -1);
+    }
+
+    /**
+     * @param retryAfterMillis How long the server asked us to wait before trying again, or -1.
+     */
+    public ApiException(int statusCode, String message, long retryAfterMillis) {
+        super(message);
+        this.statusCode = statusCode;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * The wait the server asked for (Retry-After, Telegram's retry_after), or -1 if it named none.
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    public boolean isServerError() {
+        return statusCode >= 500;
+    }
+
+    public boolean isRateLimited() {
+        return statusCode == 429;
+    }
+
+    /**
+     * Formats how long until something is available again, e.g. "45 s" or "12 min",
+     * for error messages. Relative, so it reads right in any time zone.
+     */
+    static String formatWait(long millis) {
+        long seconds = Math.max(1, (millis + 999) / 1000);
+        return seconds < 120 ? seconds + " s" : (seconds + 59) / 60 + " min";
+    }
+
+    /**
+     * True for failures that say nothing about the request itself: no network,
+     * timeouts, rate limiting and 5xx responses. Follows the cause chain, since callers
+     * may wrap the original exception.
+     */
+    public static boolean isTransient(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof ApiException) {
+                ApiException api = (ApiException) t;
+                return api.isServerError() || api.isRateLimited();
+            }
+            if (t instanceof UnknownHostException || t instanceof ConnectException
+                    || t instanceof NoRouteToHostException || t instanceof SocketTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * True for transient failures that prove the server never acted on the request: it was
+     * never reached (no network, connection refused, circuit open), or it refused with 429.
+     * A timeout or 5xx is transient too, but the server may have acted before failing, so
+     * resending a non-idempotent request after one risks doing it twice.
+     */
+    public static boolean isSafeToResend(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof CircuitOpenException) {
+                return true;
+            }
+            if (t instanceof ApiException) {
+                return ((ApiException) t).isRateLimited();
+            }
+            if (t instanceof UnknownHostException || t instanceof ConnectException
+                    || t instanceof NoRouteToHostException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,233 @@
+package com.apkbuilder.pro;
+
+import okio.ByteString;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Successful builds, addressed by everything that decides what the APK contains: the
+ * repository and commit that were built, the build type, and a hash of the workflow
+ * that built them. When a new build's key is already here there is nothing new to
+ * produce, so the app links the earlier run instead of dispatching another one.
+ *
+ * The index is a JSON file in least-recently-used order, rewritten atomically (temp
+ * file, sync, rename) when entries are added or evicted. Lookups only reorder it in
+ * memory; that order is written with the next change, or by a lookup once a minute
+ * has passed since the last write. It is bounded by entry count and by size on
+ * disk; the least recently used entries are evicted first. Entries older than
+ * GitHub's default run retention are treated as misses, since their run page is gone.
+ */
+public class BuildCache {
+
+    /**
+     * One cached build: where its run lives and what it built.
+     */
+    public static final class Entry {
+        private final String key;
+        private final String repo;
+        private final String headSha;
+        private final String buildType;
+        private final String runId;
+        private final int runNumber;
+        private final String htmlUrl;
+        private final long builtAtMillis;
+
+        public Entry(String key, String repo, String headSha, String buildType, String runId, int runNumber,
+                     String htmlUrl, long builtAtMillis) {
+            this.key = key;
+            this.repo = repo;
+            this.headSha = headSha;
+            this.buildType = buildType;
+            this.runId = runId;
+            this.runNumber = runNumber;
+            this.htmlUrl = htmlUrl;
+            this.builtAtMillis = builtAtMillis;
+        }
+
+        public String getKey() { return key; }
+        public String getRepo() { return repo; }
+        public String getHeadSha() { return headSha; }
+        public String getBuildType() { return buildType; }
+        public String getRunId() { return runId; }
+        public int getRunNumber() { return runNumber; }
+        public String getHtmlUrl() { return htmlUrl; }
+        public long getBuiltAtMillis() { return builtAtMillis; }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("key", key);
+            json.put("repo", repo);
+            json.put("headSha", headSha);
+            json.put("buildType", buildType);
+            json.put("runId", runId);
+            json.put("runNumber", runNumber);
+            json.put("htmlUrl", htmlUrl);
+            json.put("builtAt", builtAtMillis);
+            return json;
+        }
+
+        static Entry fromJson(JSONObject json) throws JSONException {
+            return new Entry(json.getString("key"), json.optString("repo"), json.optString("headSha"),
+                    json.optString("buildType"), json.optString("runId"), json.optInt("runNumber"),
+                    json.optString("htmlUrl", null), json.optLong("builtAt"));
+        }
+    }
+
+    private static final String INDEX_NAME = "build-cache.json";
+    private static final int DEFAULT_MAX_ENTRIES = 500;
+    private static final long DEFAULT_MAX_BYTES = 256 * 1024;
+    // GitHub keeps workflow runs (logs, page) for 90 days by default
+    private static final long MAX_AGE_MILLIS = 90L * 24 * 60 * 60_000L;
+    // Losing recent LRU moves in a crash only ages those entries early; not worth a write per lookup
+    private static final long FLUSH_INTERVAL_MILLIS = 60_000L;
+
+    private final File index;
+    private final int maxEntries;
+    private final long maxBytes;
+
+    // Guarded by this. Access order: eldest (least recently used) first
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Integer> entryBytes = new HashMap<>();
+    private long totalBytes;
+    private boolean loaded;
+    // When the index file last matched memory; lookups write again only after FLUSH_INTERVAL_MILLIS
+    private long savedAtMillis;
+
+    public BuildCache(File directory) {
+        this(directory, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param directory  Where the index lives, normally {@code Context.getFilesDir()}.
+     * @param maxEntries Entries kept at most.
+     * @param maxBytes   Size the index file may grow to.
+     */
+    public BuildCache(File directory, int maxEntries, long maxBytes) {
+        this.index = new File(directory, INDEX_NAME);
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Hex SHA-256 of the workflow file content.
+     */
+    public static String workflowHash(String workflowContent) {
+        return ByteString.encodeUtf8(workflowContent).sha256().hex();
+    }
+
+    /**
+     * Cache key: a digest of repository, commit, build type and workflow hash.
+     */
+    public static String keyOf(String repoFullName, String headSha, String buildType, String workflowHash) {
+        return ByteString.encodeUtf8(repoFullName + "\n" + headSha + "\n" + buildType + "\n" + workflowHash)
+                .sha256().hex();
+    }
+
+    /**
+     * Looks up a build and marks it as recently used.
+     * @return The cached build, or null on a miss (never built, evicted or expired).
+     */
+    public synchronized Entry get(String key) throws IOException {
+        ensureLoaded();
+        Entry entry = entries.get(key);
+        if (entry == null) return null;
+        long now = System.currentTimeMillis();
+        if (now - entry.builtAtMillis > MAX_AGE_MILLIS) {
+            remove(key);
+            entry = null;
+        }
+        if (now - savedAtMillis >= FLUSH_INTERVAL_MILLIS) {
+            save(); // the new LRU position, or the removal
+        }
+        return entry;
+    }
+
+    /**
+     * Records a successful build, replacing any entry with the same key, then evicts down to the bounds.
+     */
+    public synchronized void put(Entry entry) throws IOException {
+        ensureLoaded();
+        remove(entry.key);
+        int size;
+        try {
+            size = entry.toJson().toString().length() + 1; // plus the separator
+        } catch (JSONException e) {
+            throw new IOException("Error serialising build cache entry: " + e.getMessage());
+        }
+        entries.put(entry.key, entry);
+        entryBytes.put(entry.key, size);
+        totalBytes += size;
+        evict();
+        save();
+    }
+
+    public synchronized int size() throws IOException {
+        ensureLoaded();
+        return entries.size();
+    }
+
+    // Must hold the lock
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (eldest.hasNext() && entries.size() > 1 && (entries.size() > maxEntries || totalBytes + 2 > maxBytes)) {
+            String key = eldest.next().getKey();
+            eldest.remove();
+            Integer size = entryBytes.remove(key);
+            if (size != null) totalBytes -= size;
+        }
+    }
+
+    private void remove(String key) {
+        if (entries.remove(key) == null) return;
+        Integer size = entryBytes.remove(key);
+        if (size != null) totalBytes -= size;
+    }
+
+    // Must hold the lock
+    private void ensureLoaded() throws IOException {
+        if (loaded) return;
+        loaded = true;
+        savedAtMillis = System.currentTimeMillis();
+
+        try {
+            JSONArray array = JsonFileStore.readArray(index);
+            if (array == null) return;
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject json = array.getJSONObject(i);
+                Entry entry = Entry.fromJson(json);
+                int size = json.toString().length() + 1;
+                entries.put(entry.key, entry);
+                entryBytes.put(entry.key, size);
+                totalBytes += size;
+            }
+        } catch (JSONException e) {
+            // A damaged index only costs rebuilds; start over rather than fail every build
+            entries.clear();
+            entryBytes.clear();
+            totalBytes = 0;
+        }
+        evict(); // the bounds may have shrunk since it was written
+    }
+
+    // Must hold the lock
+    private void save() throws IOException {
+        JSONArray array = new JSONArray();
+        try {
+            for (Entry entry : entries.values()) {
+                array.put(entry.toJson());
+            }
+        } catch (JSONException e) {
+            throw new IOException("Error serialising build cache: " + e.getMessage());
+        }
+
+        JsonFileStore.writeAtomically(index, array);
+        savedAtMillis = System.currentTimeMillis();
+    }
+}
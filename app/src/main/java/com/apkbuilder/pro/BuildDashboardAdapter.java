@@ -0,0 +1,149 @@
+package com.apkbuilder.pro;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recycled list of tracked builds. Rows are immutable; {@link #applyUpdates(Map)}
+ * only notifies rows whose content actually changed, and status-only changes are
+ * bound through a payload so the title is not re-set.
+ */
+public class BuildDashboardAdapter extends RecyclerView.Adapter<BuildDashboardAdapter.ViewHolder> {
+
+    private static final Object PAYLOAD_STATUS = new Object();
+
+    public interface OnCancelListener {
+        void onCancel(String rowKey);
+    }
+
+    /**
+     * One dashboard line: "owner/repo · variant" plus its current status text.
+     */
+    public static final class Row {
+        final String key;
+        final String title;
+        final String status;
+        final boolean active;
+
+        public Row(String key, String title, String status, boolean active) {
+            this.key = key;
+            this.title = title;
+            this.status = status;
+            this.active = active;
+        }
+
+        boolean sameContent(Row other) {
+            return title.equals(other.title) && status.equals(other.status) && active == other.active;
+        }
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView titleText;
+        final TextView statusText;
+        final View cancelButton;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            titleText = itemView.findViewById(R.id.buildTitleText);
+            statusText = itemView.findViewById(R.id.buildStatusText);
+            cancelButton = itemView.findViewById(R.id.buildCancelBtn);
+        }
+    }
+
+    private final List<Row> rows = new ArrayList<>();
+    private final Map<String, Integer> positions = new HashMap<>();
+    private final OnCancelListener cancelListener;
+
+    public BuildDashboardAdapter(OnCancelListener cancelListener) {
+        this.cancelListener = cancelListener;
+    }
+
+    /**
+     * Applies a batch of row updates keyed by row key; a null row removes that key's row.
+     * Must run on the main thread.
+     */
+    public void applyUpdates(Map<String, Row> batch) {
+        for (Map.Entry<String, Row> entry : batch.entrySet()) {
+            Row row = entry.getValue();
+            if (row == null) {
+                remove(entry.getKey());
+                continue;
+            }
+            Integer position = positions.get(row.key);
+            if (position == null) {
+                positions.put(row.key, rows.size());
+                rows.add(row);
+                notifyItemInserted(rows.size() - 1);
+                continue;
+            }
+
+            Row old = rows.get(position);
+            if (old.sameContent(row)) continue;
+            rows.set(position, row);
+            if (old.title.equals(row.title)) {
+                notifyItemChanged(position, PAYLOAD_STATUS);
+            } else {
+                notifyItemChanged(position);
+            }
+        }
+    }
+
+    private void remove(String key) {
+        Integer position = positions.remove(key);
+        if (position == null) return;
+        rows.remove((int) position);
+        for (int i = position; i < rows.size(); i++) {
+            positions.put(rows.get(i).key, i);
+        }
+        notifyItemRemoved(position);
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_build, parent, false);
+        ViewHolder holder = new ViewHolder(view);
+        holder.cancelButton.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) {
+                cancelListener.onCancel(rows.get(position).key);
+            }
+        });
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        Row row = rows.get(position);
+        holder.titleText.setText(row.title);
+        bindStatus(holder, row);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.contains(PAYLOAD_STATUS)) {
+            bindStatus(holder, rows.get(position));
+        } else {
+            onBindViewHolder(holder, position);
+        }
+    }
+
+    private void bindStatus(ViewHolder holder, Row row) {
+        holder.statusText.setText(row.status);
+        holder.itemView.setAlpha(row.active ? 1f : 0.6f);
+        holder.cancelButton.setVisibility(row.active ? View.VISIBLE : View.GONE);
+    }
+
+    @Override
+    public int getItemCount() {
+        return rows.size();
+    }
+}
@@ -0,0 +1,334 @@
+package com.apkbuilder.pro;
+
+import com.apkbuilder.pro.models.BuildStage;
+import com.apkbuilder.pro.models.RunSnapshot;
+import com.apkbuilder.pro.models.RunStatus;
+import com.apkbuilder.pro.models.RunTransition;
+import com.apkbuilder.pro.models.StepTiming;
+import com.apkbuilder.pro.models.WorkflowFile;
+import com.apkbuilder.pro.models.WorkflowResponse;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * What a build does against GitHub and Telegram, without the UI: the pre-flight stage
+ * graph up to the dispatch, then one poll at a time of the dispatched run.
+ * {@code MainActivity} drives it for real builds and the load scenario for simulated ones;
+ * showing progress, notifying Telegram and queueing is left to the caller.
+ * Safe to use for many builds at once.
+ */
+public class BuildPipeline {
+
+    public interface Listener {
+        /**
+         * A pre-flight stage is starting. Throwing stops the build (e.g. it was cancelled).
+         */
+        void onStageStarted(TrackedBuild build, BuildStage stage);
+
+        /**
+         * SETUP_WORKFLOW committed the workflow file, moving the branch head.
+         */
+        void onWorkflowCommitted(TrackedBuild build);
+    }
+
+    /**
+     * Outcome of {@link #dispatch}: the pre-flight timings, and the cached build found
+     * instead of dispatching, if any.
+     */
+    public static final class Dispatch {
+        private final Map<BuildStage, Long> timings;
+        private final BuildCache.Entry cachedBuild;
+
+        Dispatch(Map<BuildStage, Long> timings, BuildCache.Entry cachedBuild) {
+            this.timings = timings;
+            this.cachedBuild = cachedBuild;
+        }
+
+        public Map<BuildStage, Long> getTimings() { return timings; }
+        public BuildCache.Entry getCachedBuild() { return cachedBuild; }
+    }
+
+    /**
+     * A poll that found something new: the run as it is now and how it changed.
+     */
+    public static final class RunUpdate {
+        private final WorkflowResponse response;
+        private final RunTransition transition;
+
+        RunUpdate(WorkflowResponse response, RunTransition transition) {
+            this.response = response;
+            this.transition = transition;
+        }
+
+        public WorkflowResponse getResponse() { return response; }
+        public RunTransition getTransition() { return transition; }
+    }
+
+    // How long a dispatch of unknown outcome has to show up as a run before it counts as lost
+    private static final long DEFAULT_DISPATCH_CONFIRM_MILLIS = 2 * 60_000L;
+    // Steps take a second call per poll; refresh them on this slower cadence while a run is in progress
+    private static final long DEFAULT_STEP_REFRESH_MILLIS = 30_000L;
+
+    private final GitHubService gitHub;
+    private final TelegramService telegram;
+    private final TokenPool tokenPool;
+    private final BuildCache buildCache;
+    private final ExecutorService stagePool;
+    private final Listener listener;
+    // Runs already matched to a build, so two dispatches of one repo never claim the same run
+    private final Set<String> claimedRunIds = Collections.synchronizedSet(new HashSet<String>());
+    private volatile long dispatchConfirmMillis = DEFAULT_DISPATCH_CONFIRM_MILLIS;
+    private volatile long stepRefreshMillis = DEFAULT_STEP_REFRESH_MILLIS;
+
+    public BuildPipeline(GitHubService gitHub, TelegramService telegram, TokenPool tokenPool,
+                         BuildCache buildCache, ExecutorService stagePool, Listener listener) {
+        this.gitHub = gitHub;
+        this.telegram = telegram;
+        this.tokenPool = tokenPool;
+        this.buildCache = buildCache;
+        this.stagePool = stagePool;
+        this.listener = listener;
+    }
+
+    /**
+     * How long polls wait for the run of an unconfirmed dispatch before {@link #isDispatchLost}.
+     */
+    public BuildPipeline setDispatchConfirmMillis(long millis) {
+        this.dispatchConfirmMillis = millis;
+        return this;
+    }
+
+    /**
+     * How long polls of an in-progress run reuse its last known step before fetching the steps again.
+     */
+    public BuildPipeline setStepRefreshMillis(long millis) {
+        this.stepRefreshMillis = millis;
+        return this;
+    }
+
+    /**
+     * Runs the pre-flight graph and dispatches the build, unless the build cache shows the
+     * commit was already built. Blocks until done; stages run concurrently on the stage pool.
+     * A dispatch that failed after possibly reaching GitHub is not a failure: the build is
+     * marked unconfirmed and returned like a sent one (see {@link #isDispatchLost}).
+     * @throws Exception The first stage failure; the build was not dispatched, so a
+     *         transient failure may be retried by dispatching again.
+     */
+    public Dispatch dispatch(final TrackedBuild build) throws Exception {
+        final String owner = build.getRepoOwner();
+        final String repo = build.getRepoName();
+        final String workflowContent = WorkflowYamlGenerator.generate(build.getBotToken(), build.getChatId());
+        build.setWorkflowHash(BuildCache.workflowHash(workflowContent));
+        // Written by CHECKING_WORKFLOW, read by SETUP_WORKFLOW (ordered by the graph)
+        final WorkflowFile[] committedWorkflow = new WorkflowFile[1];
+        // Set by SETUP_WORKFLOW if it made a commit, so the branch head is new and cannot be cached
+        final boolean[] workflowCommitted = new boolean[1];
+        // Set by TRIGGER_BUILD on a cache hit instead of dispatching
+        final BuildCache.Entry[] cachedBuild = new BuildCache.Entry[1];
+
+        // Independent checks run concurrently; SETUP and TRIGGER wait for what they need
+        Map<BuildStage, Long> timings = new StageGraph()
+                .setListener(stage -> listener.onStageStarted(build, stage))
+                // A failed stage stops the rest; their calls are the build's own (see gitHubFor)
+                .setCanceller(() -> HttpClients.cancelCalls(build.getId()))
+                .add(BuildStage.VERIFYING_ACCESS, () -> {
+                    // A token that can't see the repo is marked in the pool; try the next one
+                    int attempts = TokenPool.parse(build.getGithubToken()).size();
+                    for (int i = 0; i < attempts; i++) {
+                        if (gitHubFor(build).verifyRepositoryAccess(owner, repo, tokenFor(build))) return;
+                    }
+                    throw new Exception("Repository access failed. Check token permissions (repo scope).");
+                })
+                .add(BuildStage.CHECKING_WORKFLOW, () ->
+                        committedWorkflow[0] = gitHubFor(build).getWorkflowFile(owner, repo, tokenFor(build)))
+                .add(BuildStage.TESTING_TELEGRAM, () -> {
+                    try {
+                        if (!telegram.forOwner(build.getId()).checkBot(build.getBotToken())) {
+                            throw new Exception("Telegram bot token was rejected. Check your bot token.");
+                        }
+                    } catch (IOException e) {
+                        if (!ApiException.isTransient(e)) throw e;
+                        // A 429 or network blip says nothing about the token, and the build's
+                        // messages retry on their own: don't hold the dispatch for Telegram
+                    }
+                })
+                .add(BuildStage.SETUP_WORKFLOW, () -> {
+                    WorkflowFile current = committedWorkflow[0];
+                    if (current != null && current.matches(workflowContent)) {
+                        return; // Already up to date: skip the commit
+                    }
+                    try {
+                        gitHubFor(build).createWorkflowFile(owner, repo, tokenFor(build), workflowContent,
+                                current != null ? current.getSha() : null);
+                    } catch (ApiException e) {
+                        if (e.getStatusCode() != 409 && e.getStatusCode() != 422) throw e;
+                        // Another build of the repo committed since CHECKING_WORKFLOW. Usually it
+                        // wrote this same file; if not, commit over its version once
+                        WorkflowFile latest = gitHubFor(build).getWorkflowFile(owner, repo, tokenFor(build));
+                        if (latest == null || !latest.matches(workflowContent)) {
+                            gitHubFor(build).createWorkflowFile(owner, repo, tokenFor(build), workflowContent,
+                                    latest != null ? latest.getSha() : null);
+                        }
+                    }
+                    workflowCommitted[0] = true;
+                    listener.onWorkflowCommitted(build);
+                }, BuildStage.VERIFYING_ACCESS, BuildStage.CHECKING_WORKFLOW)
+                .add(BuildStage.TRIGGER_BUILD, () -> {
+                    if (!workflowCommitted[0]) {
+                        cachedBuild[0] = findCachedBuild(build);
+                        if (cachedBuild[0] != null) return;
+                    }
+                    build.setDispatchedAtMillis(System.currentTimeMillis());
+                    build.setDispatchId(UUID.randomUUID().toString());
+                    build.setDispatchUnconfirmed(false);
+                    try {
+                        gitHubFor(build).dispatchWorkflow(owner, repo, tokenFor(build), build.getBuildType(),
+                                build.getDispatchId());
+                    } catch (IOException e) {
+                        // Not sent (caller may queue and resend it), or rejected: fail as usual
+                        if (ApiException.isSafeToResend(e) || !ApiException.isTransient(e)) throw e;
+                        // A timeout or 5xx after GitHub may have accepted it: resending could start
+                        // a second run, so follow it as sent until polling shows otherwise
+                        build.setDispatchUnconfirmed(true);
+                    }
+                }, BuildStage.SETUP_WORKFLOW, BuildStage.TESTING_TELEGRAM)
+                .run(stagePool);
+        return new Dispatch(timings, cachedBuild[0]);
+    }
+
+    /**
+     * Polls a dispatched build's run once: matches the dispatch to its run first, then
+     * follows that run by ID, including the step it is on while it runs. A successful
+     * run is remembered in the build cache.
+     * @return The update to show, or null if there is none: the run does not exist yet,
+     *         or it did not change and the build was not recovering from poll failures.
+     */
+    public RunUpdate poll(TrackedBuild build) throws IOException {
+        WorkflowResponse response;
+        if (build.getRunId().isEmpty()) {
+            response = findRun(build);
+            if (response == null) {
+                return null; // GitHub has not created the run yet; try again next tick
+            }
+        } else {
+            response = gitHubFor(build).getWorkflowRunById(build.getRepoOwner(), build.getRepoName(),
+                    tokenFor(build), build.getRunId());
+        }
+
+        // After an outage the row still shows the warning; refresh it even without a transition
+        boolean recovered = build.resetPollFailures() > 0;
+        RunTransition transition = RunTransition.between(build.getLastSnapshot(), snapshotOf(build, response));
+        if (!transition.hasChanges() && !recovered) {
+            return null; // Same run, same state: skip formatting and the UI/Telegram round trip
+        }
+        build.setLastSnapshot(transition.getCurrent());
+        if (response.isSuccessful()) rememberBuild(build, response);
+        return new RunUpdate(response, transition);
+    }
+
+    /**
+     * The run's snapshot plus, while it is running, its current step. Steps are only on the
+     * jobs endpoint, a second call, so they are fetched when the run starts and then at most
+     * once per step refresh interval; polls in between, and a failed fetch, keep the last
+     * known step rather than report a change.
+     */
+    private RunSnapshot snapshotOf(TrackedBuild build, WorkflowResponse response) {
+        RunSnapshot snapshot = response.toSnapshot();
+        if (snapshot.getStatus() != RunStatus.IN_PROGRESS) {
+            return snapshot;
+        }
+        RunSnapshot last = build.getLastSnapshot();
+        String lastStep = last != null ? last.getCurrentStep() : null;
+        long now = System.currentTimeMillis();
+        boolean started = last == null || last.getRunId() != snapshot.getRunId()
+                || last.getStatus() != RunStatus.IN_PROGRESS;
+        if (!started && now - build.getStepsCheckedAtMillis() < stepRefreshMillis) {
+            return snapshot.withCurrentStep(lastStep);
+        }
+        try {
+            StepTiming step = StepTiming.currentStep(gitHubFor(build).getRunSteps(build.getRepoOwner(), build.getRepoName(),
+                    tokenFor(build), response.getRunId()));
+            build.setStepsCheckedAtMillis(now);
+            return snapshot.withCurrentStep(step != null ? step.getQualifiedName() : null);
+        } catch (IOException e) {
+            return snapshot.withCurrentStep(lastStep);
+        }
+    }
+
+    /**
+     * Whether a dispatch whose outcome was unknown evidently never reached GitHub: polls
+     * found no run for it within the confirm window (two minutes by default). Only then is it safe to
+     * send again; check it after {@link #poll} returned null.
+     */
+    public boolean isDispatchLost(TrackedBuild build) {
+        return build.isDispatchUnconfirmed() && build.getRunId().isEmpty()
+                && System.currentTimeMillis() - build.getDispatchedAtMillis() > dispatchConfirmMillis;
+    }
+
+    /**
+     * Matches a dispatched build to its run and claims the run for it.
+     * @return The run, or null if GitHub has not created it yet.
+     */
+    public WorkflowResponse findRun(TrackedBuild build) throws IOException {
+        Set<String> claimed;
+        synchronized (claimedRunIds) {
+            claimed = new HashSet<>(claimedRunIds);
+        }
+        WorkflowResponse run = gitHubFor(build).findDispatchedRun(build.getRepoOwner(), build.getRepoName(),
+                tokenFor(build), build.getDispatchedAtMillis(), build.getDispatchId(), claimed);
+        if (run == null || !claimedRunIds.add(run.getRunId())) {
+            return null; // none yet, or another build of this repo claimed it meanwhile
+        }
+        build.setRunId(run.getRunId());
+        return run;
+    }
+
+    /**
+     * GitHub calls made for this build, so cancelling it can abort them (see {@link HttpClients#cancelCalls}).
+     */
+    public GitHubService gitHubFor(TrackedBuild build) {
+        return gitHub.forOwner(build.getId());
+    }
+
+    /**
+     * The build's token (from the comma-separated input) with the most quota left that can see its repo.
+     */
+    public String tokenFor(TrackedBuild build) throws ApiException {
+        return tokenPool.select(build.getRepoOwner(), build.getRepoName(), TokenPool.parse(build.getGithubToken()));
+    }
+
+    /**
+     * Looks the branch head up in the build cache. Any error just means a miss: the cache
+     * must never be the reason a build does not run.
+     */
+    private BuildCache.Entry findCachedBuild(TrackedBuild build) {
+        try {
+            String headSha = gitHubFor(build).getBranchHeadSha(build.getRepoOwner(), build.getRepoName(),
+                    tokenFor(build), build.getBranch());
+            return buildCache.get(BuildCache.keyOf(build.getFullName(), headSha,
+                    build.getBuildType(), build.getWorkflowHash()));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Remembers a successful run under the commit it actually built. Best effort, like the lookup.
+     */
+    private void rememberBuild(TrackedBuild build, WorkflowResponse response) {
+        if (response.getHeadSha() == null || build.getWorkflowHash() == null) return;
+        try {
+            buildCache.put(new BuildCache.Entry(
+                    BuildCache.keyOf(build.getFullName(), response.getHeadSha(), build.getBuildType(), build.getWorkflowHash()),
+                    build.getFullName(), response.getHeadSha(), build.getBuildType(), response.getRunId(),
+                    response.getRunNumber(), response.getHtmlUrl(), System.currentTimeMillis()));
+        } catch (IOException e) {
+            // The next build of this commit just dispatches again
+        }
+    }
+}
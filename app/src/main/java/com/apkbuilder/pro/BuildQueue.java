@@ -0,0 +1,322 @@
+package com.apkbuilder.pro;
+
+import com.apkbuilder.pro.models.BuildRequest;
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Durable queue of build requests that could not be dispatched yet (device offline, GitHub 5xx).
+ *
+ * Every change is first appended to a journal file and synced to disk, and only then
+ * applied in memory, so a queued request survives the process being killed. The journal
+ * is a sequence of JSON lines: {@code add} records a request, {@code done} removes it.
+ * Requests for the same repo, branch and variant collapse to the newest one.
+ * The requests include their tokens, so the journal is excluded from backups
+ * (res/xml/backup_rules.xml and data_extraction_rules.xml).
+ *
+ * {@link #drain(Dispatcher, Listener)} sends the queue in batches with a bounded number
+ * of dispatches in flight, and stops at the first transient failure (the connection is
+ * probably gone again) so the remaining requests stay queued for the next attempt.
+ */
+public class BuildQueue {
+
+    public interface Dispatcher {
+        /**
+         * Throws a transient failure (see {@link ApiException#isTransient}) only if the
+         * request can be sent again: a dispatch that may have reached GitHub must not be
+         * reported as failed, or the next drain would start a second run.
+         */
+        void dispatch(Entry entry) throws Exception;
+    }
+
+    public interface Listener {
+        void onDispatched(Entry entry);
+        void onDropped(Entry entry, Exception error);
+    }
+
+    /**
+     * One queued request. The sequence number tells a request apart from a newer one for the same key.
+     */
+    public static final class Entry {
+        private final long seq;
+        private final BuildRequest request;
+
+        Entry(long seq, BuildRequest request) {
+            this.seq = seq;
+            this.request = request;
+        }
+
+        public long getSeq() { return seq; }
+        public BuildRequest getRequest() { return request; }
+    }
+
+    private static final String JOURNAL_NAME = "build-queue.journal";
+    // Rewrite the journal once it holds this many records more than there are pending entries
+    private static final int COMPACT_SLACK = 64;
+
+    private final File journal;
+    private final int batchSize;
+    private final ThreadPoolExecutor pool;
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    // Guarded by this
+    private final Map<String, Entry> pending = new LinkedHashMap<>();
+    private long lastSeq;
+    private int journalRecords;
+    private boolean loaded;
+
+    /**
+     * @param directory   Where the journal lives, normally {@code Context.getFilesDir()}.
+     * @param batchSize   Requests taken from the queue per batch.
+     * @param parallelism Maximum dispatches in flight at once.
+     */
+    public BuildQueue(File directory, int batchSize, int parallelism) {
+        this.journal = new File(directory, JOURNAL_NAME);
+        this.batchSize = batchSize;
+        this.pool = new ThreadPoolExecutor(parallelism, parallelism, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        // Idle between drains: let the threads go
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Persists a request. A pending request with the same key is replaced.
+     * @return The sequence number of the new entry.
+     */
+    public synchronized long enqueue(BuildRequest request) throws IOException {
+        ensureLoaded();
+        long seq = lastSeq + 1;
+        JSONObject record = new JSONObject();
+        try {
+            record.put("op", "add");
+            record.put("seq", seq);
+            record.put("request", request.toJson());
+        } catch (JSONException e) {
+            throw new IOException("Error serialising build request: " + e.getMessage());
+        }
+        append(record.toString() + "\n");
+
+        lastSeq = seq;
+        // Re-insert so the newest request for a key also moves to the back of the queue
+        pending.remove(request.getKey());
+        pending.put(request.getKey(), new Entry(seq, request));
+        return seq;
+    }
+
+    /**
+     * Removes the entry for {@code key} if it is still the one with sequence number {@code seq}.
+     */
+    public synchronized boolean remove(String key, long seq) throws IOException {
+        ensureLoaded();
+        Entry entry = pending.get(key);
+        if (entry == null || entry.seq != seq) return false;
+        List<Entry> done = new ArrayList<>(1);
+        done.add(entry);
+        complete(done);
+        return true;
+    }
+
+    /**
+     * Pending entries, oldest first.
+     */
+    public synchronized List<Entry> snapshot() throws IOException {
+        ensureLoaded();
+        return new ArrayList<>(pending.values());
+    }
+
+    public synchronized int size() throws IOException {
+        ensureLoaded();
+        return pending.size();
+    }
+
+    /**
+     * Dispatches every pending entry. Blocks until the queue is empty or a transient
+     * failure stops the drain; returns immediately if another drain is already running.
+     * Entries that fail permanently are dropped and reported to the listener.
+     * @return False if a transient failure left entries in the queue.
+     */
+    public boolean drain(Dispatcher dispatcher, Listener listener) throws IOException {
+        if (!draining.compareAndSet(false, true)) return true;
+        try {
+            // Entries enqueued while draining are picked up by the next pass
+            Set<Long> attempted = new HashSet<>();
+            while (true) {
+                List<Entry> batch = nextBatch(attempted);
+                if (batch.isEmpty()) return true;
+                if (!dispatchBatch(batch, dispatcher, listener)) return false;
+            }
+        } finally {
+            draining.set(false);
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private synchronized List<Entry> nextBatch(Set<Long> attempted) throws IOException {
+        ensureLoaded();
+        List<Entry> batch = new ArrayList<>(batchSize);
+        for (Entry entry : pending.values()) {
+            if (batch.size() == batchSize) break;
+            if (attempted.add(entry.seq)) batch.add(entry);
+        }
+        return batch;
+    }
+
+    private boolean dispatchBatch(List<Entry> batch, final Dispatcher dispatcher, Listener listener) throws IOException {
+        List<Future<?>> futures = new ArrayList<>(batch.size());
+        for (final Entry entry : batch) {
+            futures.add(pool.submit(() -> {
+                dispatcher.dispatch(entry);
+                return null;
+            }));
+        }
+
+        List<Entry> finished = new ArrayList<>(batch.size());
+        boolean transientFailure = false;
+        for (int i = 0; i < batch.size(); i++) {
+            Entry entry = batch.get(i);
+            try {
+                futures.get(i).get();
+                finished.add(entry);
+                listener.onDispatched(entry);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                transientFailure = true;
+            } catch (ExecutionException e) {
+                Exception error = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                if (ApiException.isTransient(error)) {
+                    transientFailure = true; // keep it queued
+                } else {
+                    finished.add(entry);
+                    listener.onDropped(entry, error);
+                }
+            }
+        }
+
+        // One journal write and sync for the whole batch
+        synchronized (this) {
+            complete(finished);
+        }
+        return !transientFailure;
+    }
+
+    // Must hold the lock
+    private void complete(List<Entry> entries) throws IOException {
+        if (entries.isEmpty()) return;
+        StringBuilder records = new StringBuilder();
+        for (Entry entry : entries) {
+            JSONObject record = new JSONObject();
+            try {
+                record.put("op", "done");
+                record.put("seq", entry.seq);
+                record.put("key", entry.request.getKey());
+            } catch (JSONException e) {
+                throw new IOException("Error serialising queue record: " + e.getMessage());
+            }
+            records.append(record.toString()).append('\n');
+        }
+        append(records.toString());
+
+        for (Entry entry : entries) {
+            String key = entry.request.getKey();
+            Entry current = pending.get(key);
+            if (current != null && current.seq == entry.seq) pending.remove(key);
+        }
+        if (journalRecords > pending.size() + COMPACT_SLACK) {
+            compact();
+        }
+    }
+
+    // Must hold the lock
+    private void ensureLoaded() throws IOException {
+        if (loaded) return;
+        loaded = true;
+        if (!journal.exists()) return;
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(journal), "UTF-8"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                try {
+                    replay(new JSONObject(line));
+                } catch (JSONException e) {
+                    // A torn last line from a crash mid-append: that record never took effect
+                }
+            }
+        }
+        compact();
+    }
+
+    private void replay(JSONObject record) throws JSONException {
+        long seq = record.getLong("seq");
+        lastSeq = Math.max(lastSeq, seq);
+        if ("add".equals(record.getString("op"))) {
+            BuildRequest request = BuildRequest.fromJson(record.getJSONObject("request"));
+            pending.remove(request.getKey());
+            pending.put(request.getKey(), new Entry(seq, request));
+        } else {
+            String key = record.getString("key");
+            Entry current = pending.get(key);
+            if (current != null && current.seq == seq) pending.remove(key);
+        }
+    }
+
+    private void append(String records) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(journal, true)) {
+            out.write(records.getBytes("UTF-8"));
+            out.getFD().sync();
+        }
+        for (int i = 0; i < records.length(); i++) {
+            if (records.charAt(i) == '\n') journalRecords++;
+        }
+    }
+
+    /**
+     * Rewrites the journal with only the pending entries: write a temp file, sync, rename over.
+     */
+    private void compact() throws IOException {
+        File temp = new File(journal.getPath() + ".tmp");
+        StringBuilder records = new StringBuilder();
+        try {
+            for (Entry entry : pending.values()) {
+                JSONObject record = new JSONObject();
+                record.put("op", "add");
+                record.put("seq", entry.seq);
+                record.put("request", entry.request.toJson());
+                records.append(record.toString()).append('\n');
+            }
+        } catch (JSONException e) {
+            throw new IOException("Error serialising build queue: " + e.getMessage());
+        }
+
+        try (FileOutputStream out = new FileOutputStream(temp, false)) {
+            out.write(records.toString().getBytes("UTF-8"));
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(journal)) {
+            throw new IOException("Failed to replace build queue journal");
+        }
+        journalRecords = pending.size();
+    }
+}
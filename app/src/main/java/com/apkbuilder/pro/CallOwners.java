@@ -0,0 +1,44 @@
+package com.apkbuilder.pro;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The builds an HTTP call is being made for, attached to its request as the
+ * {@code CallOwners} tag. A GET shared through {@link SingleFlight} belongs to every build
+ * waiting on it, so cancelling one build only aborts the call once none are left.
+ * A null owner (the repo watcher, the repo picker...) is never cancelled, and keeps any
+ * call it joins running.
+ */
+final class CallOwners {
+
+    private final Set<Object> owners = new HashSet<>();
+    // Every owner was cancelled and the call is being aborted; nobody may join it any more
+    private boolean abandoned;
+
+    CallOwners(Object owner) {
+        owners.add(owner);
+    }
+
+    /**
+     * Adds {@code other}'s owners to this call, unless it is already being aborted.
+     * @return false if the call was abandoned and the caller must make its own.
+     */
+    synchronized boolean adopt(CallOwners other) {
+        if (abandoned) return false;
+        synchronized (other) {
+            owners.addAll(other.owners);
+        }
+        return true;
+    }
+
+    /**
+     * Removes a cancelled owner.
+     * @return true if it was the last one, i.e. the call should now be cancelled.
+     */
+    synchronized boolean release(Object owner) {
+        if (abandoned || !owners.remove(owner)) return false;
+        abandoned = owners.isEmpty();
+        return abandoned;
+    }
+}
@@ -0,0 +1,108 @@
+package com.apkbuilder.pro;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-host circuit breaker. After a run of consecutive failures to reach a host
+ * (network errors, 5xx), calls to it fail fast for a cool-down instead of each one
+ * waiting out its own timeout. When the cool-down ends a single probe call goes
+ * through: success closes the circuit, failure re-opens it for twice as long.
+ * One breaker is shared by every service ({@link HttpClients#breaker()}), so a host
+ * that is down is shed for all of them at once. All methods are thread-safe.
+ */
+public class CircuitBreaker {
+
+    private static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    private static final long DEFAULT_COOLDOWN_MILLIS = 15_000L;
+    private static final long MAX_COOLDOWN_MILLIS = 5 * 60_000L;
+    // A probe that never reports back (process busy, call abandoned) must not hold the circuit forever
+    private static final long PROBE_TIMEOUT_MILLIS = 60_000L;
+
+    private static class HostState {
+        int consecutiveFailures;
+        long openUntilMillis; // 0 while closed
+        long cooldownMillis;
+        long probeStartedMillis; // 0 unless a half-open probe is in flight
+    }
+
+    private final int failureThreshold;
+    private final long baseCooldownMillis;
+    private final Map<String, HostState> hosts = new HashMap<>();
+
+    public CircuitBreaker() {
+        this(DEFAULT_FAILURE_THRESHOLD, DEFAULT_COOLDOWN_MILLIS);
+    }
+
+    public CircuitBreaker(int failureThreshold, long cooldownMillis) {
+        this.failureThreshold = failureThreshold;
+        this.baseCooldownMillis = cooldownMillis;
+    }
+
+    /**
+     * Lets a call to {@code host} through, or rejects it while the circuit is open.
+     * @return True if the call is the half-open probe: it must report back through
+     *         onSuccess, onFailure or releaseProbe.
+     * @throws CircuitOpenException (a transient 503) if the host is being shed.
+     */
+    public synchronized boolean acquire(String host) throws CircuitOpenException {
+        HostState state = stateOf(host);
+        if (state.openUntilMillis == 0) return false;
+
+        long now = System.currentTimeMillis();
+        boolean probeInFlight = state.probeStartedMillis > 0 && now - state.probeStartedMillis < PROBE_TIMEOUT_MILLIS;
+        if (now < state.openUntilMillis || probeInFlight) {
+            long retryAt = Math.max(state.openUntilMillis, state.probeStartedMillis + PROBE_TIMEOUT_MILLIS);
+            throw new CircuitOpenException("Circuit open for " + host + " after " + state.consecutiveFailures +
+                    " consecutive failures; next attempt in " + ApiException.formatWait(retryAt - now), retryAt - now);
+        }
+        // Half-open: this caller is the probe
+        state.probeStartedMillis = now;
+        return true;
+    }
+
+    /**
+     * The probe ended without saying anything about the host (e.g. it was cancelled):
+     * the next call becomes the probe instead of waiting out the probe timeout.
+     */
+    public synchronized void releaseProbe(String host) {
+        stateOf(host).probeStartedMillis = 0;
+    }
+
+    public synchronized void onSuccess(String host) {
+        HostState state = stateOf(host);
+        state.consecutiveFailures = 0;
+        state.openUntilMillis = 0;
+        state.probeStartedMillis = 0;
+        state.cooldownMillis = baseCooldownMillis;
+    }
+
+    public synchronized void onFailure(String host) {
+        HostState state = stateOf(host);
+        long now = System.currentTimeMillis();
+        state.consecutiveFailures++;
+        if (state.probeStartedMillis > 0) {
+            // The probe failed: still down, back off further
+            state.probeStartedMillis = 0;
+            state.cooldownMillis = Math.min(state.cooldownMillis * 2, MAX_COOLDOWN_MILLIS);
+            state.openUntilMillis = now + state.cooldownMillis;
+        } else if (state.openUntilMillis == 0 && state.consecutiveFailures >= failureThreshold) {
+            state.openUntilMillis = now + state.cooldownMillis;
+        }
+    }
+
+    public synchronized boolean isOpen(String host) {
+        HostState state = hosts.get(host);
+        return state != null && state.openUntilMillis > 0;
+    }
+
+    private HostState stateOf(String host) {
+        HostState state = hosts.get(host);
+        if (state == null) {
+            state = new HostState();
+            state.cooldownMillis = baseCooldownMillis;
+            hosts.put(host, state);
+        }
+        return state;
+    }
+}
@@ -0,0 +1,13 @@
+package com.apkbuilder.pro;
+
+/**
+ * A call the {@link CircuitBreaker} turned away while its host is being shed. It never
+ * left the device, so unlike other 503s it is always safe to send again later.
+ */
+public class CircuitOpenException extends ApiException {
+    private static final long serialVersionUID = 1L;
+
+    public CircuitOpenException(String message, long retryAfterMillis) {
+        super(503, message, retryAfterMillis);
+    }
+}
@@ -0,0 +1,67 @@
+package com.apkbuilder.pro;
+
+import android.os.Handler;
+import android.view.Choreographer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Batches UI updates from any thread and applies them at most once per frame.
+ * Updates are keyed; if several arrive for the same key before the next frame,
+ * only the latest is delivered. The sink always runs on the main thread.
+ */
+public class FrameCoalescer<K, V> {
+
+    public interface Sink<K, V> {
+        void apply(Map<K, V> batch);
+    }
+
+    private final Handler mainHandler;
+    private final Sink<K, V> sink;
+    private final Object lock = new Object();
+    private LinkedHashMap<K, V> pending = new LinkedHashMap<>();
+    private boolean frameScheduled;
+
+    private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> flush();
+
+    // Choreographer is per-looper, so the frame callback is registered from the main thread
+    private final Runnable scheduleFrame = () -> Choreographer.getInstance().postFrameCallback(frameCallback);
+
+    public FrameCoalescer(Handler mainHandler, Sink<K, V> sink) {
+        this.mainHandler = mainHandler;
+        this.sink = sink;
+    }
+
+    public void submit(K key, V value) {
+        synchronized (lock) {
+            pending.put(key, value);
+            if (frameScheduled) return;
+            frameScheduled = true;
+        }
+        mainHandler.post(scheduleFrame);
+    }
+
+    /**
+     * Drops pending updates and any scheduled frame; call from the main thread.
+     */
+    public void cancel() {
+        synchronized (lock) {
+            pending.clear();
+            frameScheduled = false;
+        }
+        mainHandler.removeCallbacks(scheduleFrame);
+        Choreographer.getInstance().removeFrameCallback(frameCallback);
+    }
+
+    private void flush() {
+        LinkedHashMap<K, V> batch;
+        synchronized (lock) {
+            batch = pending;
+            pending = new LinkedHashMap<>();
+            frameScheduled = false;
+        }
+        if (!batch.isEmpty()) {
+            sink.apply(batch);
+        }
+    }
+}
@@ -1,40 +1,167 @@
 package com.apkbuilder.pro;
 
 import okhttp3.*;
+import okio.ByteString;
 import org.json.JSONObject;
 import org.json.JSONArray;
+import com.apkbuilder.pro.models.BranchHead;
+import com.apkbuilder.pro.models.StepTiming;
+import com.apkbuilder.pro.models.WorkflowFile;
 import com.apkbuilder.pro.models.WorkflowResponse;
 import java.io.IOException;
 // FIX: Add missing collection imports
 import java.util.List; 
 import java.util.ArrayList; 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 public class GitHubService {
     private static final String GITHUB_API_BASE = "https://api.github.com";
+    private static final String WORKFLOW_PATH = ".github/workflows/android-build.yml";
+    private static final long DISPATCH_CLOCK_SKEW_MILLIS = 60_000L;
+    // App ID of GitHub Actions, so other CI apps' check suites are ignored
+    private static final int GITHUB_ACTIONS_APP_ID = 15368;
+    private static final String DASHBOARD_QUERY =
+            "query($cursor: String) {\n" +
+            "  viewer {\n" +
+            "    repositories(first: 100, after: $cursor, affiliations: [OWNER, COLLABORATOR],\n" +
+            "                 orderBy: {field: PUSHED_AT, direction: DESC}) {\n" +
+            "      pageInfo { hasNextPage endCursor }\n" +
+            "      nodes {\n" +
+            "        nameWithOwner\n" +
+            "        defaultBranchRef {\n" +
+            "          name\n" +
+            "          target {\n" +
+            "            ... on Commit {\n" +
+            "              checkSuites(last: 1, filterBy: {appId: " + GITHUB_ACTIONS_APP_ID + "}) {\n" +
+            "                nodes {\n" +
+            "                  status conclusion createdAt updatedAt\n" +
+            "                  workflowRun { databaseId runNumber url event workflow { name } }\n" +
+            "                }\n" +
+            "              }\n" +
+            "            }\n" +
+            "          }\n" +
+            "        }\n" +
+            "      }\n" +
+            "    }\n" +
+            "  }\n" +
+            "}";
+    private final String apiBase;
     private OkHttpClient client;
+    // Shares one network call between concurrent identical GETs (polling, refresh, verification)
+    private final SingleFlight inFlightRequests;
+    // Whose calls these are, for HttpClients.cancelCalls; null for calls that are never cancelled
+    private final Object owner;
+    // Learns each token's quota and repo access from responses; optional
+    private volatile TokenPool tokenPool;
 
     public GitHubService() {
-        this.client = new OkHttpClient();
+        this(GITHUB_API_BASE);
+    }
+
+    /**
+     * @param apiBase API root without a trailing slash; tests point this at a local simulator.
+     */
+    public GitHubService(String apiBase) {
+        this.apiBase = apiBase;
+        this.inFlightRequests = new SingleFlight();
+        this.owner = null;
+        this.client = HttpClients.shared().newBuilder()
+                // Outermost, so the token pool below sees the headers of every attempt
+                .addInterceptor(new RetryInterceptor())
+                .addInterceptor(this::recordTokenUsage)
+                .build();
+    }
+
+    private GitHubService(GitHubService base, Object owner) {
+        this.apiBase = base.apiBase;
+        this.client = base.client;
+        this.inFlightRequests = base.inFlightRequests;
+        this.owner = owner;
+    }
+
+    /**
+     * This service with every call tagged as made for {@code owner} (e.g. a build's ID),
+     * so {@link HttpClients#cancelCalls} can abort exactly that build's calls. Shares the
+     * client, token pool and in-flight GETs with this one; cheap enough to create per call.
+     */
+    public GitHubService forOwner(Object owner) {
+        return new GitHubService(this, owner);
+    }
+
+    private Request.Builder newRequest() {
+        return new Request.Builder().tag(CallOwners.class, new CallOwners(owner));
+    }
+
+    private static CallOwners ownersOf(Request request) {
+        return request.tag(CallOwners.class);
+    }
+
+    /**
+     * Reports the rate-limit headers and repo access of every response to {@code pool}.
+     */
+    public void setTokenPool(TokenPool pool) {
+        this.tokenPool = pool;
+    }
+
+    private Response recordTokenUsage(Interceptor.Chain chain) throws IOException {
+        Request request = chain.request();
+        Response response = chain.proceed(request);
+        TokenPool pool = tokenPool;
+        String auth = request.header("Authorization");
+        if (pool != null && auth != null && auth.startsWith("token ")) {
+            // Path is /repos/{owner}/{repo}/... for repository calls
+            List<String> segments = request.url().pathSegments();
+            boolean repoCall = segments.size() >= 3 && "repos".equals(segments.get(0));
+            pool.record(auth.substring("token ".length()),
+                    repoCall ? segments.get(1) + "/" + segments.get(2) : null,
+                    repoCall && segments.size() == 3,
+                    response.code(),
+                    response.header("X-RateLimit-Limit"),
+                    response.header("X-RateLimit-Remaining"),
+                    response.header("X-RateLimit-Reset"),
+                    response.header("Retry-After"));
+        }
+        return response;
+    }
+
+    /**
+     * Key for de-duplicating in-flight requests: same method, URL and token.
+     */
+    private static String flightKey(Request request, String token) {
+        return request.method() + " " + request.url() + " " + token;
     }
 
     /**
      * Creates or updates the Android CI/CD workflow file in the repository.
      */
     public WorkflowResponse createWorkflowFile(String owner, String repo, String token, String workflowContent) throws IOException {
-        String url = GITHUB_API_BASE + "/repos/" + owner + "/" + repo + "/contents/.github/workflows/android-build.yml";
-        // NOTE: Ensure 'android.util.Base64' is available in your Android environment
-        String encodedContent = android.util.Base64.encodeToString(workflowContent.getBytes(), android.util.Base64.NO_WRAP);
+        return createWorkflowFile(owner, repo, token, workflowContent, null);
+    }
+
+    /**
+     * Creates or updates the workflow file. Updating an existing file requires its
+     * current blob SHA (see getWorkflowFile); pass null when creating it.
+     */
+    public WorkflowResponse createWorkflowFile(String owner, String repo, String token, String workflowContent, String existingSha) throws IOException {
+        String url = apiBase + "/repos/" + owner + "/" + repo + "/contents/" + WORKFLOW_PATH;
+        // okio (bundled with OkHttp) instead of android.util.Base64, so this also runs in JVM tests
+        String encodedContent = ByteString.encodeUtf8(workflowContent).base64();
         
         JSONObject requestBody = new JSONObject();
         try {
             requestBody.put("message", "Add Android CI/CD workflow via APK Builder Pro");
             requestBody.put("content", encodedContent);
             requestBody.put("branch", "main");
+            if (existingSha != null) {
+                requestBody.put("sha", existingSha);
+            }
         } catch (Exception e) {
             throw new IOException("Error creating request body: " + e.getMessage());
         }
 
-        Request request = new Request.Builder()
+        Request request = newRequest()
                 .url(url)
                 .header("Authorization", "token " + token)
                 .header("Accept", "application/vnd.github.v3+json")
@@ -49,18 +176,142 @@ public class GitHubService {
                 return new WorkflowResponse(jsonResponse);
             } else {
                 String errorBody = response.body().string();
-                throw new IOException("Failed to create workflow: " + response.code() + " - " + errorBody);
+                throw new ApiException(response.code(), "Failed to create workflow: " + response.code() + " - " + errorBody);
             }
-        } catch (Exception e) {
+        } catch (org.json.JSONException e) {
             throw new IOException("Error creating workflow: " + e.getMessage());
         }
     }
 
+    /**
+     * Reads the committed workflow file on main.
+     * @return The file's SHA and decoded content, or null if it does not exist yet.
+     */
+    public WorkflowFile getWorkflowFile(String owner, String repo, String token) throws IOException {
+        String url = apiBase + "/repos/" + owner + "/" + repo + "/contents/" + WORKFLOW_PATH + "?ref=main";
+
+        Request request = newRequest()
+                .url(url)
+                .header("Authorization", "token " + token)
+                .header("Accept", "application/vnd.github.v3+json")
+                .build();
+
+        return inFlightRequests.execute(flightKey(request, token), ownersOf(request), () -> {
+            try (Response response = client.newCall(request).execute()) {
+                if (response.code() == 404) {
+                    return null;
+                } else if (response.code() == 200) {
+                    JSONObject json = new JSONObject(response.body().string());
+                    // The contents API wraps base64 at 60 columns; okio skips the newlines
+                    ByteString decoded = ByteString.decodeBase64(json.optString("content", ""));
+                    if (decoded == null) {
+                        throw new IOException("Error parsing workflow file: content is not valid base64");
+                    }
+                    return new WorkflowFile(json.optString("sha", null), decoded.utf8());
+                } else {
+                    String errorBody = response.body().string();
+                    throw new ApiException(response.code(), "Failed to read workflow file: " + response.code() + " - " + errorBody);
+                }
+            } catch (org.json.JSONException e) {
+                throw new IOException("Error parsing workflow file: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Resolves the commit a branch points to. Uses the SHA media type, so GitHub
+     * answers with just the 40 hex characters instead of the full commit object.
+     */
+    public String getBranchHeadSha(String owner, String repo, String token, String branch) throws IOException {
+        String url = apiBase + "/repos/" + owner + "/" + repo + "/commits/" + branch;
+
+        Request request = newRequest()
+                .url(url)
+                .header("Authorization", "token " + token)
+                .header("Accept", "application/vnd.github.sha")
+                .build();
+
+        return inFlightRequests.execute(flightKey(request, token), ownersOf(request), () -> {
+            try (Response response = client.newCall(request).execute()) {
+                String body = response.body().string();
+                if (response.code() == 200) {
+                    return body.trim();
+                }
+                throw new ApiException(response.code(), "Failed to resolve branch " + branch + ": " + response.code() + " - " + body);
+            }
+        });
+    }
+
+    /**
+     * Checks a branch head with If-None-Match. GitHub answers 304 without counting it
+     * against the rate limit when the branch has not moved, so idle repos cost nothing.
+     * Not shared through the in-flight map: callers with different ETags need their own answer.
+     * @param etag ETag from the previous check, or null for an unconditional request.
+     * @return The new head, or null if it still matches {@code etag}.
+     */
+    public BranchHead checkBranchHead(String owner, String repo, String token, String branch, String etag) throws IOException {
+        String url = apiBase + "/repos/" + owner + "/" + repo + "/commits/" + branch;
+
+        Request.Builder builder = newRequest()
+                .url(url)
+                .header("Authorization", "token " + token)
+                .header("Accept", "application/vnd.github.sha");
+        if (etag != null) {
+            builder.header("If-None-Match", etag);
+        }
+
+        try (Response response = client.newCall(builder.build()).execute()) {
+            if (response.code() == 304) {
+                return null;
+            }
+            String body = response.body().string();
+            if (response.code() == 200) {
+                return new BranchHead(body.trim(), response.header("ETag"));
+            }
+            throw new ApiException(response.code(), "Failed to check branch " + branch + ": " + response.code() + " - " + body);
+        }
+    }
+
+    /**
+     * The repository's default branch, where repository_dispatch runs its workflows.
+     */
+    public String getDefaultBranch(String owner, String repo, String token) throws IOException {
+        String url = apiBase + "/repos/" + owner + "/" + repo;
+
+        Request request = newRequest()
+                .url(url)
+                .header("Authorization", "token " + token)
+                .header("Accept", "application/vnd.github.v3+json")
+                .build();
+
+        // Same URL as verifyRepositoryAccess but a different result type: keep the flights apart
+        return inFlightRequests.execute(flightKey(request, token) + " default_branch", ownersOf(request), () -> {
+            try (Response response = client.newCall(request).execute()) {
+                String body = response.body().string();
+                if (response.code() != 200) {
+                    throw new ApiException(response.code(), "Failed to read repository: " + response.code() + " - " + body);
+                }
+                return new JSONObject(body).getString("default_branch");
+            } catch (org.json.JSONException e) {
+                throw new IOException("Error parsing repository: " + e.getMessage());
+            }
+        });
+    }
+
     /**
      * Triggers the workflow using a repository_dispatch event with the build type payload.
      */
     public WorkflowResponse dispatchWorkflow(String owner, String repo, String token, String buildType) throws IOException {
-        String url = GITHUB_API_BASE + "/repos/" + owner + "/" + repo + "/dispatches";
+        return dispatchWorkflow(owner, repo, token, buildType, null);
+    }
+
+    /**
+     * Triggers the workflow, tagging the dispatch with {@code dispatchId} (may be null); the
+     * workflow puts it in the run's name so findDispatchedRun can match the run to it.
+     */
+    public WorkflowResponse dispatchWorkflow(String owner, String repo, String token, String buildType,
+                                             String dispatchId) throws IOException {
+        String url = apiBase + "/repos/" + owner + "/" + repo + "/dispatches";
         
         JSONObject requestBody = new JSONObject();
         JSONObject clientPayload = new JSONObject();
@@ -68,12 +319,15 @@ public class GitHubService {
             // Must match the event_type expected by the YAML workflow
             requestBody.put("event_type", "run_android_build"); 
             clientPayload.put("build_type", buildType); // Pass the build type
+            if (dispatchId != null) {
+                clientPayload.put("dispatch_id", dispatchId);
+            }
             requestBody.put("client_payload", clientPayload);
         } catch (Exception e) {
             throw new IOException("Error creating request body for dispatch: " + e.getMessage());
         }
 
-        Request request = new Request.Builder()
+        Request request = newRequest()
                 .url(url)
                 .header("Authorization", "token " + token)
                 .header("Accept", "application/vnd.github.v3+json")
@@ -87,118 +341,349 @@ public class GitHubService {
                 return new WorkflowResponse(true, "Build dispatch successful. Polling status...", null);
             } else {
                 String errorBody = response.body().string();
-                throw new IOException("Failed to trigger workflow: " + response.code() + " - " + errorBody);
+                throw new ApiException(response.code(), "Failed to trigger workflow: " + response.code() + " - " + errorBody);
             }
         }
     }
     
+    /**
+     * Receives each page of repository names as soon as it has been fetched.
+     */
+    public interface RepositoryPageListener {
+        void onPage(List<String> page);
+    }
+
     /**
      * Fetches a list of accessible repositories for the authenticated user.
      */
     public List<String> getRepositories(String token) throws IOException {
+        return getRepositories(token, null);
+    }
+
+    /**
+     * Fetches all accessible repositories, following the Link header page by page.
+     * The listener (if any) is called on the calling thread after every page.
+     */
+    public List<String> getRepositories(String token, RepositoryPageListener listener) throws IOException {
         List<String> repoList = new ArrayList<>();
         // Fetch all repos where the user is an owner or collaborator
-        String url = GITHUB_API_BASE + "/user/repos?per_page=100&affiliation=owner,collaborator"; 
-        
-        Request request = new Request.Builder()
+        String url = apiBase + "/user/repos?per_page=100&affiliation=owner,collaborator"; 
+
+        while (url != null) {
+            RepoPage page = fetchRepositoryPage(url, token);
+            // Callers may share the parsed page, so hand each one its own copy
+            List<String> names = new ArrayList<>(page.names);
+            repoList.addAll(names);
+            if (listener != null) {
+                listener.onPage(names);
+            }
+            url = page.nextUrl;
+        }
+        return repoList;
+    }
+
+    private static class RepoPage {
+        final List<String> names;
+        final String nextUrl;
+
+        RepoPage(List<String> names, String nextUrl) {
+            this.names = names;
+            this.nextUrl = nextUrl;
+        }
+    }
+
+    private RepoPage fetchRepositoryPage(String url, String token) throws IOException {
+        Request request = newRequest()
                 .url(url)
                 .header("Authorization", "token " + token)
                 .header("Accept", "application/vnd.github.v3+json")
                 .build();
 
-        try (Response response = client.newCall(request).execute()) {
-            if (response.code() == 200) {
-                String body = response.body().string();
-                JSONArray repos = new JSONArray(body);
-                for (int i = 0; i < repos.length(); i++) {
-                    JSONObject repo = repos.getJSONObject(i);
-                    // Add full_name (e.g., owner/repo_name)
-                    repoList.add(repo.getString("full_name")); 
+        return inFlightRequests.execute(flightKey(request, token), ownersOf(request), () -> {
+            try (Response response = client.newCall(request).execute()) {
+                if (response.code() == 200) {
+                    String body = response.body().string();
+                    return new RepoPage(parseRepositoryNames(body), parseNextLink(response.header("Link")));
+                } else {
+                    String errorBody = response.body().string();
+                    throw new ApiException(response.code(), "Failed to fetch repositories: " + response.code() + " - " + errorBody);
                 }
-                return repoList;
-            } else {
-                String errorBody = response.body().string();
-                throw new IOException("Failed to fetch repositories: " + response.code() + " - " + errorBody);
+            } catch (org.json.JSONException e) {
+                 throw new IOException("Error parsing repository list: " + e.getMessage());
             }
-        } catch (org.json.JSONException e) {
-             throw new IOException("Error parsing repository list: " + e.getMessage());
+        });
+    }
+
+    /**
+     * Full names (owner/repo_name) from one page of a /user/repos response body.
+     */
+    static List<String> parseRepositoryNames(String body) throws org.json.JSONException {
+        JSONArray repos = new JSONArray(body);
+        List<String> repoList = new ArrayList<>(repos.length());
+        for (int i = 0; i < repos.length(); i++) {
+            repoList.add(repos.getJSONObject(i).getString("full_name"));
+        }
+        return repoList;
+    }
+
+    /**
+     * Extracts the rel="next" URL from a GitHub Link header, or null on the last page.
+     */
+    static String parseNextLink(String linkHeader) {
+        if (linkHeader == null) return null;
+        // Split on the <...> targets, not on commas: a target URL may contain commas itself
+        int start = linkHeader.indexOf('<');
+        while (start >= 0) {
+            int end = linkHeader.indexOf('>', start);
+            if (end < 0) return null;
+            int next = linkHeader.indexOf('<', end);
+            String params = linkHeader.substring(end + 1, next < 0 ? linkHeader.length() : next);
+            for (String param : params.split("[;,]")) {
+                if (param.trim().equals("rel=\"next\"")) {
+                    return linkHeader.substring(start + 1, end);
+                }
+            }
+            start = next;
         }
+        return null;
+    }
+
+    /**
+     * Fetches every accessible repository together with its default branch and the
+     * latest GitHub Actions run on that branch, 100 repositories per GraphQL query.
+     * Replaces one getRepositories call plus one getLatestWorkflowStatus call per repo.
+     * @param listener Called with each page's repository names as soon as it is parsed; optional.
+     * @return Statuses keyed by full repository name (owner/repo), in API order.
+     */
+    public Map<String, WorkflowResponse> getDashboard(String token, RepositoryPageListener listener) throws IOException {
+        Map<String, WorkflowResponse> dashboard = new LinkedHashMap<>();
+        String cursor = null;
+
+        do {
+            JSONObject requestBody = new JSONObject();
+            try {
+                JSONObject variables = new JSONObject();
+                variables.put("cursor", cursor != null ? cursor : JSONObject.NULL);
+                requestBody.put("query", DASHBOARD_QUERY);
+                requestBody.put("variables", variables);
+            } catch (Exception e) {
+                throw new IOException("Error creating dashboard query: " + e.getMessage());
+            }
+
+            // A query only reads, so it may be retried like a GET
+            Request request = RetryInterceptor.idempotent(newRequest())
+                    .url(apiBase + "/graphql")
+                    .header("Authorization", "bearer " + token)
+                    .header("Content-Type", "application/json")
+                    .post(RequestBody.create(requestBody.toString(), MediaType.parse("application/json")))
+                    .build();
+
+            List<String> names = new ArrayList<>();
+            try (Response response = client.newCall(request).execute()) {
+                String body = response.body().string();
+                if (response.code() != 200) {
+                    throw new ApiException(response.code(), "Failed to fetch dashboard: " + response.code() + " - " + body);
+                }
+
+                JSONObject json = new JSONObject(body);
+                JSONArray errors = json.optJSONArray("errors");
+                if (errors != null && errors.length() > 0) {
+                    throw new IOException("Dashboard query failed: " + errors.getJSONObject(0).optString("message"));
+                }
+
+                JSONObject repositories = json.getJSONObject("data")
+                        .getJSONObject("viewer")
+                        .getJSONObject("repositories");
+                JSONArray nodes = repositories.getJSONArray("nodes");
+                for (int i = 0; i < nodes.length(); i++) {
+                    JSONObject node = nodes.getJSONObject(i);
+                    String name = node.getString("nameWithOwner");
+                    names.add(name);
+                    dashboard.put(name, WorkflowResponse.fromRepositoryNode(node));
+                }
+
+                JSONObject pageInfo = repositories.getJSONObject("pageInfo");
+                cursor = pageInfo.optBoolean("hasNextPage", false) ? pageInfo.optString("endCursor", null) : null;
+            } catch (org.json.JSONException e) {
+                throw new IOException("Error parsing dashboard: " + e.getMessage());
+            }
+            if (listener != null) {
+                listener.onPage(names);
+            }
+        } while (cursor != null);
+
+        return dashboard;
     }
 
     /**
      * Gets the latest workflow run status for the main branch.
      */
     public WorkflowResponse getLatestWorkflowStatus(String owner, String repo, String token) throws IOException {
-        String url = GITHUB_API_BASE + "/repos/" + owner + "/" + repo + "/actions/runs?branch=main&per_page=1";
+        String url = apiBase + "/repos/" + owner + "/" + repo + "/actions/runs?branch=main&per_page=1";
         
-        Request request = new Request.Builder()
+        Request request = newRequest()
                 .url(url)
                 .header("Authorization", "token " + token)
                 .header("Accept", "application/vnd.github.v3+json")
                 .build();
 
-        try (Response response = client.newCall(request).execute()) {
-            if (response.code() == 200) {
-                String responseBody = response.body().string();
-                JSONObject jsonResponse = new JSONObject(responseBody);
-                // WorkflowResponse constructor handles parsing the runs list
-                return new WorkflowResponse(jsonResponse); 
-            } else {
-                String errorBody = response.body().string();
-                throw new IOException("Failed to get workflow status: " + response.code() + " - " + errorBody);
+        return inFlightRequests.execute(flightKey(request, token), ownersOf(request), () -> {
+            try (Response response = client.newCall(request).execute()) {
+                if (response.code() == 200) {
+                    String responseBody = response.body().string();
+                    JSONObject jsonResponse = new JSONObject(responseBody);
+                    // WorkflowResponse constructor handles parsing the runs list
+                    return new WorkflowResponse(jsonResponse); 
+                } else {
+                    String errorBody = response.body().string();
+                    throw new ApiException(response.code(), "Failed to get workflow status: " + response.code() + " - " + errorBody);
+                }
+            } catch (org.json.JSONException e) {
+                throw new IOException("Error getting workflow status: " + e.getMessage());
             }
-        } catch (Exception e) {
-            throw new IOException("Error getting workflow status: " + e.getMessage());
-        }
+        });
     }
     
+    /**
+     * Finds the run created by our repository_dispatch: the oldest dispatch run on main
+     * created at or after {@code sinceMillis} that no other build has claimed yet.
+     * @return The run, or null if GitHub has not created it yet.
+     */
+    public WorkflowResponse findDispatchedRun(String owner, String repo, String token, long sinceMillis,
+                                              Set<String> claimedRunIds) throws IOException {
+        return findDispatchedRun(owner, repo, token, sinceMillis, null, claimedRunIds);
+    }
+
+    /**
+     * Finds the run of the dispatch tagged {@code dispatchId}: the run whose name carries it.
+     * Only that run can match, whichever other builds of the repo dispatched meanwhile; without
+     * an ID this falls back to the oldest unclaimed run since {@code sinceMillis}.
+     * @return The run, or null if GitHub has not created it yet.
+     */
+    public WorkflowResponse findDispatchedRun(String owner, String repo, String token, long sinceMillis,
+                                              String dispatchId, Set<String> claimedRunIds) throws IOException {
+        String url = apiBase + "/repos/" + owner + "/" + repo +
+                "/actions/runs?event=repository_dispatch&branch=main&per_page=10";
+
+        Request request = newRequest()
+                .url(url)
+                .header("Authorization", "token " + token)
+                .header("Accept", "application/vnd.github.v3+json")
+                .build();
+
+        List<WorkflowResponse> runs = inFlightRequests.execute(flightKey(request, token), ownersOf(request), () -> {
+            try (Response response = client.newCall(request).execute()) {
+                if (response.code() == 200) {
+                    return WorkflowResponse.listRuns(new JSONObject(response.body().string()));
+                } else {
+                    String errorBody = response.body().string();
+                    throw new ApiException(response.code(), "Failed to list dispatched runs: " + response.code() + " - " + errorBody);
+                }
+            } catch (org.json.JSONException e) {
+                throw new IOException("Error parsing dispatched runs: " + e.getMessage());
+            }
+        });
+
+        // Allow for clock skew between the device and GitHub
+        long earliest = sinceMillis - DISPATCH_CLOCK_SKEW_MILLIS;
+        WorkflowResponse match = null;
+        for (WorkflowResponse run : runs) {
+            if (run.getRunId() == null || claimedRunIds.contains(run.getRunId())) continue;
+            if (dispatchId != null) {
+                String title = run.getDisplayTitle();
+                if (title != null && title.contains(dispatchId)) return run;
+                continue;
+            }
+            if (run.toSnapshot().getCreatedAtMillis() < earliest) continue;
+            match = run; // List is newest first; keep going to end on the oldest candidate
+        }
+        return match;
+    }
+
     /**
      * Verifies that the given repository exists and is accessible.
      */
     public boolean verifyRepositoryAccess(String owner, String repo, String token) throws IOException {
-        String url = GITHUB_API_BASE + "/repos/" + owner + "/" + repo;
+        String url = apiBase + "/repos/" + owner + "/" + repo;
         
-        Request request = new Request.Builder()
+        Request request = newRequest()
                 .url(url)
                 .header("Authorization", "token " + token)
                 .header("Accept", "application/vnd.github.v3+json")
                 .build();
 
-        try (Response response = client.newCall(request).execute()) {
-            // A 200 OK means the repo exists and is accessible with the token
-            return response.code() == 200; 
-        }
+        return inFlightRequests.execute(flightKey(request, token), ownersOf(request), () -> {
+            try (Response response = client.newCall(request).execute()) {
+                if (response.code() >= 500) {
+                    // GitHub is having trouble; that says nothing about our access
+                    throw new ApiException(response.code(), "Failed to verify repository access: " + response.code());
+                }
+                // A 200 OK means the repo exists and is accessible with the token
+                return response.code() == 200; 
+            }
+        });
     }
 
     // Keeping existing methods for completeness, though some are duplicates of the new logic:
     
     public WorkflowResponse getWorkflowRunById(String owner, String repo, String token, String runId) throws IOException {
-        String url = GITHUB_API_BASE + "/repos/" + owner + "/" + repo + "/actions/runs/" + runId;
+        String url = apiBase + "/repos/" + owner + "/" + repo + "/actions/runs/" + runId;
         
-        Request request = new Request.Builder()
+        Request request = newRequest()
                 .url(url)
                 .header("Authorization", "token " + token)
                 .header("Accept", "application/vnd.github.v3+json")
                 .build();
 
-        try (Response response = client.newCall(request).execute()) {
-            if (response.code() == 200) {
-                String responseBody = response.body().string();
-                JSONObject jsonResponse = new JSONObject(responseBody);
-                return new WorkflowResponse(jsonResponse);
-            } else {
-                String errorBody = response.body().string();
-                throw new IOException("Failed to get workflow run: " + response.code() + " - " + errorBody);
+        return inFlightRequests.execute(flightKey(request, token), ownersOf(request), () -> {
+            try (Response response = client.newCall(request).execute()) {
+                if (response.code() == 200) {
+                    String responseBody = response.body().string();
+                    JSONObject jsonResponse = new JSONObject(responseBody);
+                    return new WorkflowResponse(jsonResponse);
+                } else {
+                    String errorBody = response.body().string();
+                    throw new ApiException(response.code(), "Failed to get workflow run: " + response.code() + " - " + errorBody);
+                }
+            } catch (org.json.JSONException e) {
+                throw new IOException("Error getting workflow run: " + e.getMessage());
             }
-        } catch (Exception e) {
-            throw new IOException("Error getting workflow run: " + e.getMessage());
-        }
+        });
     }
     
+    /**
+     * Per-step timings of a run: every step of every job (latest attempt), in run order.
+     * Steps that have not finished have no duration yet; see {@link StepTiming#isMeasured}.
+     */
+    public List<StepTiming> getRunSteps(String owner, String repo, String token, String runId) throws IOException {
+        List<StepTiming> steps = new ArrayList<>();
+        String url = apiBase + "/repos/" + owner + "/" + repo + "/actions/runs/" + runId + "/jobs?per_page=100";
+
+        while (url != null) {
+            Request request = newRequest()
+                    .url(url)
+                    .header("Authorization", "token " + token)
+                    .header("Accept", "application/vnd.github.v3+json")
+                    .build();
+
+            try (Response response = client.newCall(request).execute()) {
+                String body = response.body().string();
+                if (response.code() != 200) {
+                    throw new ApiException(response.code(), "Failed to get run jobs: " + response.code() + " - " + body);
+                }
+                steps.addAll(StepTiming.parseJobs(body));
+                url = parseNextLink(response.header("Link"));
+            } catch (org.json.JSONException e) {
+                throw new IOException("Error parsing run jobs: " + e.getMessage());
+            }
+        }
+        return steps;
+    }
+
     public WorkflowResponse cancelWorkflowRun(String owner, String repo, String token, String runId) throws IOException {
-        String url = GITHUB_API_BASE + "/repos/" + owner + "/" + repo + "/actions/runs/" + runId + "/cancel";
+        String url = apiBase + "/repos/" + owner + "/" + repo + "/actions/runs/" + runId + "/cancel";
         
-        Request request = new Request.Builder()
+        Request request = newRequest()
                 .url(url)
                 .header("Authorization", "token " + token)
                 .header("Accept", "application/vnd.github.v3+json")
@@ -211,7 +696,7 @@ public class GitHubService {
                 return new WorkflowResponse(true, "Workflow cancellation requested", null);
             } else {
                 String errorBody = response.body().string();
-                throw new IOException("Failed to cancel workflow: " + response.code() + " - " + errorBody);
+                throw new ApiException(response.code(), "Failed to cancel workflow: " + response.code() + " - " + errorBody);
             }
         }
     }
@@ -0,0 +1,58 @@
+package com.apkbuilder.pro;
+
+import java.util.ArrayList;
+import java.util.List;
+import okhttp3.Call;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+/**
+ * The app's one base OkHttpClient. Services derive their own client from it with
+ * {@code shared().newBuilder()}, which adds their interceptors but shares its connection
+ * pool, dispatcher threads and TLS setup, so a second service costs no second network stack.
+ * Created on first use, never at class-load time of the services or the activity.
+ */
+public final class HttpClients {
+
+    private HttpClients() {}
+
+    // Initialization-on-demand holder: thread-safe and lazy without locking
+    private static final class Holder {
+        static final OkHttpClient SHARED = new OkHttpClient();
+        static final CircuitBreaker BREAKER = new CircuitBreaker();
+    }
+
+    public static OkHttpClient shared() {
+        return Holder.SHARED;
+    }
+
+    /**
+     * The circuit breaker of every service's {@link RetryInterceptor}: the state of a host
+     * is one fact, however many services call it.
+     */
+    public static CircuitBreaker breaker() {
+        return Holder.BREAKER;
+    }
+
+    /**
+     * Aborts the queued and running calls made for {@code owner} (see
+     * {@link GitHubService#forOwner}), e.g. those of a build that was just cancelled.
+     * A call other owners are still waiting on keeps running for them.
+     * @return The number of calls cancelled.
+     */
+    public static int cancelCalls(Object owner) {
+        // Every derived client shares this dispatcher, and it lists synchronous calls too
+        Dispatcher dispatcher = shared().dispatcher();
+        List<Call> calls = new ArrayList<>(dispatcher.runningCalls());
+        calls.addAll(dispatcher.queuedCalls());
+        int cancelled = 0;
+        for (Call call : calls) {
+            CallOwners owners = call.request().tag(CallOwners.class);
+            if (owners != null && owners.release(owner)) {
+                call.cancel();
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+}
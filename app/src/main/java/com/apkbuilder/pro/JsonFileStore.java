@@ -0,0 +1,50 @@
+package com.apkbuilder.pro;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads and writes the small JSON state files kept in the app's files directory
+ * ({@link BuildCache}, {@link RepoWatcher}, {@link StepTrends}). Writes go to a temp
+ * file that is synced and then renamed over the old one, so a crash leaves either the
+ * old file or the new one, never half of it. Callers do their own locking.
+ */
+final class JsonFileStore {
+
+    private JsonFileStore() {}
+
+    /**
+     * @return The file's array, or null if the file does not exist.
+     * @throws JSONException If the file is damaged; callers decide whether that is fatal.
+     */
+    static JSONArray readArray(File file) throws IOException, JSONException {
+        if (!file.exists()) return null;
+        try (InputStream in = new FileInputStream(file)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new JSONArray(out.toString("UTF-8"));
+        }
+    }
+
+    static void writeAtomically(File file, JSONArray array) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp, false)) {
+            out.write(array.toString().getBytes("UTF-8"));
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Failed to replace " + file.getName());
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.apkbuilder.pro;
+
+/**
+ * A value created on first {@link #get}, at most once, by whichever thread asks first.
+ * (java.util.function.Supplier needs API 24.)
+ */
+public final class Lazy<T> {
+
+    public interface Factory<T> {
+        T create();
+    }
+
+    private final Factory<T> factory;
+    private volatile T value;
+
+    public Lazy(Factory<T> factory) {
+        this.factory = factory;
+    }
+
+    public T get() {
+        T result = value;
+        if (result == null) {
+            synchronized (this) {
+                result = value;
+                if (result == null) {
+                    result = factory.create();
+                    value = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The value if it was created already, otherwise null (without creating it).
+     */
+    public T peek() {
+        return value;
+    }
+}
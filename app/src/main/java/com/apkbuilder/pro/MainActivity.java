@@ -1,20 +1,37 @@
 package com.apkbuilder.pro;
 
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.Trace;
 import android.util.Log;
 import android.view.View;
 import android.widget.*;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import com.apkbuilder.pro.models.BuildRequest;
 import com.apkbuilder.pro.models.BuildStage;
+import com.apkbuilder.pro.models.StepTiming;
 import com.apkbuilder.pro.models.WorkflowResponse;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.progressindicator.LinearProgressIndicator;
 import com.google.android.material.textfield.TextInputEditText;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -22,45 +39,122 @@ import java.util.concurrent.TimeUnit;
 public class MainActivity extends AppCompatActivity {
 
     private static final String TAG = "APKBuilderPro";
+    // Builds are always dispatched against main (see WorkflowYamlGenerator / createWorkflowFile)
+    private static final String BUILD_BRANCH = "main";
+    // Offline queue: batch size, dispatches in flight, and retry delay while GitHub returns 5xx
+    private static final int QUEUE_BATCH_SIZE = 5;
+    private static final int QUEUE_MAX_PARALLEL = 3;
+    private static final long QUEUE_RETRY_DELAY_MS = 30_000L;
+    private static final int SLOWEST_STEPS_SHOWN = 5;
+    // How long a finished, failed or cancelled build stays on the dashboard
+    private static final long FINISHED_ROW_MILLIS = 2 * 60_000L;
 
     // UI Components (Using Material Design components)
     private TextInputEditText githubTokenInput, botTokenInput, userIdInput;
     private AutoCompleteTextView repoSpinner, buildTypeSpinner;
-    private MaterialButton buildBtn, testConnectionBtn, fetchReposBtn;
+    private MaterialButton buildBtn, watchBtn, testConnectionBtn, fetchReposBtn;
     private TextView statusText;
     private LinearProgressIndicator linearProgressBar;
+    private View dashboardCard;
+    private RecyclerView buildDashboardList;
     
     // Services and Data
-    private GitHubService gitHubService = new GitHubService(); // FIX: Use parameterless constructor
-    private TelegramService telegramService = new TelegramService(); 
+    // Quota and access of every GitHub token in use; each call picks the best one (see tokenFor)
+    private final TokenPool tokenPool = new TokenPool();
+    // Created on first use or by the warm-up after the first frame, not during onCreate
+    private final Lazy<GitHubService> gitHubService = new Lazy<>(() -> {
+        GitHubService service = new GitHubService();
+        service.setTokenPool(tokenPool);
+        return service;
+    });
+    private final Lazy<TelegramService> telegramService = new Lazy<>(TelegramService::new);
+    // Status messages go to every chat in the chat ID field, rendered once per state change
+    private final Lazy<TelegramBroadcaster> telegramBroadcaster = new Lazy<>(() -> new TelegramBroadcaster(
+            telegramService.get(),
+            (chatId, error) -> Log.w(TAG, "Telegram delivery to " + chatId + " failed: " + error.getMessage())));
     
     // State
     private BuildStage currentStage = BuildStage.IDLE; 
     private String currentRepoOwner = "";
     private String currentRepoName = "";
     private String currentBuildType = "release"; 
-    private String currentBotToken = "";
-    private String currentUserId = "";
-    private String lastWorkflowRunId = "";
-    private String lastMessageId = "";
     private List<String> availableRepos = new ArrayList<>();
+    // Latest Actions run on each repo's default branch, from the repository listing
+    private final Map<String, WorkflowResponse> latestRuns = new ConcurrentHashMap<>();
+    private RepoSearchAdapter repoAdapter;
+    // Every build started this session, keyed by TrackedBuild.getKey()
+    private final Map<String, TrackedBuild> trackedBuilds = new ConcurrentHashMap<>();
+    // The build whose progress is mirrored in the status card (the latest one started)
+    private volatile TrackedBuild focusedBuild;
+
+    // Rendering: build updates from worker threads are coalesced to one UI pass per frame
+    private BuildDashboardAdapter dashboardAdapter;
+    private FrameCoalescer<String, BuildDashboardAdapter.Row> dashboardUpdates;
 
     // Concurrency
     private ScheduledExecutorService statusScheduler;
+    private final Object schedulerLock = new Object();
+    private final ExecutorService preflightPool = Executors.newCachedThreadPool();
     private Handler mainHandler;
 
+    // Builds that could not be dispatched wait here until the network is back
+    private BuildQueue buildQueue;
+    private ConnectivityManager connectivityManager;
+    private ConnectivityManager.NetworkCallback networkCallback;
+    // Commits already built successfully; a repeat build links the earlier run instead.
+    // Lazy like the services: a queue drain may build the pipeline on a worker thread during onCreate
+    private final Lazy<BuildCache> buildCache = new Lazy<>(() -> new BuildCache(getFilesDir()));
+    // Per-step CI durations of completed runs, for the slowest-steps report
+    private final Lazy<StepTrends> stepTrends = new Lazy<>(() -> new StepTrends(getFilesDir()));
+    // Watch mode: repos whose default branch is built on every push; started when created
+    private final Lazy<RepoWatcher> repoWatcher = new Lazy<>(this::createRepoWatcher);
+    // Pre-flight, dispatch and polling of every build; this class adds the UI and Telegram around it
+    private final Lazy<BuildPipeline> buildPipeline = new Lazy<>(this::createBuildPipeline);
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        setContentView(R.layout.activity_main);
+        traced("setContentView", () -> setContentView(R.layout.activity_main));
         
         mainHandler = new Handler(Looper.getMainLooper());
         
-        initializeViews();
-        setupListeners();
-        setupDropdowns();
+        traced("initializeViews", this::initializeViews);
+        traced("setupListeners", this::setupListeners);
+        traced("setupDropdowns", this::setupDropdowns);
+        traced("setupDashboard", this::setupDashboard);
+        traced("setupBuildQueue", this::setupBuildQueue);
         
         updateStage(BuildStage.IDLE, "🚀 Ready to build Android projects!\n\nEnter your GitHub token to begin.");
+        warmUpServices();
+    }
+
+    /**
+     * Runs one startup step inside a systrace/Perfetto section named "startup:<name>".
+     */
+    private static void traced(String name, Runnable step) {
+        Trace.beginSection("startup:" + name);
+        try {
+            step.run();
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Creates the network services off the main thread once the UI is up, so the first
+     * build or connection test does not pay for them, then reports the activity fully
+     * drawn (the end point of benchmark/cold-start.sh).
+     */
+    private void warmUpServices() {
+        preflightPool.execute(() -> {
+            traced("warmUp:gitHub", gitHubService::get);
+            traced("warmUp:telegram", telegramBroadcaster::get);
+            if (isFinishing()) return; // a watcher started now would outlive the activity
+            traced("warmUp:repoWatcher", repoWatcher::get);
+            mainHandler.post(() -> {
+                if (!isFinishing() && !isDestroyed()) reportFullyDrawn();
+            });
+        });
     }
 
     private void initializeViews() {
@@ -70,10 +164,13 @@ public class MainActivity extends AppCompatActivity {
         repoSpinner = findViewById(R.id.repoSpinner);
         buildTypeSpinner = findViewById(R.id.buildTypeSpinner);
         buildBtn = findViewById(R.id.buildBtn);
+        watchBtn = findViewById(R.id.watchBtn);
         testConnectionBtn = findViewById(R.id.testConnectionBtn);
         fetchReposBtn = findViewById(R.id.fetchReposBtn);
         statusText = findViewById(R.id.statusText);
         linearProgressBar = findViewById(R.id.linearProgressBar); 
+        dashboardCard = findViewById(R.id.dashboardCard);
+        buildDashboardList = findViewById(R.id.buildDashboardList);
     }
     
     private void setupDropdowns() {
@@ -88,15 +185,16 @@ public class MainActivity extends AppCompatActivity {
             checkBuildButtonState();
         });
 
-        // Setup repo spinner with empty adapter initially
-        ArrayAdapter<String> repoAdapter = new ArrayAdapter<>(this, 
-                android.R.layout.simple_spinner_dropdown_item, new ArrayList<String>());
+        // Setup repo spinner with an empty search index; pages are added as they arrive
+        repoAdapter = new RepoSearchAdapter(this, android.R.layout.simple_spinner_dropdown_item);
         repoSpinner.setAdapter(repoAdapter);
         
         repoSpinner.setOnItemClickListener((parent, view, position, id) -> {
             String fullRepoName = (String) parent.getItemAtPosition(position);
             parseRepoUrl(fullRepoName);
             checkBuildButtonState();
+            updateWatchButton();
+            showLatestRun(fullRepoName);
         });
     }
     
@@ -112,11 +210,177 @@ public class MainActivity extends AppCompatActivity {
 
         testConnectionBtn.setOnClickListener(v -> testTelegramConnection());
         buildBtn.setOnClickListener(v -> startBuildProcess());
+        watchBtn.setOnClickListener(v -> toggleWatch());
         fetchReposBtn.setOnClickListener(v -> fetchRepositories());
         
         checkBuildButtonState(); // Initial check
     }
     
+    private void setupDashboard() {
+        dashboardAdapter = new BuildDashboardAdapter(this::onCancelRequested);
+        buildDashboardList.setLayoutManager(new LinearLayoutManager(this));
+        buildDashboardList.setAdapter(dashboardAdapter);
+        // Status text changes would otherwise run a change animation on every update
+        buildDashboardList.setItemAnimator(null);
+        dashboardUpdates = new FrameCoalescer<>(mainHandler, this::renderDashboard);
+    }
+
+    private void setupBuildQueue() {
+        buildQueue = new BuildQueue(getFilesDir(), QUEUE_BATCH_SIZE, QUEUE_MAX_PARALLEL);
+        connectivityManager = (ConnectivityManager) getSystemService(CONNECTIVITY_SERVICE);
+
+        // Show builds queued in an earlier session before the callback below starts sending them
+        preflightPool.execute(() -> {
+            try {
+                for (BuildQueue.Entry entry : buildQueue.snapshot()) {
+                    publishBuild(trackedBuildFor(entry), BuildStage.QUEUED, null);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Could not read the build queue", e);
+            }
+        });
+
+        // Also called right away for a network that is already up
+        networkCallback = new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                drainBuildQueue();
+            }
+        };
+        connectivityManager.registerNetworkCallback(new NetworkRequest.Builder()
+                .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                .build(), networkCallback);
+    }
+
+    private RepoWatcher createRepoWatcher() {
+        RepoWatcher watcher = new RepoWatcher(getFilesDir(), gitHubService.get(),
+                request -> tokenPool.select(request.getRepoOwner(), request.getRepoName(),
+                        TokenPool.parse(request.getGithubToken())),
+                new RepoWatcher.Listener() {
+                    @Override
+                    public void onHeadChanged(BuildRequest request, String previousSha, String newSha) {
+                        onWatchedHeadChanged(request, previousSha, newSha);
+                    }
+
+                    @Override
+                    public void onCheckFailed(BuildRequest request, IOException error) {
+                        Log.w(TAG, "Watch check failed for " + request.getRepoOwner() + "/" + request.getRepoName() +
+                                ": " + error.getMessage());
+                    }
+                });
+        watcher.start();
+        return watcher;
+    }
+
+    private BuildPipeline createBuildPipeline() {
+        return new BuildPipeline(gitHubService.get(), telegramService.get(), tokenPool, buildCache.get(), preflightPool,
+                new BuildPipeline.Listener() {
+                    @Override
+                    public void onStageStarted(TrackedBuild build, BuildStage stage) {
+                        if (build.isCancelled()) throw new CancellationException("Build was cancelled");
+                        publishBuild(build, stage, null);
+                    }
+
+                    @Override
+                    public void onWorkflowCommitted(TrackedBuild build) {
+                        acknowledgeOwnCommit(build);
+                    }
+                });
+    }
+
+    /**
+     * Starts or stops watching the selected repository with the current form inputs.
+     */
+    private void toggleWatch() {
+        if (currentRepoName.isEmpty() || currentRepoOwner.isEmpty()) {
+            Toast.makeText(this, "Please select a repository.", Toast.LENGTH_LONG).show();
+            return;
+        }
+        final TrackedBuild template = new TrackedBuild(
+                currentRepoOwner,
+                currentRepoName,
+                BUILD_BRANCH,
+                currentBuildType,
+                githubTokenInput.getText().toString().trim(),
+                botTokenInput.getText().toString().trim(),
+                userIdInput.getText().toString().trim());
+
+        preflightPool.execute(() -> {
+            String repo = template.getFullName();
+            String message;
+            try {
+                if (repoWatcher.get().unwatch(repo)) {
+                    message = "Stopped watching " + repo;
+                } else {
+                    repoWatcher.get().watch(template.toRequest());
+                    message = "Watching " + repo + ": every push to its default branch starts a " +
+                            template.getBuildType() + " build";
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Could not update watched repositories", e);
+                message = "Could not update watched repositories: " + e.getMessage();
+            }
+            final String text = message;
+            mainHandler.post(() -> {
+                Toast.makeText(this, text, Toast.LENGTH_LONG).show();
+                updateWatchButton();
+            });
+        });
+    }
+
+    private void updateWatchButton() {
+        final String repo = currentRepoOwner + "/" + currentRepoName;
+        preflightPool.execute(() -> {
+            boolean watching;
+            try {
+                watching = repoWatcher.get().isWatching(repo);
+            } catch (IOException e) {
+                watching = false;
+            }
+            final boolean isWatching = watching;
+            mainHandler.post(() -> {
+                if (repo.equals(currentRepoOwner + "/" + currentRepoName)) {
+                    watchBtn.setText(isWatching ? "Stop Watching" : "Watch");
+                }
+            });
+        });
+    }
+
+    /**
+     * A watched branch moved: build it, unless a build of the same key is still in pre-flight
+     * (it will pick up the new head itself when it dispatches).
+     */
+    private void onWatchedHeadChanged(BuildRequest request, String previousSha, String newSha) {
+        Log.d(TAG, "Watched " + request.getRepoOwner() + "/" + request.getRepoName() + " moved " +
+                previousSha + " -> " + newSha);
+        // repository_dispatch runs on the default branch; the app tracks its builds under BUILD_BRANCH
+        request.setBranch(BUILD_BRANCH);
+        TrackedBuild build = TrackedBuild.fromRequest(request);
+        TrackedBuild current = trackedBuilds.get(build.getKey());
+        if (current != null && !current.isCancelled() && isPreflight(current.getStage())) {
+            Log.d(TAG, "Skipping watch build of " + build.getKey() + ": one is already starting");
+            return;
+        }
+        startBuild(build);
+    }
+
+    private static boolean isPreflight(BuildStage stage) {
+        return stage.getStageId() > BuildStage.IDLE.getStageId() &&
+                stage.getStageId() < BuildStage.POLLING_STATUS.getStageId();
+    }
+
+    @SuppressWarnings("deprecation")
+    private boolean isOnline() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            NetworkCapabilities capabilities = connectivityManager.getNetworkCapabilities(connectivityManager.getActiveNetwork());
+            return capabilities != null && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                    && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+        }
+        // API 21-22 have no getActiveNetwork
+        NetworkInfo info = connectivityManager.getActiveNetworkInfo();
+        return info != null && info.isConnected();
+    }
+
     private void checkBuildButtonState() {
         boolean isRepoSelected = !currentRepoName.isEmpty();
         boolean hasGithubToken = !githubTokenInput.getText().toString().trim().isEmpty();
@@ -127,7 +391,12 @@ public class MainActivity extends AppCompatActivity {
         
         testConnectionBtn.setEnabled(hasTelegramDetails);
 
-        buildBtn.setEnabled(currentStage == BuildStage.IDLE && isRepoSelected && hasGithubToken && hasTelegramDetails);
+        // Builds being polled don't block a new one; a running pre-flight sequence does
+        boolean canStartBuild = currentStage == BuildStage.IDLE || currentStage == BuildStage.POLLING_STATUS ||
+                                currentStage == BuildStage.COMPLETED || currentStage == BuildStage.FAILED ||
+                                currentStage == BuildStage.CANCELLED || currentStage == BuildStage.QUEUED;
+        buildBtn.setEnabled(canStartBuild && isRepoSelected && hasGithubToken && hasTelegramDetails);
+        watchBtn.setEnabled(isRepoSelected && hasGithubToken && hasTelegramDetails);
     }
 
     private void parseRepoUrl(String fullRepoName) {
@@ -156,31 +425,95 @@ public class MainActivity extends AppCompatActivity {
         Log.d(TAG, "Stage updated: " + newStage.name() + " - " + message);
         checkBuildButtonState();
     }
+
+    /**
+     * Records a build's new stage/message and queues its dashboard row for the next frame.
+     * Safe to call from any thread.
+     */
+    private void publishBuild(TrackedBuild build, BuildStage stage, String message) {
+        // Late results from calls that were in flight when the build was cancelled are dropped
+        if (build.isCancelled() && stage != BuildStage.CANCELLED) return;
+        boolean wasFinished = build.isFinished();
+        build.setStage(stage);
+        build.setStatusMessage(message != null ? message : stage.getMessage());
+        dashboardUpdates.submit(build.getRowKey(), new BuildDashboardAdapter.Row(
+                build.getRowKey(),
+                build.getFullName() + " · " + build.getBuildType(),
+                build.getStatusMessage().trim(),
+                !build.isFinished()));
+        if (!wasFinished && build.isFinished()) {
+            mainHandler.postDelayed(() -> retireBuild(build), FINISHED_ROW_MILLIS);
+        }
+    }
+
+    /**
+     * Takes a finished build off the dashboard and stops tracking it, unless a newer
+     * build of the same key has replaced it meanwhile.
+     */
+    private void retireBuild(TrackedBuild build) {
+        if (isDestroyed()) return;
+        trackedBuilds.remove(build.getKey(), build);
+        dashboardUpdates.submit(build.getRowKey(), null);
+    }
+
+    /**
+     * Frame callback: applies all row changes gathered since the last frame in one pass.
+     */
+    private void renderDashboard(Map<String, BuildDashboardAdapter.Row> batch) {
+        dashboardAdapter.applyUpdates(batch);
+        dashboardCard.setVisibility(dashboardAdapter.getItemCount() > 0 ? View.VISIBLE : View.GONE);
+
+        TrackedBuild focused = focusedBuild;
+        if (focused != null && batch.get(focused.getRowKey()) != null) {
+            updateStage(focused.getStage(), focused.getStatusMessage());
+        }
+    }
     
     // =========================================================================
     // API & Build Logic 
     // =========================================================================
 
     private void fetchRepositories() {
-        final String token = githubTokenInput.getText().toString().trim();
-        if (token.isEmpty()) return;
+        final List<String> tokens = TokenPool.parse(githubTokenInput.getText().toString());
+        if (tokens.isEmpty()) return;
 
         updateStage(BuildStage.FETCHING_REPOS, BuildStage.FETCHING_REPOS.getMessage());
+        repoAdapter.clear();
+        latestRuns.clear();
         
         new Thread(() -> {
             try {
-                // FIX: Pass token to getRepositories
-                List<String> repos = gitHubService.getRepositories(token);
+                // One listing per account; the pool learns which token sees which repo
+                List<String> repos = new ArrayList<>();
+                Set<String> seen = new HashSet<>();
+                IOException lastError = null;
+                for (String token : tokens) {
+                    List<String> tokenRepos;
+                    try {
+                        // One GraphQL query per 100 repos brings each repo's latest run along with its name.
+                        // Index each page on this worker thread; the UI only re-runs the current query
+                        Map<String, WorkflowResponse> statuses = gitHubService.get().getDashboard(token, page -> {
+                            repoAdapter.addPage(page);
+                            mainHandler.post(repoAdapter::refresh);
+                        });
+                        tokenRepos = new ArrayList<>(statuses.keySet());
+                        latestRuns.putAll(statuses);
+                    } catch (IOException e) {
+                        Log.w(TAG, "Skipping a token whose repositories could not be listed", e);
+                        lastError = e;
+                        continue;
+                    }
+                    tokenPool.grantAccess(token, tokenRepos);
+                    for (String repo : tokenRepos) {
+                        if (seen.add(repo)) repos.add(repo);
+                    }
+                }
+                if (repos.isEmpty() && lastError != null) {
+                    throw lastError;
+                }
                 availableRepos = repos;
                 
                 mainHandler.post(() -> {
-                    ArrayAdapter<String> repoAdapter = new ArrayAdapter<>(
-                        MainActivity.this, 
-                        android.R.layout.simple_spinner_dropdown_item, 
-                        availableRepos
-                    );
-                    repoSpinner.setAdapter(repoAdapter);
-                    
                     if (repos.isEmpty()) {
                         updateStage(BuildStage.IDLE, "❌ No accessible repositories found. Check your token scope or try again.");
                     } else {
@@ -197,6 +530,15 @@ public class MainActivity extends AppCompatActivity {
         }).start();
     }
     
+    /**
+     * Shows the selected repo's latest run, as fetched with the repository list, while idle.
+     */
+    private void showLatestRun(String fullRepoName) {
+        WorkflowResponse latest = fullRepoName != null ? latestRuns.get(fullRepoName) : null;
+        if (latest == null || !latest.isSuccess() || currentStage != BuildStage.IDLE) return;
+        updateStage(BuildStage.IDLE, "Latest run of " + fullRepoName + ":\n" + latest.getMessage());
+    }
+
     private void testTelegramConnection() {
         final String botToken = botTokenInput.getText().toString().trim();
         final String userId = userIdInput.getText().toString().trim();
@@ -206,14 +548,19 @@ public class MainActivity extends AppCompatActivity {
 
         new Thread(() -> {
             try {
-                boolean success = telegramService.testConnection(botToken, userId);
+                // Every chat must accept the bot, or its build statuses would silently go missing
+                final List<String> failedChats = new ArrayList<>();
+                for (String chatId : TelegramService.parseChatIds(userId)) {
+                    if (!telegramService.get().testConnection(botToken, chatId)) failedChats.add(chatId);
+                }
                 
                 mainHandler.post(() -> {
-                    if (success) {
+                    if (failedChats.isEmpty()) {
                         Toast.makeText(MainActivity.this, "Telegram test successful! ✅", Toast.LENGTH_LONG).show();
                         updateStage(BuildStage.IDLE, "✅ Telegram connection verified. Ready to start the build!");
                     } else {
-                        updateStage(BuildStage.IDLE, "❌ Telegram test failed. Check your token, user ID, or bot's privacy settings.");
+                        updateStage(BuildStage.IDLE, "❌ Telegram test failed for " + android.text.TextUtils.join(", ", failedChats) +
+                                ". Check your token, user ID, or bot's privacy settings.");
                     }
                 });
             } catch (IOException e) {
@@ -234,217 +581,389 @@ public class MainActivity extends AppCompatActivity {
         // FIX: The GitHubService constructor is parameterless, so we don't need this line.
         // gitHubService = new GitHubService(githubToken); 
         
-        final String githubToken = githubTokenInput.getText().toString().trim();
-        currentBotToken = botTokenInput.getText().toString().trim();
-        currentUserId = userIdInput.getText().toString().trim();
-        
-        lastWorkflowRunId = "";
-        lastMessageId = "";
+        // Read all inputs here on the UI thread; the build carries its own copy from now on
+        final TrackedBuild build = new TrackedBuild(
+                currentRepoOwner,
+                currentRepoName,
+                BUILD_BRANCH,
+                currentBuildType,
+                githubTokenInput.getText().toString().trim(),
+                botTokenInput.getText().toString().trim(),
+                userIdInput.getText().toString().trim());
+        startBuild(build);
+    }
+
+    /**
+     * Starts tracking {@code build} and runs it on a new thread (or queues it while offline).
+     */
+    private void startBuild(final TrackedBuild build) {
+        // Same repo, branch and variant: the new build supersedes the one still in flight
+        final TrackedBuild superseded = trackedBuilds.put(build.getKey(), build);
+        focusedBuild = build;
         
-        new Thread(this::runBuildSequence).start();
+        new Thread(() -> {
+            if (superseded != null) {
+                cancelBuild(superseded, "Superseded by a newer build");
+            }
+            if (!isOnline()) {
+                queueBuild(build, "Device is offline.");
+                return;
+            }
+            runBuildSequence(build);
+        }).start();
     }
-    
-    private void runBuildSequence() {
-        // Retrieve the token inside the thread for safety
-        final String githubToken = githubTokenInput.getText().toString().trim(); 
 
-        try {
-            // 1. VERIFYING_ACCESS
-            mainHandler.post(() -> updateStage(BuildStage.VERIFYING_ACCESS, BuildStage.VERIFYING_ACCESS.getMessage()));
-            // FIX: Pass token to verifyRepositoryAccess
-            if (!gitHubService.verifyRepositoryAccess(currentRepoOwner, currentRepoName, githubToken)) {
-                throw new Exception("Repository access failed. Check token permissions (repo scope).");
+    private void onCancelRequested(String rowKey) {
+        for (final TrackedBuild build : trackedBuilds.values()) {
+            if (build.getRowKey().equals(rowKey)) {
+                new Thread(() -> cancelBuild(build, "Cancelled from the app")).start();
+                return;
             }
-            
-            // 2. SETUP_WORKFLOW
-            mainHandler.post(() -> updateStage(BuildStage.SETUP_WORKFLOW, BuildStage.SETUP_WORKFLOW.getMessage()));
-            String workflowContent = generateWorkflowYaml(currentBotToken, currentUserId, currentBuildType);
-            // FIX: Pass token to createWorkflowFile
-            gitHubService.createWorkflowFile(currentRepoOwner, currentRepoName, githubToken, workflowContent);
-            
-            // 3. TRIGGER_BUILD
-            mainHandler.post(() -> updateStage(BuildStage.TRIGGER_BUILD, BuildStage.TRIGGER_BUILD.getMessage()));
-            // FIX: Pass token and currentBuildType to dispatchWorkflow
-            gitHubService.dispatchWorkflow(currentRepoOwner, currentRepoName, githubToken, currentBuildType);
+        }
+    }
 
-            // Send initial Telegram message after successful trigger
-            sendInitialTelegramMessage();
+    /**
+     * Stops tracking a build, aborts its pending HTTP calls and asks GitHub to cancel its run.
+     * Runs on a worker thread; the dashboard shows the cancellation on the next frame.
+     */
+    private void cancelBuild(TrackedBuild build, String reason) {
+        if (!build.markCancelled()) return;
+        publishBuild(build, BuildStage.CANCELLED, "🛑 " + reason + ".");
 
-            // 4. POLLING_STATUS
-            mainHandler.post(() -> {
-                updateStage(BuildStage.POLLING_STATUS, "🚀 Build triggered successfully. Monitoring status...");
-                startStatusPolling();
-            });
-            
-        } catch (Exception e) {
-            Log.e(TAG, "Build Sequence Failed", e);
-            mainHandler.post(() -> { 
-                updateStage(BuildStage.FAILED, "❌ BUILD FAILED: " + e.getMessage());
-                if (statusScheduler != null) statusScheduler.shutdownNow();
-                updateTelegramMessage(BuildStage.FAILED.getTelegramStatus(), "Build failed with error: " + e.getMessage());
-            });
+        if (build.getQueueSeq() != 0) {
+            try {
+                buildQueue.remove(build.getKey(), build.getQueueSeq());
+            } catch (IOException e) {
+                Log.w(TAG, "Could not remove " + build.getKey() + " from the build queue", e);
+            }
         }
+
+        // Only this build's calls: other builds of the repo may be waiting on a shared GET
+        int aborted = HttpClients.cancelCalls(build.getId());
+        Log.d(TAG, "Cancelling " + build.getKey() + ": aborted " + aborted + " pending call(s)");
+
+        try {
+            String runId = build.getRunId();
+            if (runId.isEmpty() && build.getDispatchedAtMillis() > 0) {
+                // Dispatched but not yet matched to a run: look it up once so it can be cancelled
+                WorkflowResponse run = buildPipeline.get().findRun(build);
+                if (run != null) runId = run.getRunId();
+            }
+            if (!runId.isEmpty()) {
+                gitHubService.get().cancelWorkflowRun(build.getRepoOwner(), build.getRepoName(), tokenFor(build), runId);
+            }
+        } catch (IOException e) {
+            // 409 means the run already finished; anything else is logged and the build stays cancelled locally
+            Log.w(TAG, "Could not cancel run for " + build.getKey() + ": " + e.getMessage());
+        }
+        if (build.getTelegram().isAnnounced()) {
+            // Builds cancelled before dispatch never announced themselves on Telegram
+            updateTelegramMessage(build, BuildStage.CANCELLED.getTelegramStatus(), reason + ".");
+        }
+    }
+
+    private String tokenFor(TrackedBuild build) throws ApiException {
+        return buildPipeline.get().tokenFor(build);
     }
     
-    private void startStatusPolling() {
-        if (statusScheduler != null && !statusScheduler.isShutdown()) {
-            statusScheduler.shutdownNow();
+    private void runBuildSequence(TrackedBuild build) {
+        try {
+            executeBuild(build);
+        } catch (Exception e) {
+            if (reportBuildFailure(build, e)) {
+                queueBuild(build, "GitHub is unreachable: " + e.getMessage());
+            }
         }
-        
-        statusScheduler = Executors.newSingleThreadScheduledExecutor();
-        statusScheduler.scheduleAtFixedRate(this::pollStatus, 5, 10, TimeUnit.SECONDS); 
     }
 
-    private void pollStatus() {
-        final String githubToken = githubTokenInput.getText().toString().trim();
-
+    /**
+     * Persists the build in the offline queue; it is dispatched once connectivity returns.
+     * Runs on a worker thread (the queue syncs to disk).
+     */
+    private void queueBuild(TrackedBuild build, String reason) {
         try {
-            // FIX: Pass token to getLatestWorkflowStatus
-            WorkflowResponse response = gitHubService.getLatestWorkflowStatus(
-                currentRepoOwner, 
-                currentRepoName,
-                githubToken
-            );
+            build.setQueueSeq(buildQueue.enqueue(build.toRequest()));
+            publishBuild(build, BuildStage.QUEUED, "📥 " + reason + "\n\nQueued; it will be sent once the connection is back.");
+        } catch (IOException e) {
+            Log.e(TAG, "Could not queue build " + build.getKey(), e);
+            publishBuild(build, BuildStage.FAILED, "❌ BUILD FAILED: " + reason);
+        }
+    }
 
-            mainHandler.post(() -> {
-                statusText.setText(response.getMessage()); 
-                
-                if (response.isActive()) {
-                    if (lastWorkflowRunId.isEmpty() && response.getRunId() != null) {
-                        lastWorkflowRunId = response.getRunId();
+    /**
+     * Sends queued builds in the background. Safe to call repeatedly; only one drain runs at a time.
+     */
+    private void drainBuildQueue() {
+        if (preflightPool.isShutdown()) return; // a delayed retry that outlived the activity
+        preflightPool.execute(() -> {
+            try {
+                boolean drained = buildQueue.drain(entry -> {
+                    TrackedBuild build = trackedBuildFor(entry);
+                    if (build.isCancelled()) return;
+                    try {
+                        executeBuild(build);
+                    } catch (Exception e) {
+                        if (reportBuildFailure(build, e)) {
+                            publishBuild(build, BuildStage.QUEUED, "📥 Still queued: " + e.getMessage());
+                        }
+                        throw e; // the queue keeps transient failures and drops the rest
                     }
-                    updateTelegramMessage(BuildStage.POLLING_STATUS.getTelegramStatus(), response.formatTelegramMessage(currentRepoOwner + "/" + currentRepoName));
-                    
-                } else if (response.getConclusion() != null) {
-                    statusScheduler.shutdownNow();
-                    
-                    if (response.isSuccessful()) {
-                        updateStage(BuildStage.COMPLETED, response.getMessage());
-                    } else {
-                        updateStage(BuildStage.FAILED, response.getMessage());
+                }, new BuildQueue.Listener() {
+                    @Override
+                    public void onDispatched(BuildQueue.Entry entry) {
+                        Log.d(TAG, "Dispatched queued build " + entry.getRequest().getKey());
+                    }
+
+                    @Override
+                    public void onDropped(BuildQueue.Entry entry, Exception error) {
+                        Log.w(TAG, "Dropped queued build " + entry.getRequest().getKey() + ": " + error.getMessage());
                     }
-                    
-                    updateTelegramMessage(response.isSuccessful() ? BuildStage.COMPLETED.getTelegramStatus() : BuildStage.FAILED.getTelegramStatus(), 
-                                          response.formatTelegramMessage(currentRepoOwner + "/" + currentRepoName));
+                });
+                if (!drained && isOnline()) {
+                    // Connected but GitHub keeps failing: no network change will come to retry for us
+                    mainHandler.postDelayed(this::drainBuildQueue, QUEUE_RETRY_DELAY_MS);
                 }
-            }); 
-            
+            } catch (IOException e) {
+                Log.e(TAG, "Could not drain the build queue", e);
+            }
+        });
+    }
+
+    /**
+     * The tracked build for a queue entry; entries from an earlier session get a new one.
+     */
+    private TrackedBuild trackedBuildFor(BuildQueue.Entry entry) {
+        synchronized (trackedBuilds) {
+            BuildRequest request = entry.getRequest();
+            TrackedBuild build = trackedBuilds.get(request.getKey());
+            if (build == null || build.getQueueSeq() != entry.getSeq()) {
+                build = TrackedBuild.fromRequest(request);
+                build.setQueueSeq(entry.getSeq());
+                trackedBuilds.put(build.getKey(), build);
+            }
+            return build;
+        }
+    }
+
+    /**
+     * Reports a failed pre-flight on the dashboard and Telegram.
+     * @return True if the failure is transient (offline, 5xx) and the build should stay queued instead.
+     */
+    private boolean reportBuildFailure(TrackedBuild build, Exception e) {
+        if (build.isCancelled()) {
+            Log.d(TAG, "Pre-flight stopped for cancelled build " + build.getKey());
+            return false;
+        }
+        if (ApiException.isTransient(e)) {
+            Log.w(TAG, "Transient failure for " + build.getKey() + ": " + e.getMessage());
+            return true;
+        }
+        Log.e(TAG, "Build Sequence Failed", e);
+        publishBuild(build, BuildStage.FAILED, "❌ BUILD FAILED: " + e.getMessage());
+        updateTelegramMessage(build, BuildStage.FAILED.getTelegramStatus(), "Build failed with error: " + e.getMessage());
+        return false;
+    }
+
+    /**
+     * Runs the pre-flight graph and dispatch, then hands the build to the poller.
+     */
+    private void executeBuild(TrackedBuild build) throws Exception {
+        BuildPipeline.Dispatch dispatch;
+        try {
+            dispatch = buildPipeline.get().dispatch(build);
+        } catch (Exception e) {
+            Log.d(TAG, "Pre-flight stopped for " + build.getKey());
+            throw e;
+        }
+        Log.d(TAG, "Pre-flight timings for " + build.getKey() + ": " + dispatch.getTimings());
+
+        if (dispatch.getCachedBuild() != null) {
+            Log.d(TAG, "Build cache hit for " + build.getKey() + ": run " + dispatch.getCachedBuild().getRunId());
+            deliverCachedBuild(build, dispatch.getCachedBuild());
+            return;
+        }
+
+        // Send initial Telegram message after successful trigger
+        sendInitialTelegramMessage(build);
+
+        // POLLING_STATUS
+        publishBuild(build, BuildStage.POLLING_STATUS, "🚀 Build triggered successfully. Monitoring status...\n\n" +
+                formatStageTimings(dispatch.getTimings()));
+        startStatusPolling();
+    }
+
+    /**
+     * Tells the repo watcher about the commit we just made, so it doesn't trigger another build.
+     */
+    private void acknowledgeOwnCommit(TrackedBuild build) {
+        try {
+            if (!repoWatcher.get().isWatching(build.getFullName())) return;
+            String headSha = buildPipeline.get().gitHubFor(build).getBranchHeadSha(build.getRepoOwner(),
+                    build.getRepoName(), tokenFor(build), build.getBranch());
+            repoWatcher.get().acknowledge(build.getFullName(), headSha);
         } catch (IOException e) {
-            Log.e(TAG, "Polling Error", e);
-            mainHandler.post(() -> {
-                statusScheduler.shutdownNow();
-                updateStage(BuildStage.FAILED, "❌ Polling Error: " + e.getMessage());
-                updateTelegramMessage(BuildStage.FAILED.getTelegramStatus(), "Polling failed with error: " + e.getMessage());
-            });
+            // Worst case the watcher starts one extra build of this commit
+            Log.w(TAG, "Could not acknowledge workflow commit for " + build.getKey(), e);
         }
     }
 
-    // --- Telegram Logic (Runs on worker threads) ---
+    /**
+     * Completes a build from the cache: the same commit was already built with the same
+     * workflow, and that run sent its APK to Telegram when it finished.
+     */
+    private void deliverCachedBuild(TrackedBuild build, BuildCache.Entry entry) {
+        build.setRunId(entry.getRunId());
+        String commit = entry.getHeadSha().substring(0, Math.min(7, entry.getHeadSha().length()));
+        publishBuild(build, BuildStage.COMPLETED, "♻️ Commit " + commit + " was already built (" +
+                entry.getBuildType() + ") in run #" + entry.getRunNumber() + ". Nothing new to build.\n\n" +
+                "🔗 " + entry.getHtmlUrl());
 
-    private void sendInitialTelegramMessage() {
-        new Thread(() -> {
+        String message = "♻️ <b>APK Builder Pro - Already Built</b>\n\n" +
+                "📦 Repository: " + build.getFullName() + "\n" +
+                "🔨 Build Type: " + entry.getBuildType() + "\n" +
+                "🔖 Commit: <code>" + commit + "</code>\n\n" +
+                "The APK from this commit was sent here when run #" + entry.getRunNumber() + " finished.\n" +
+                "<a href=\"" + entry.getHtmlUrl() + "\">🔗 View the run</a>";
+        telegramBroadcaster.get().announce(build.getTelegram(), message);
+    }
+
+    /**
+     * Fetches the finished run's step timings, adds them to the trends and appends the
+     * slowest steps to the build's row. Off the poller thread: it is one more call per build
+     * and only informational, so a failure is just logged.
+     */
+    private void reportStepTimings(final TrackedBuild build, final WorkflowResponse response) {
+        if (preflightPool.isShutdown()) return;
+        preflightPool.execute(() -> {
             try {
-                String message = "🚀 <b>APK Builder Pro - Build Started</b>\n\n" +
-                               "🏗️ Setting up CI/CD workflow and triggering build...\n\n" +
-                               "📦 Repository: " + currentRepoOwner + "/" + currentRepoName + "\n" +
-                               "🔨 Build Type: " + currentBuildType;
-                
-                String messageId = telegramService.sendMessageWithId(currentBotToken, currentUserId, message);
-                if (messageId != null) {
-                    lastMessageId = messageId;
+                List<StepTiming> steps = gitHubService.get().getRunSteps(build.getRepoOwner(), build.getRepoName(),
+                        tokenFor(build), response.getRunId());
+                stepTrends.get().record(build.getFullName(), response.getRunId(), steps);
+                List<StepTrends.StepStats> slowest = stepTrends.get().slowest(build.getFullName(), SLOWEST_STEPS_SHOWN);
+                if (slowest.isEmpty()) return;
+                String report = StepTrends.formatReport(slowest);
+                Log.d(TAG, "Step timings for " + build.getKey() + ":\n" + report);
+                if (build.getStage() == BuildStage.COMPLETED) {
+                    publishBuild(build, BuildStage.COMPLETED, response.getMessage() + "\n\n" + report);
                 }
-            } catch (Exception e) {
-                Log.e(TAG, "Failed to send initial Telegram message", e);
+            } catch (IOException e) {
+                Log.w(TAG, "Could not record step timings for " + build.getKey(), e);
             }
-        }).start();
+        });
     }
 
-    private void updateTelegramMessage(String statusTitle, String details) {
-        if (lastMessageId.isEmpty()) {
-            sendInitialTelegramMessage(); 
-            return;
+    private static String formatStageTimings(Map<BuildStage, Long> timings) {
+        StringBuilder sb = new StringBuilder("⏱️ Pre-flight:");
+        for (Map.Entry<BuildStage, Long> entry : timings.entrySet()) {
+            sb.append("\n  • ").append(entry.getKey().name().toLowerCase(java.util.Locale.US))
+              .append(": ").append(entry.getValue()).append(" ms");
         }
+        return sb.toString();
+    }
+    
+    /**
+     * Starts the shared poller if it isn't running; one scheduler serves every tracked build.
+     */
+    private void startStatusPolling() {
+        synchronized (schedulerLock) {
+            if (statusScheduler != null && !statusScheduler.isShutdown()) {
+                return;
+            }
+            statusScheduler = Executors.newSingleThreadScheduledExecutor();
+            statusScheduler.scheduleAtFixedRate(this::pollActiveBuilds, 5, 10, TimeUnit.SECONDS); 
+        }
+    }
 
-        new Thread(() -> {
-            try {
-                String fullMessage = "<b>" + statusTitle + "</b>\n\n" + details;
-                telegramService.editMessage(currentBotToken, currentUserId, lastMessageId, fullMessage);
-            } catch (Exception e) {
-                Log.e(TAG, "Failed to update Telegram message", e);
+    private void pollActiveBuilds() {
+        boolean anyPolling = false;
+        for (TrackedBuild build : trackedBuilds.values()) {
+            if (build.getStage() == BuildStage.POLLING_STATUS) {
+                anyPolling = true;
+                pollStatus(build);
             }
-        }).start();
+        }
+
+        if (anyPolling) {
+            Log.d(TAG, "Token pool:\n" + tokenPool.describe());
+        } else {
+            synchronized (schedulerLock) {
+                // Re-check under the lock: a build may have just entered POLLING_STATUS
+                for (TrackedBuild build : trackedBuilds.values()) {
+                    if (build.getStage() == BuildStage.POLLING_STATUS) return;
+                }
+                if (statusScheduler != null) statusScheduler.shutdown();
+                statusScheduler = null;
+            }
+        }
     }
-    
-    // --- YAML Generation (Kept as is) ---
-    private String generateWorkflowYaml(String botToken, String userId, String buildType) {
-        String buildCommand = "debug".equals(buildType) ? "assembleDebug" : 
-                             "release".equals(buildType) ? "assembleRelease" : 
-                             "assemble";
-
-        return "name: Android CI with APK Builder Pro\n" +
-                "\n" +
-                "on:\n" +
-                "  repository_dispatch:\n" +
-                "    types: [run_android_build]\n" +
-                "    inputs:\n" +
-                "      build_type:\n" +
-                "        description: 'Build variant'\n" +
-                "        required: true\n" +
-                "        default: 'release'\n" +
-                "\n" +
-                "jobs:\n" +
-                "  build:\n" +
-                "    runs-on: ubuntu-latest\n" +
-                "\n" +
-                "    steps:\n" +
-                "    - name: 🚀 Checkout code\n" +
-                "      uses: actions/checkout@v4\n" +
-                "\n" +
-                "    - name: 🛠️ Set up Java\n" +
-                "      uses: actions/setup-java@v4\n" +
-                "      with:\n" +
-                "        distribution: 'temurin'\n" +
-                "        java-version: '17'\n" +
-                "        cache: 'gradle'\n" +
-                "\n" +
-                "    - name: 🔑 Grant execute permission to gradlew\n" +
-                "      run: chmod +x gradlew\n" +
-                "\n" +
-                "    - name: 🏗️ Build APK\n" +
-                "      run: |\n" +
-                "        ./gradlew clean\n" +
-                "        ./gradlew " + buildCommand + "\n" +
-                "\n" +
-                "    - name: 🔍 Find APK\n" +
-                "      id: find_apk\n" +
-                "      run: |\n" +
-                "        APK_PATH=$(find ./app/build/outputs/apk/ -name \"*." + buildType + ".apk\" | grep -v \"unsigned\" | head -1)\n" +
-                "        if [ -z \"$APK_PATH\" ]; then\n" +
-                "          APK_PATH=$(find . -name \"*.apk\" | grep -v \"unsigned\" | head -1)\n" +
-                "        fi\n" +
-                "        echo \"APK_PATH=$APK_PATH\" >> $GITHUB_OUTPUT\n" +
-                "        echo \"📱 Found APK: $APK_PATH\"\n" +
-                "\n" +
-                "    - name: 📤 Send to Telegram\n" +
-                "      uses: appleboy/telegram-action@master\n" +
-                "      if: always()\n" + 
-                "      with:\n" +
-                "        to: " + userId + "\n" +
-                "        token: " + botToken + "\n" +
-                "        document: ${{ steps.find_apk.outputs.APK_PATH }}\n" +
-                "        caption: |\n" +
-                "          🚀 APK Build Complete!\n" +
-                "          \n" +
-                "          📦 Project: ${{ github.repository }}\n" +
-                "          📱 Build Type: " + buildType + "\n" +
-                "          🔨 Status: ${{ job.status }}\n" +
-                "          ✅ Ready to install!\n" +
-                "\n" +
-                "    - name: 📊 Final Report\n" +
-                "      if: always()\n" +
-                "      run: echo \"Final Job Status: ${{ job.status }}\"";
+
+    private void pollStatus(TrackedBuild build) {
+        try {
+            BuildPipeline.RunUpdate update = buildPipeline.get().poll(build);
+            if (update == null) {
+                if (buildPipeline.get().isDispatchLost(build)) {
+                    // GitHub never acted on the failed dispatch: now it is safe to send it again
+                    Log.w(TAG, "No run appeared for the unconfirmed dispatch of " + build.getKey());
+                    queueBuild(build, "GitHub did not start the build.");
+                    if (isOnline()) drainBuildQueue();
+                }
+                return; // No run yet, or nothing changed since the last poll
+            }
+            WorkflowResponse response = update.getResponse();
+            Log.d(TAG, "Run transition for " + build.getKey() + ": " + update.getTransition().describe());
+
+            if (response.isActive()) {
+                String step = update.getTransition().getCurrent().getCurrentStep();
+                publishBuild(build, BuildStage.POLLING_STATUS, response.formatStatusMessage(step));
+                updateTelegramMessage(build, BuildStage.POLLING_STATUS.getTelegramStatus(), response.formatTelegramMessage(build.getFullName(), step));
+                
+            } else if (response.getConclusion() != null) {
+                BuildStage finalStage = response.isSuccessful() ? BuildStage.COMPLETED : BuildStage.FAILED;
+                publishBuild(build, finalStage, response.getMessage());
+                updateTelegramMessage(build, finalStage.getTelegramStatus(), response.formatTelegramMessage(build.getFullName()));
+                if (response.isSuccessful()) reportStepTimings(build, response);
+            } else {
+                publishBuild(build, BuildStage.POLLING_STATUS, response.getMessage());
+            }
+            
+        } catch (IOException e) {
+            if (build.isCancelled()) {
+                return; // cancelBuild aborted this request
+            }
+            if (ApiException.isTransient(e)) {
+                // The run keeps going on GitHub whether or not we can see it; keep polling
+                // rather than failing the build and forcing a re-dispatch
+                int failures = build.recordPollFailure();
+                Log.w(TAG, "Transient polling error #" + failures + " for " + build.getKey(), e);
+                publishBuild(build, BuildStage.POLLING_STATUS,
+                        "⚠️ GitHub unreachable, still following the run (attempt " + failures + "): " + e.getMessage());
+                return;
+            }
+            Log.e(TAG, "Polling Error", e);
+            publishBuild(build, BuildStage.FAILED, "❌ Polling Error: " + e.getMessage());
+            updateTelegramMessage(build, BuildStage.FAILED.getTelegramStatus(), "Polling failed with error: " + e.getMessage());
+        }
+    }
+
+    // --- Telegram Logic (Runs on worker threads) ---
+
+    private void sendInitialTelegramMessage(TrackedBuild build) {
+        String message = "🚀 <b>APK Builder Pro - Build Started</b>\n\n" +
+                       "🏗️ Setting up CI/CD workflow and triggering build...\n\n" +
+                       "📦 Repository: " + build.getFullName() + "\n" +
+                       "🔨 Build Type: " + build.getBuildType();
+        telegramBroadcaster.get().publish(build.getTelegram(), message);
     }
 
+    /**
+     * Renders the status once and hands it to the broadcaster, which sends or edits the
+     * build's message in each chat (sending first where there is none yet).
+     */
+    private void updateTelegramMessage(TrackedBuild build, String statusTitle, String details) {
+        String fullMessage = "<b>" + statusTitle + "</b>\n\n" + details;
+        telegramBroadcaster.get().publish(build.getTelegram(), fullMessage);
+    }
+    
     private static class SimpleTextWatcher implements android.text.TextWatcher {
         private final Runnable callback;
         public SimpleTextWatcher(Runnable callback) { this.callback = callback; }
@@ -459,8 +978,19 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (statusScheduler != null && !statusScheduler.isShutdown()) {
-            statusScheduler.shutdownNow();
+        dashboardUpdates.cancel();
+        // Never created if the activity closed before the warm-up got to them
+        RepoWatcher watcher = repoWatcher.peek();
+        if (watcher != null) watcher.stop();
+        TelegramBroadcaster broadcaster = telegramBroadcaster.peek();
+        if (broadcaster != null) broadcaster.shutdown();
+        connectivityManager.unregisterNetworkCallback(networkCallback);
+        buildQueue.shutdown();
+        preflightPool.shutdownNow();
+        synchronized (schedulerLock) {
+            if (statusScheduler != null && !statusScheduler.isShutdown()) {
+                statusScheduler.shutdownNow();
+            }
         }
     }
 }
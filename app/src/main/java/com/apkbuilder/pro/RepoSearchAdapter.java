@@ -0,0 +1,106 @@
+package com.apkbuilder.pro;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.Filter;
+import android.widget.Filterable;
+import android.widget.TextView;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dropdown adapter for the repository picker backed by a {@link RepoSearchIndex}.
+ * Filtering runs on the Filter's worker thread, so the UI thread only swaps
+ * in the ranked result list.
+ */
+public class RepoSearchAdapter extends BaseAdapter implements Filterable {
+
+    // Enough to fill the dropdown; the rest is reachable by typing
+    private static final int MAX_RESULTS = 200;
+
+    private final LayoutInflater inflater;
+    private final int layoutRes;
+    private final RepoSearchIndex index = new RepoSearchIndex();
+    private List<String> results = new ArrayList<>();
+    private CharSequence lastQuery = "";
+
+    private final Filter filter = new Filter() {
+        @Override
+        protected FilterResults performFiltering(CharSequence constraint) {
+            List<String> matches = index.search(constraint, MAX_RESULTS);
+            FilterResults filterResults = new FilterResults();
+            filterResults.values = matches;
+            filterResults.count = matches.size();
+            return filterResults;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void publishResults(CharSequence constraint, FilterResults filterResults) {
+            lastQuery = constraint != null ? constraint : "";
+            results = filterResults.values != null ? (List<String>) filterResults.values : new ArrayList<String>();
+            notifyDataSetChanged();
+        }
+
+        @Override
+        public CharSequence convertResultToString(Object resultValue) {
+            return (String) resultValue;
+        }
+    };
+
+    public RepoSearchAdapter(Context context, int layoutRes) {
+        this.inflater = LayoutInflater.from(context);
+        this.layoutRes = layoutRes;
+    }
+
+    /**
+     * Indexes a page of repositories. Safe to call from a worker thread;
+     * call {@link #refresh()} on the UI thread afterwards to show the new entries.
+     */
+    public void addPage(List<String> page) {
+        index.addAll(page);
+    }
+
+    public void clear() {
+        index.clear();
+        results = new ArrayList<>();
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Re-runs the last query against the current index.
+     */
+    public void refresh() {
+        filter.filter(lastQuery);
+    }
+
+    @Override
+    public int getCount() {
+        return results.size();
+    }
+
+    @Override
+    public String getItem(int position) {
+        return results.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        TextView view = (TextView) (convertView != null ? convertView : inflater.inflate(layoutRes, parent, false));
+        view.setText(getItem(position));
+        return view;
+    }
+
+    @Override
+    public Filter getFilter() {
+        return filter;
+    }
+}
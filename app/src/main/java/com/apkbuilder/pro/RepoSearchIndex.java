@@ -0,0 +1,300 @@
+package com.apkbuilder.pro;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory search index over "owner/name" repository names.
+ * Queries of three or more characters are answered from a trigram index
+ * (substring match anywhere, e.g. the part after "owner/"); shorter queries
+ * use a token-prefix index. If nothing matches, a subsequence ("fuzzy")
+ * pass catches typos and skipped characters. Entries can be added incrementally while
+ * pages are still arriving; all methods are safe to call from any thread.
+ */
+public class RepoSearchIndex {
+
+    private static final int SCORE_EXACT = 1000;
+    private static final int SCORE_NAME_PREFIX = 800;
+    private static final int SCORE_FULL_PREFIX = 700;
+    private static final int SCORE_TOKEN_PREFIX = 600;
+    private static final int SCORE_NAME_SUBSTRING = 400;
+    private static final int SCORE_SUBSTRING = 300;
+    private static final int SCORE_FUZZY = 100;
+
+    private final List<String> names = new ArrayList<>();
+    private final List<String> lowerNames = new ArrayList<>();
+    // Per-entry character-class bitmask; lets the fuzzy pass skip most entries without scanning them
+    private long[] charMasks = new long[64];
+    private final Set<String> known = new HashSet<>();
+    private final Map<String, IntList> trigrams = new HashMap<>();
+    private final Map<String, IntList> shortPrefixes = new HashMap<>();
+
+    /**
+     * Adds repositories to the index, skipping ones already present.
+     */
+    public synchronized void addAll(List<String> repoNames) {
+        for (String name : repoNames) {
+            if (name == null || !known.add(name)) continue;
+
+            int id = names.size();
+            String lower = name.toLowerCase(Locale.US);
+            names.add(name);
+            lowerNames.add(lower);
+            if (id == charMasks.length) {
+                charMasks = Arrays.copyOf(charMasks, id * 2);
+            }
+            charMasks[id] = charMask(lower);
+
+            for (int i = 0; i + 3 <= lower.length(); i++) {
+                post(trigrams, lower.substring(i, i + 3), id);
+            }
+            // One- and two-character prefixes of every token (owner, name, and their "-_." parts)
+            int tokenStart = 0;
+            for (int i = 0; i <= lower.length(); i++) {
+                if (i == lower.length() || isSeparator(lower.charAt(i))) {
+                    if (i > tokenStart) {
+                        post(shortPrefixes, lower.substring(tokenStart, tokenStart + 1), id);
+                        if (i - tokenStart >= 2) {
+                            post(shortPrefixes, lower.substring(tokenStart, tokenStart + 2), id);
+                        }
+                    }
+                    tokenStart = i + 1;
+                }
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        names.clear();
+        lowerNames.clear();
+        known.clear();
+        trigrams.clear();
+        shortPrefixes.clear();
+    }
+
+    public synchronized int size() {
+        return names.size();
+    }
+
+    /**
+     * Returns up to {@code limit} repository names matching the query, best match first.
+     * An empty query returns the first entries in insertion order.
+     */
+    public synchronized List<String> search(CharSequence query, int limit) {
+        String q = query == null ? "" : query.toString().trim().toLowerCase(Locale.US);
+        List<String> results = new ArrayList<>();
+        if (q.isEmpty()) {
+            for (int i = 0; i < names.size() && i < limit; i++) {
+                results.add(names.get(i));
+            }
+            return results;
+        }
+
+        TopK top = new TopK(limit);
+        IntList candidates = q.length() >= 3 ? intersectTrigrams(q) : shortPrefixes.get(q);
+        if (candidates != null) {
+            for (int i = 0; i < candidates.size; i++) {
+                int id = candidates.values[i];
+                int score = scoreSubstring(lowerNames.get(id), q);
+                if (score > 0) {
+                    top.offer(rank(id, score));
+                }
+            }
+        }
+
+        // Fuzzy pass only when the indexed lookup found nothing (typos, skipped characters)
+        if (top.size == 0 && q.length() >= 2) {
+            long queryMask = charMask(q);
+            for (int id = 0; id < names.size(); id++) {
+                if ((charMasks[id] & queryMask) != queryMask) continue;
+                int score = scoreSubsequence(lowerNames.get(id), q);
+                if (score > 0) {
+                    top.offer(rank(id, score));
+                }
+            }
+        }
+
+        long[] ranked = top.sortedDescending();
+        for (long r : ranked) {
+            results.add(names.get(idOf(r)));
+        }
+        return results;
+    }
+
+    /**
+     * Packs score, name length and id into one sortable long: higher score first,
+     * then shorter names, then earlier insertion.
+     */
+    private long rank(int id, int score) {
+        long shortness = 0x3FF - Math.min(names.get(id).length(), 0x3FF);
+        return ((long) score << 40) | (shortness << 30) | (0x3FFFFFFF - id);
+    }
+
+    private static int idOf(long rank) {
+        return 0x3FFFFFFF - (int) (rank & 0x3FFFFFFF);
+    }
+
+    private IntList intersectTrigrams(String q) {
+        IntList smallest = null;
+        List<IntList> lists = new ArrayList<>();
+        for (int i = 0; i + 3 <= q.length(); i++) {
+            IntList list = trigrams.get(q.substring(i, i + 3));
+            if (list == null) return null; // a trigram nobody has: no substring match possible
+            lists.add(list);
+            if (smallest == null || list.size < smallest.size) smallest = list;
+        }
+
+        IntList result = smallest;
+        for (IntList list : lists) {
+            if (list != smallest) result = result.intersect(list);
+        }
+        return result;
+    }
+
+    private static int scoreSubstring(String lower, String q) {
+        int index = lower.indexOf(q);
+        if (index < 0) return 0;
+
+        int slash = lower.indexOf('/');
+        boolean namePrefix = lower.startsWith(q, slash + 1);
+        if (lower.length() == q.length() || (namePrefix && lower.length() - slash - 1 == q.length())) {
+            return SCORE_EXACT;
+        }
+        if (namePrefix) return SCORE_NAME_PREFIX;
+        if (index == 0) return SCORE_FULL_PREFIX;
+        if (isSeparator(lower.charAt(index - 1))) return SCORE_TOKEN_PREFIX;
+        // Earlier hits inside the repo name rank higher
+        return (index > slash ? SCORE_NAME_SUBSTRING : SCORE_SUBSTRING) - Math.min(index, 99);
+    }
+
+    /**
+     * Scores the query as an in-order subsequence of the name; tighter spans score higher.
+     */
+    private static int scoreSubsequence(String lower, String q) {
+        int first = -1;
+        int pos = 0;
+        for (int i = 0; i < q.length(); i++) {
+            pos = lower.indexOf(q.charAt(i), pos);
+            if (pos < 0) return 0;
+            if (first < 0) first = pos;
+            pos++;
+        }
+        int gaps = (pos - first) - q.length();
+        return Math.max(1, SCORE_FUZZY - gaps);
+    }
+
+    private static long charMask(String lower) {
+        long mask = 0;
+        for (int i = 0; i < lower.length(); i++) {
+            mask |= 1L << (lower.charAt(i) & 63);
+        }
+        return mask;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '/' || c == '-' || c == '_' || c == '.';
+    }
+
+    private static void post(Map<String, IntList> index, String key, int id) {
+        IntList list = index.get(key);
+        if (list == null) {
+            list = new IntList();
+            index.put(key, list);
+        }
+        list.addUnique(id);
+    }
+
+    /**
+     * Keeps the {@code k} largest ranks in a min-heap, so large match sets are never fully sorted.
+     */
+    private static class TopK {
+        final long[] heap;
+        int size;
+
+        TopK(int k) {
+            heap = new long[Math.max(k, 0)];
+        }
+
+        void offer(long value) {
+            if (heap.length == 0) return;
+            if (size < heap.length) {
+                int i = size++;
+                heap[i] = value;
+                while (i > 0 && heap[(i - 1) / 2] > heap[i]) {
+                    swap((i - 1) / 2, i);
+                    i = (i - 1) / 2;
+                }
+            } else if (value > heap[0]) {
+                heap[0] = value;
+                int i = 0;
+                while (true) {
+                    int left = 2 * i + 1, right = left + 1, smallest = i;
+                    if (left < size && heap[left] < heap[smallest]) smallest = left;
+                    if (right < size && heap[right] < heap[smallest]) smallest = right;
+                    if (smallest == i) break;
+                    swap(i, smallest);
+                    i = smallest;
+                }
+            }
+        }
+
+        long[] sortedDescending() {
+            long[] sorted = new long[size];
+            System.arraycopy(heap, 0, sorted, 0, size);
+            Arrays.sort(sorted);
+            for (int i = 0, j = size - 1; i < j; i++, j--) {
+                long tmp = sorted[i];
+                sorted[i] = sorted[j];
+                sorted[j] = tmp;
+            }
+            return sorted;
+        }
+
+        private void swap(int a, int b) {
+            long tmp = heap[a];
+            heap[a] = heap[b];
+            heap[b] = tmp;
+        }
+    }
+
+    /**
+     * Ascending posting list of entry ids; ids are appended in insertion order.
+     */
+    private static class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void addUnique(int id) {
+            if (size > 0 && values[size - 1] == id) return;
+            if (size == values.length) {
+                int[] grown = new int[size * 2];
+                System.arraycopy(values, 0, grown, 0, size);
+                values = grown;
+            }
+            values[size++] = id;
+        }
+
+        IntList intersect(IntList other) {
+            IntList result = new IntList();
+            int i = 0, j = 0;
+            while (i < size && j < other.size) {
+                if (values[i] == other.values[j]) {
+                    result.addUnique(values[i]);
+                    i++;
+                    j++;
+                } else if (values[i] < other.values[j]) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+            return result;
+        }
+    }
+}
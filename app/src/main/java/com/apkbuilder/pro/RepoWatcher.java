@@ -0,0 +1,307 @@
+package com.apkbuilder.pro;
+
+import com.apkbuilder.pro.models.BranchHead;
+import com.apkbuilder.pro.models.BuildRequest;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watch mode: follows the default-branch head of many repositories and reports when
+ * one moves, so the app can build on every push without anyone pressing Build.
+ *
+ * All repos share one scheduler thread. Each check is a conditional request
+ * ({@link GitHubService#checkBranchHead}) that GitHub answers with 304 while the branch
+ * is unchanged, which does not count against the rate limit. A repo that stays idle is
+ * checked less and less often, down to once every few minutes; a push brings it back to
+ * the base interval. The first check of a new watch only records the current head:
+ * builds start on changes, not on watching.
+ *
+ * Watches (build settings, last seen head and ETag) are kept in a small JSON file so
+ * they survive restarts.
+ */
+public class RepoWatcher {
+
+    public interface Listener {
+        /**
+         * The branch moved. Called on the watcher thread; {@code request} is a fresh copy.
+         */
+        void onHeadChanged(BuildRequest request, String previousSha, String newSha);
+
+        void onCheckFailed(BuildRequest request, IOException error);
+    }
+
+    public interface TokenSource {
+        String tokenFor(BuildRequest request) throws IOException;
+    }
+
+    // Holds the requests' tokens: excluded from backups in res/xml/backup_rules.xml and data_extraction_rules.xml
+    private static final String STATE_NAME = "watched-repos.json";
+    private static final long TICK_MILLIS = 15_000L;
+    private static final long DEFAULT_BASE_INTERVAL_MILLIS = 60_000L;
+    private static final long DEFAULT_MAX_INTERVAL_MILLIS = 5 * 60_000L;
+    // Gap between the first checks of watches added or loaded together
+    private static final long STAGGER_MILLIS = 1_000L;
+
+    private static final class Watch {
+        final BuildRequest request;
+        String sha;
+        String etag;
+        long intervalMillis;
+        long nextCheckMillis;
+
+        Watch(BuildRequest request, long intervalMillis) {
+            this.request = request;
+            this.intervalMillis = intervalMillis;
+        }
+    }
+
+    private final File stateFile;
+    private final GitHubService gitHub;
+    private final TokenSource tokens;
+    private final Listener listener;
+    private final long baseIntervalMillis;
+    private final long maxIntervalMillis;
+
+    // Guarded by this; keyed by "owner/repo"
+    private final Map<String, Watch> watches = new LinkedHashMap<>();
+    private boolean loaded;
+    private ScheduledExecutorService scheduler;
+
+    public RepoWatcher(File directory, GitHubService gitHub, TokenSource tokens, Listener listener) {
+        this(directory, gitHub, tokens, listener, DEFAULT_BASE_INTERVAL_MILLIS, DEFAULT_MAX_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param directory          Where the watch list lives, normally {@code Context.getFilesDir()}.
+     * @param baseIntervalMillis Time between checks of a repo that just changed.
+     * @param maxIntervalMillis  Time between checks of a repo that has been idle for a while.
+     */
+    public RepoWatcher(File directory, GitHubService gitHub, TokenSource tokens, Listener listener,
+                       long baseIntervalMillis, long maxIntervalMillis) {
+        this.stateFile = new File(directory, STATE_NAME);
+        this.gitHub = gitHub;
+        this.tokens = tokens;
+        this.listener = listener;
+        this.baseIntervalMillis = baseIntervalMillis;
+        this.maxIntervalMillis = maxIntervalMillis;
+    }
+
+    /**
+     * Starts watching a repository's default branch with the given build settings,
+     * replacing the settings of an earlier watch of it. The request's own branch is
+     * ignored; the default branch is looked up on the first check.
+     */
+    public synchronized void watch(BuildRequest request) throws IOException {
+        ensureLoaded();
+        String repo = request.getRepoOwner() + "/" + request.getRepoName();
+        Watch previous = watches.remove(repo);
+        Watch watch = new Watch(copyOf(request), baseIntervalMillis);
+        if (previous != null) {
+            // Keep the baseline so a push made meanwhile still triggers a build
+            watch.request.setBranch(previous.request.getBranch());
+            watch.sha = previous.sha;
+            watch.etag = previous.etag;
+        } else {
+            watch.request.setBranch(null);
+        }
+        // Spread new watches over the base interval instead of checking them all at once
+        watch.nextCheckMillis = System.currentTimeMillis() + staggerDelay(watches.size());
+        watches.put(repo, watch);
+        save();
+    }
+
+    public synchronized boolean unwatch(String repoFullName) throws IOException {
+        ensureLoaded();
+        if (watches.remove(repoFullName) == null) return false;
+        save();
+        return true;
+    }
+
+    public synchronized boolean isWatching(String repoFullName) throws IOException {
+        ensureLoaded();
+        return watches.containsKey(repoFullName);
+    }
+
+    public synchronized int size() throws IOException {
+        ensureLoaded();
+        return watches.size();
+    }
+
+    /**
+     * Current time between checks of a watched repo, or -1 if it is not watched.
+     */
+    synchronized long intervalMillis(String repoFullName) throws IOException {
+        ensureLoaded();
+        Watch watch = watches.get(repoFullName);
+        return watch != null ? watch.intervalMillis : -1;
+    }
+
+    /**
+     * Tells the watcher the branch moved because of the app itself (e.g. committing the
+     * workflow file), so that commit does not start another build.
+     */
+    public synchronized void acknowledge(String repoFullName, String sha) throws IOException {
+        ensureLoaded();
+        Watch watch = watches.get(repoFullName);
+        if (watch == null || sha.equals(watch.sha)) return;
+        watch.sha = sha;
+        watch.etag = null; // the stored ETag is for the old head
+        save();
+    }
+
+    public synchronized void start() {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleWithFixedDelay(this::checkDue, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler == null) return;
+        scheduler.shutdownNow();
+        scheduler = null;
+    }
+
+    /**
+     * One pass over the watches whose next check is due. Public so tests can drive it.
+     */
+    public void checkDue() {
+        List<Watch> due = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            try {
+                ensureLoaded();
+            } catch (IOException e) {
+                return; // nothing to check until the state file can be read
+            }
+            for (Watch watch : watches.values()) {
+                if (watch.nextCheckMillis <= now) due.add(watch);
+            }
+        }
+        for (Watch watch : due) {
+            if (Thread.currentThread().isInterrupted()) return;
+            check(watch);
+        }
+    }
+
+    private void check(Watch watch) {
+        BuildRequest request = watch.request;
+        String previousSha;
+        BranchHead head;
+        IOException saveError = null;
+        try {
+            String token = tokens.tokenFor(request);
+            String branch = request.getBranch();
+            if (branch == null) {
+                branch = gitHub.getDefaultBranch(request.getRepoOwner(), request.getRepoName(), token);
+            }
+            String etag;
+            synchronized (this) {
+                etag = watch.etag;
+            }
+            head = gitHub.checkBranchHead(request.getRepoOwner(), request.getRepoName(), token, branch, etag);
+            synchronized (this) {
+                request.setBranch(branch);
+                previousSha = watch.sha;
+                if (head == null || head.getSha().equals(previousSha)) {
+                    // Idle: back off, up to the maximum interval
+                    watch.intervalMillis = Math.min(watch.intervalMillis * 3 / 2, maxIntervalMillis);
+                } else {
+                    watch.intervalMillis = baseIntervalMillis;
+                }
+                if (head != null) {
+                    watch.sha = head.getSha();
+                    watch.etag = head.getEtag();
+                }
+                watch.nextCheckMillis = System.currentTimeMillis() + watch.intervalMillis;
+                if (head != null && watches.get(request.getRepoOwner() + "/" + request.getRepoName()) == watch) {
+                    try {
+                        save();
+                    } catch (IOException e) {
+                        // The new head is kept in memory and saved with the next change:
+                        // report the push anyway rather than lose it
+                        saveError = e;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                watch.intervalMillis = Math.min(watch.intervalMillis * 2, maxIntervalMillis);
+                watch.nextCheckMillis = System.currentTimeMillis() + watch.intervalMillis;
+            }
+            listener.onCheckFailed(copyOf(request), e);
+            return;
+        }
+
+        if (head != null && previousSha != null && !head.getSha().equals(previousSha)) {
+            listener.onHeadChanged(copyOf(request), previousSha, head.getSha());
+        }
+        if (saveError != null) {
+            listener.onCheckFailed(copyOf(request), saveError);
+        }
+    }
+
+    private long staggerDelay(int index) {
+        return (index * STAGGER_MILLIS) % Math.max(baseIntervalMillis, STAGGER_MILLIS);
+    }
+
+    private static BuildRequest copyOf(BuildRequest request) {
+        try {
+            return BuildRequest.fromJson(request.toJson());
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Must hold the lock
+    private void ensureLoaded() throws IOException {
+        if (loaded) return;
+        loaded = true;
+
+        try {
+            JSONArray array = JsonFileStore.readArray(stateFile);
+            if (array == null) return;
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject json = array.getJSONObject(i);
+                BuildRequest request = BuildRequest.fromJson(json.getJSONObject("request"));
+                if (json.isNull("branch")) request.setBranch(null);
+                Watch watch = new Watch(request, baseIntervalMillis);
+                watch.sha = json.isNull("sha") ? null : json.optString("sha", null);
+                watch.etag = json.isNull("etag") ? null : json.optString("etag", null);
+                watch.nextCheckMillis = now + staggerDelay(i);
+                watches.put(request.getRepoOwner() + "/" + request.getRepoName(), watch);
+            }
+        } catch (JSONException e) {
+            throw new IOException("Error reading watched repositories: " + e.getMessage());
+        }
+    }
+
+    // Must hold the lock
+    private void save() throws IOException {
+        JSONArray array = new JSONArray();
+        try {
+            for (Watch watch : watches.values()) {
+                JSONObject json = new JSONObject();
+                json.put("request", watch.request.toJson());
+                json.put("branch", watch.request.getBranch() != null ? watch.request.getBranch() : JSONObject.NULL);
+                json.put("sha", watch.sha != null ? watch.sha : JSONObject.NULL);
+                json.put("etag", watch.etag != null ? watch.etag : JSONObject.NULL);
+                array.put(json);
+            }
+        } catch (JSONException e) {
+            throw new IOException("Error serialising watched repositories: " + e.getMessage());
+        }
+
+        JsonFileStore.writeAtomically(stateFile, array);
+    }
+}
@@ -0,0 +1,169 @@
+package com.apkbuilder.pro;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Retry policy for API calls: retries transient failures (network errors, 500/502/503/504,
+ * 429) with exponential backoff and jitter, honouring Retry-After, behind a per-host
+ * {@link CircuitBreaker} shared with every other service's interceptor.
+ *
+ * Only requests that are safe to repeat are retried after the server may have seen them:
+ * GET, HEAD, OPTIONS and DELETE, plus requests built with {@link #idempotent}. Anything
+ * else (a workflow dispatch, a new Telegram message) is retried only when it provably
+ * never reached the server (no connection) or was refused with 429, since repeating it
+ * would run the build or post the message twice.
+ */
+public class RetryInterceptor implements Interceptor {
+
+    /**
+     * Request tag marking a POST as safe to repeat (read-only or same effect twice).
+     */
+    public static final class Idempotent {
+        private Idempotent() {}
+    }
+
+    private static final Idempotent IDEMPOTENT = new Idempotent();
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final long DEFAULT_BASE_DELAY_MILLIS = 500;
+    // Also the longest Retry-After worth waiting for inside a call; longer ones go back to the caller
+    private static final long DEFAULT_MAX_DELAY_MILLIS = 8_000;
+
+    private final CircuitBreaker breaker;
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    public RetryInterceptor() {
+        this(HttpClients.breaker(), DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    public RetryInterceptor(CircuitBreaker breaker, int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        this.breaker = breaker;
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Marks the request being built as safe to retry even though its method is not idempotent.
+     */
+    public static Request.Builder idempotent(Request.Builder builder) {
+        return builder.tag(Idempotent.class, IDEMPOTENT);
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String host = request.url().host() + ":" + request.url().port();
+        boolean idempotent = isIdempotent(request);
+
+        for (int attempt = 1; ; attempt++) {
+            boolean probe = breaker.acquire(host);
+
+            Response response;
+            try {
+                response = chain.proceed(request);
+            } catch (IOException e) {
+                if (chain.call().isCanceled()) {
+                    // Our own cancel, not the host's fault; a probe must not keep the host shed
+                    if (probe) breaker.releaseProbe(host);
+                    throw e;
+                }
+                breaker.onFailure(host);
+                if (attempt >= maxAttempts || !isRetryable(e, idempotent)) throw e;
+                sleep(chain, backoff(attempt));
+                continue;
+            }
+
+            int code = response.code();
+            if (isServerFailure(code)) {
+                breaker.onFailure(host);
+            } else {
+                breaker.onSuccess(host);
+            }
+
+            boolean retryable = code == 429 || (idempotent && isServerFailure(code));
+            if (!retryable || attempt >= maxAttempts) return response;
+
+            long delay = retryAfterMillis(response.header("Retry-After"));
+            if (delay < 0) {
+                delay = backoff(attempt);
+            } else if (delay > maxDelayMillis) {
+                return response; // too long to block this call; the caller decides (TokenPool, queue)
+            }
+            response.close();
+            sleep(chain, delay);
+        }
+    }
+
+    private static boolean isIdempotent(Request request) {
+        switch (request.method()) {
+            case "GET":
+            case "HEAD":
+            case "OPTIONS":
+            case "DELETE":
+                return true;
+            default:
+                return request.tag(Idempotent.class) != null;
+        }
+    }
+
+    private static boolean isServerFailure(int code) {
+        return code == 500 || code == 502 || code == 503 || code == 504;
+    }
+
+    private static boolean isRetryable(IOException e, boolean idempotent) {
+        // Certificate problems do not fix themselves
+        if (e instanceof SSLPeerUnverifiedException || e instanceof SSLHandshakeException) return false;
+        // No connection was made, so the server saw nothing and any method is safe to send again
+        if (e instanceof UnknownHostException || e instanceof ConnectException || e instanceof NoRouteToHostException) {
+            return true;
+        }
+        // Timeouts and resets mid-exchange: the request may have been processed
+        return idempotent;
+    }
+
+    /**
+     * Exponential backoff with "equal jitter": half the step is fixed, half random,
+     * so clients retrying after the same outage spread out without retrying instantly.
+     */
+    private long backoff(int attempt) {
+        long step = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 16));
+        return step / 2 + ThreadLocalRandom.current().nextLong(step / 2 + 1);
+    }
+
+    /**
+     * Retry-After in milliseconds, or -1 if absent or not in seconds (HTTP-date is not used by our APIs).
+     */
+    private static long retryAfterMillis(String header) {
+        if (header == null) return -1;
+        try {
+            return Math.max(0, Long.parseLong(header.trim())) * 1000L;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void sleep(Chain chain, long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+        if (chain.call().isCanceled()) {
+            throw new IOException("Canceled");
+        }
+    }
+}
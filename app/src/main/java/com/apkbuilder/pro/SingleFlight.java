@@ -0,0 +1,104 @@
+package com.apkbuilder.pro;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Collapses concurrent identical calls into one execution.
+ * The first caller for a key runs the task; callers that arrive while it is
+ * still in flight block and receive the same result (or the same exception).
+ * Nothing is cached: once the call finishes, the next caller starts a new one.
+ */
+public class SingleFlight {
+
+    public interface Task<T> {
+        T call() throws IOException;
+    }
+
+    private static class Flight {
+        final CountDownLatch done = new CountDownLatch(1);
+        // Builds the shared call is made for, or null when callers are not tracked
+        final CallOwners owners;
+        // Written before done.countDown(), read after done.await()
+        Object result;
+        Throwable failure;
+
+        Flight(CallOwners owners) {
+            this.owners = owners;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+    public <T> T execute(String key, Task<T> task) throws IOException {
+        return execute(key, null, task);
+    }
+
+    /**
+     * Like {@link #execute(String, Task)}, for a call tagged with {@code owners}: a caller
+     * that joins a flight adds its owners to the flight's, so cancelling one of them does
+     * not abort the call for the others. A flight all of whose owners were cancelled is not
+     * joined; the caller runs its own task instead.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, CallOwners owners, Task<T> task) throws IOException {
+        Flight flight = new Flight(owners);
+        while (true) {
+            Flight existing = inFlight.putIfAbsent(key, flight);
+            if (existing == null) {
+                break;
+            }
+            if (owners == null || existing.owners == null || existing.owners.adopt(owners)) {
+                return (T) awaitShared(existing);
+            }
+            // Abandoned: its call is being cancelled. Take over the key, or join whoever did
+            if (inFlight.replace(key, existing, flight)) {
+                break;
+            }
+        }
+
+        try {
+            T result = task.call();
+            flight.result = result;
+            return result;
+        } catch (IOException | RuntimeException | Error e) {
+            flight.failure = e;
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+            flight.done.countDown();
+        }
+    }
+
+    /**
+     * Number of distinct calls currently in flight.
+     */
+    public int size() {
+        return inFlight.size();
+    }
+
+    private Object awaitShared(Flight flight) throws IOException {
+        try {
+            flight.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a shared request");
+        }
+
+        Throwable failure = flight.failure;
+        if (failure == null) {
+            return flight.result;
+        }
+        // Rethrow the leader's exception as is: waiters need its type (ApiException's status,
+        // SocketTimeoutException...) as much as the leader does
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        throw (Error) failure;
+    }
+}
@@ -0,0 +1,172 @@
+package com.apkbuilder.pro;
+
+import com.apkbuilder.pro.models.BuildStage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Small dependency-graph executor whose nodes are {@link BuildStage}s.
+ * A stage starts as soon as all of its prerequisites have finished, so
+ * independent stages run concurrently. The first failure cancels every
+ * stage still running (see {@link #setCanceller}) and is rethrown from
+ * {@link #run(ExecutorService)}.
+ */
+public class StageGraph {
+
+    public interface StageTask {
+        void run() throws Exception;
+    }
+
+    public interface Listener {
+        void onStageStarted(BuildStage stage);
+    }
+
+    private static class Node {
+        final BuildStage stage;
+        final StageTask task;
+        final BuildStage[] prerequisites;
+        final List<Node> dependents = new ArrayList<>();
+        int pending;
+
+        Node(BuildStage stage, StageTask task, BuildStage[] prerequisites) {
+            this.stage = stage;
+            this.task = task;
+            this.prerequisites = prerequisites;
+        }
+    }
+
+    private static class Outcome {
+        final Node node;
+        final long durationMillis;
+        final Exception error;
+
+        Outcome(Node node, long durationMillis, Exception error) {
+            this.node = node;
+            this.durationMillis = durationMillis;
+            this.error = error;
+        }
+    }
+
+    private final Map<BuildStage, Node> nodes = new EnumMap<>(BuildStage.class);
+    private final Map<BuildStage, Long> timings = Collections.synchronizedMap(new EnumMap<BuildStage, Long>(BuildStage.class));
+    private Listener listener;
+    private Runnable canceller;
+
+    /**
+     * Adds a stage that may only start after all {@code prerequisites} have completed.
+     */
+    public StageGraph add(BuildStage stage, StageTask task, BuildStage... prerequisites) {
+        if (nodes.containsKey(stage)) {
+            throw new IllegalArgumentException("Stage already added: " + stage);
+        }
+        nodes.put(stage, new Node(stage, task, prerequisites));
+        return this;
+    }
+
+    public StageGraph setListener(Listener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Called when a failure stops the graph while other stages are still in flight.
+     * Interrupting their threads does not abort blocking I/O such as an OkHttp call,
+     * so this is where the stages' calls should be cancelled.
+     */
+    public StageGraph setCanceller(Runnable canceller) {
+        this.canceller = canceller;
+        return this;
+    }
+
+    /**
+     * Runs every stage on {@code pool}, blocking until all succeed or one fails.
+     * @return Wall-clock duration of each stage in milliseconds, keyed by stage.
+     */
+    public Map<BuildStage, Long> run(ExecutorService pool) throws Exception {
+        List<Node> ready = new ArrayList<>();
+        for (Node node : nodes.values()) {
+            node.dependents.clear();
+        }
+        for (Node node : nodes.values()) {
+            node.pending = node.prerequisites.length;
+            for (BuildStage prerequisite : node.prerequisites) {
+                Node parent = nodes.get(prerequisite);
+                if (parent == null) {
+                    throw new IllegalStateException(node.stage + " depends on missing stage " + prerequisite);
+                }
+                parent.dependents.add(node);
+            }
+            if (node.pending == 0) ready.add(node);
+        }
+
+        LinkedBlockingQueue<Outcome> outcomes = new LinkedBlockingQueue<>();
+        Map<BuildStage, Future<?>> running = new EnumMap<>(BuildStage.class);
+        int finished = 0;
+
+        try {
+            for (Node node : ready) submit(pool, node, outcomes, running);
+            if (running.isEmpty() && !nodes.isEmpty()) {
+                throw new IllegalStateException("Stage graph has no entry point (cycle?)");
+            }
+
+            while (finished < nodes.size()) {
+                Outcome outcome = outcomes.take();
+                running.remove(outcome.node.stage);
+                finished++;
+                if (outcome.error != null) {
+                    throw outcome.error;
+                }
+                timings.put(outcome.node.stage, outcome.durationMillis);
+
+                for (Node dependent : outcome.node.dependents) {
+                    if (--dependent.pending == 0) submit(pool, dependent, outcomes, running);
+                }
+                if (running.isEmpty() && finished < nodes.size()) {
+                    throw new IllegalStateException("Stage graph stalled: unreachable stages (cycle?)");
+                }
+            }
+        } finally {
+            // Fail fast: interrupt siblings that are still in flight, and abort their calls
+            for (Future<?> future : running.values()) {
+                future.cancel(true);
+            }
+            if (!running.isEmpty() && canceller != null) {
+                canceller.run();
+            }
+        }
+        return new EnumMap<>(timings);
+    }
+
+    /**
+     * Timings recorded so far, including a partial set after a failure.
+     */
+    public Map<BuildStage, Long> getTimings() {
+        synchronized (timings) {
+            return new EnumMap<>(timings);
+        }
+    }
+
+    private void submit(ExecutorService pool, Node node, LinkedBlockingQueue<Outcome> outcomes,
+                        Map<BuildStage, Future<?>> running) {
+        running.put(node.stage, pool.submit(() -> {
+            long start = System.nanoTime();
+            Exception error = null;
+            try {
+                if (listener != null) listener.onStageStarted(node.stage);
+                node.task.run();
+            } catch (Exception e) {
+                error = e;
+            } catch (Throwable t) {
+                // Always report an outcome, otherwise run() would wait forever
+                error = new RuntimeException(t);
+            }
+            outcomes.add(new Outcome(node, (System.nanoTime() - start) / 1_000_000L, error));
+        }));
+    }
+}
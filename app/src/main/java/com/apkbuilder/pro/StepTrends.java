@@ -0,0 +1,273 @@
+package com.apkbuilder.pro;
+
+import com.apkbuilder.pro.models.StepTiming;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Per-step CI durations across runs, per repository, to show where build time goes
+ * and which step got slower.
+ *
+ * Each completed run updates two exponentially weighted averages per step: a fast one
+ * (the last few runs) and a slow one (the usual duration). A step regressed when the
+ * fast average pulls away from the slow one. Both are O(1) per step per run, so nothing
+ * is recomputed from history when a run completes; only the averages are stored.
+ *
+ * The state is a JSON file rewritten atomically (temp file, sync, rename) after each
+ * run; it keeps the most recently used repositories up to a fixed count.
+ */
+public class StepTrends {
+
+    /**
+     * Averages for one step of one repository's workflow.
+     */
+    public static final class StepStats {
+        private final String name;
+        private int samples;
+        private double recentMillis;
+        private double usualMillis;
+        private long lastMillis;
+        private long bestMillis;
+        // Run count of the repo when this step last ran; steps no longer in the workflow fall behind
+        private int lastSeenRun;
+
+        StepStats(String name) {
+            this.name = name;
+        }
+
+        public String getName() { return name; }
+        public int getSamples() { return samples; }
+        public long getRecentMillis() { return Math.round(recentMillis); }
+        public long getUsualMillis() { return Math.round(usualMillis); }
+        public long getLastMillis() { return lastMillis; }
+        public long getBestMillis() { return bestMillis; }
+
+        /**
+         * How much slower the step is lately than usual (0.25 = 25% slower), or 0 until
+         * there are enough runs to tell.
+         */
+        public double getRegression() {
+            if (samples < MIN_SAMPLES_FOR_TREND || usualMillis < 1) return 0;
+            return recentMillis / usualMillis - 1;
+        }
+
+        void add(long millis, int run) {
+            if (samples == 0) {
+                recentMillis = millis;
+                usualMillis = millis;
+                bestMillis = millis;
+            } else {
+                recentMillis += RECENT_WEIGHT * (millis - recentMillis);
+                usualMillis += USUAL_WEIGHT * (millis - usualMillis);
+                bestMillis = Math.min(bestMillis, millis);
+            }
+            samples++;
+            lastMillis = millis;
+            lastSeenRun = run;
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("samples", samples);
+            json.put("recent", recentMillis);
+            json.put("usual", usualMillis);
+            json.put("last", lastMillis);
+            json.put("best", bestMillis);
+            json.put("seen", lastSeenRun);
+            return json;
+        }
+
+        static StepStats fromJson(String name, JSONObject json) {
+            StepStats stats = new StepStats(name);
+            stats.samples = json.optInt("samples");
+            stats.recentMillis = json.optDouble("recent", 0);
+            stats.usualMillis = json.optDouble("usual", 0);
+            stats.lastMillis = json.optLong("last");
+            stats.bestMillis = json.optLong("best");
+            stats.lastSeenRun = json.optInt("seen");
+            return stats;
+        }
+    }
+
+    private static final class RepoTrends {
+        int runs;
+        // Recently recorded run ids, so a run seen twice (poll retry, restart) counts once
+        final LinkedList<String> runIds = new LinkedList<>();
+        final Map<String, StepStats> steps = new LinkedHashMap<>();
+    }
+
+    private static final String STATE_NAME = "step-trends.json";
+    private static final int MAX_REPOS = 50;
+    private static final int RUN_IDS_KEPT = 20;
+    // Weight of the newest run: about the last 3 runs for "recent", the last 20 for "usual"
+    private static final double RECENT_WEIGHT = 0.3;
+    private static final double USUAL_WEIGHT = 0.05;
+    private static final int MIN_SAMPLES_FOR_TREND = 5;
+    // Below this a step is reported as steady rather than slower or faster
+    private static final double NOTABLE_CHANGE = 0.10;
+
+    private final File stateFile;
+
+    // Guarded by this. Access order: least recently used repository first
+    private final LinkedHashMap<String, RepoTrends> repos = new LinkedHashMap<>(16, 0.75f, true);
+    private boolean loaded;
+
+    public StepTrends(File directory) {
+        this.stateFile = new File(directory, STATE_NAME);
+    }
+
+    /**
+     * Adds a completed run's measured steps to the repository's averages.
+     * @return False if this run was already recorded.
+     */
+    public synchronized boolean record(String repoFullName, String runId, List<StepTiming> steps) throws IOException {
+        ensureLoaded();
+        RepoTrends trends = repos.get(repoFullName);
+        if (trends == null) {
+            trends = new RepoTrends();
+            repos.put(repoFullName, trends);
+        } else if (trends.runIds.contains(runId)) {
+            return false;
+        }
+
+        trends.runs++;
+        trends.runIds.addLast(runId);
+        if (trends.runIds.size() > RUN_IDS_KEPT) trends.runIds.removeFirst();
+        for (StepTiming step : steps) {
+            if (!step.isMeasured()) continue;
+            String name = step.getQualifiedName();
+            StepStats stats = trends.steps.get(name);
+            if (stats == null) {
+                stats = new StepStats(name);
+                trends.steps.put(name, stats);
+            }
+            stats.add(step.getDurationMillis(), trends.runs);
+        }
+
+        Iterator<String> eldest = repos.keySet().iterator();
+        while (repos.size() > MAX_REPOS && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+        save();
+        return true;
+    }
+
+    /**
+     * The repository's steps that ran in its latest recorded run, slowest (recent average) first.
+     */
+    public synchronized List<StepStats> slowest(String repoFullName, int limit) throws IOException {
+        ensureLoaded();
+        RepoTrends trends = repos.get(repoFullName);
+        List<StepStats> current = new ArrayList<>();
+        if (trends == null) return current;
+        for (StepStats stats : trends.steps.values()) {
+            if (stats.lastSeenRun == trends.runs) current.add(stats);
+        }
+        Collections.sort(current, new Comparator<StepStats>() {
+            @Override
+            public int compare(StepStats a, StepStats b) {
+                return Double.compare(b.recentMillis, a.recentMillis);
+            }
+        });
+        return current.size() > limit ? new ArrayList<>(current.subList(0, limit)) : current;
+    }
+
+    public synchronized int runCount(String repoFullName) throws IOException {
+        ensureLoaded();
+        RepoTrends trends = repos.get(repoFullName);
+        return trends != null ? trends.runs : 0;
+    }
+
+    /**
+     * Dashboard/Telegram text for {@link #slowest}: "• build / Gradle: 3m 05s (+18% vs usual 2m 37s)".
+     * Shows each step's recent average, the value the list is sorted by and the regression
+     * is measured from, so one outlier run neither reorders nor misstates the report.
+     */
+    public static String formatReport(List<StepStats> slowest) {
+        StringBuilder sb = new StringBuilder("🐢 Slowest steps:");
+        for (StepStats stats : slowest) {
+            sb.append("\n  • ").append(stats.getName()).append(": ").append(formatDuration(stats.getRecentMillis()));
+            double regression = stats.getRegression();
+            if (Math.abs(regression) >= NOTABLE_CHANGE) {
+                sb.append(String.format(Locale.US, " (%+d%% vs usual %s)",
+                        Math.round(regression * 100), formatDuration(stats.getUsualMillis())));
+            }
+        }
+        return sb.toString();
+    }
+
+    static String formatDuration(long millis) {
+        long seconds = (millis + 500) / 1000;
+        if (seconds < 60) return seconds + "s";
+        return String.format(Locale.US, "%dm %02ds", seconds / 60, seconds % 60);
+    }
+
+    // Must hold the lock
+    private void ensureLoaded() throws IOException {
+        if (loaded) return;
+        loaded = true;
+
+        try {
+            JSONArray array = JsonFileStore.readArray(stateFile);
+            if (array == null) return;
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject json = array.getJSONObject(i);
+                RepoTrends trends = new RepoTrends();
+                trends.runs = json.optInt("runs");
+                JSONArray runIds = json.optJSONArray("runIds");
+                for (int j = 0; runIds != null && j < runIds.length(); j++) {
+                    trends.runIds.add(runIds.getString(j));
+                }
+                JSONObject steps = json.optJSONObject("steps");
+                if (steps != null) {
+                    JSONArray names = steps.names();
+                    for (int j = 0; names != null && j < names.length(); j++) {
+                        String name = names.getString(j);
+                        trends.steps.put(name, StepStats.fromJson(name, steps.getJSONObject(name)));
+                    }
+                }
+                repos.put(json.getString("repo"), trends);
+            }
+        } catch (JSONException e) {
+            // Trends are advisory; a damaged file just restarts them
+            repos.clear();
+        }
+    }
+
+    // Must hold the lock
+    private void save() throws IOException {
+        JSONArray array = new JSONArray();
+        try {
+            for (Map.Entry<String, RepoTrends> entry : repos.entrySet()) {
+                RepoTrends trends = entry.getValue();
+                JSONObject steps = new JSONObject();
+                for (StepStats stats : trends.steps.values()) {
+                    steps.put(stats.name, stats.toJson());
+                }
+                JSONObject json = new JSONObject();
+                json.put("repo", entry.getKey());
+                json.put("runs", trends.runs);
+                json.put("runIds", new JSONArray(trends.runIds));
+                json.put("steps", steps);
+                array.put(json);
+            }
+        } catch (JSONException e) {
+            throw new IOException("Error serialising step trends: " + e.getMessage());
+        }
+
+        JsonFileStore.writeAtomically(stateFile, array);
+    }
+}
@@ -0,0 +1,289 @@
+package com.apkbuilder.pro;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mirrors one build's status message into several Telegram chats.
+ *
+ * The caller renders the text once per state change and {@link #publish}es it; each chat
+ * gets its own message (sent the first time, edited afterwards) and the message ids are
+ * kept per chat in the {@link Broadcast}. Chats are served concurrently on a small pool.
+ *
+ * Sends are paced by token buckets per bot (Telegram allows about 30 messages a second)
+ * and per bot and chat (about one a second). A send first waits for its chat's turn and
+ * only then books a bot-wide slot, so a chat that is paced on its own does not hold slots
+ * other chats could use. A 429 pushes back both buckets by Telegram's retry_after.
+ * While a chat waits for its turn, newer texts replace the one waiting, so a chat only
+ * ever receives the latest state: the number of calls grows with chats, not with chats
+ * times updates.
+ */
+public class TelegramBroadcaster {
+
+    public interface Listener {
+        void onDeliveryFailed(String chatId, IOException error);
+    }
+
+    /**
+     * One build's message in every chat it goes to. Thread-safe; guarded by itself.
+     */
+    public static final class Broadcast {
+        private final String botToken;
+        private final Map<String, ChatState> chats = new LinkedHashMap<>();
+        private String lastText;
+
+        public Broadcast(String botToken, List<String> chatIds) {
+            this.botToken = botToken;
+            for (String chatId : chatIds) {
+                chats.put(chatId, new ChatState(chatId));
+            }
+        }
+
+        public String getBotToken() { return botToken; }
+
+        public synchronized List<String> getChatIds() {
+            return new ArrayList<>(chats.keySet());
+        }
+
+        /**
+         * The message id in {@code chatId}, or null until the first send there succeeded.
+         */
+        public synchronized String getMessageId(String chatId) {
+            ChatState chat = chats.get(chatId);
+            return chat != null ? chat.messageId : null;
+        }
+
+        /**
+         * Whether anything was published yet (delivered or not).
+         */
+        public synchronized boolean isAnnounced() {
+            return lastText != null;
+        }
+
+        /**
+         * Whether every chat has delivered the latest text (or given up on it).
+         */
+        public synchronized boolean isIdle() {
+            for (ChatState chat : chats.values()) {
+                if (chat.running) return false;
+            }
+            return true;
+        }
+    }
+
+    private static final class ChatState {
+        final String chatId;
+        String messageId;
+        String deliveredText;
+        String pendingText;
+        int failedAttempts;
+        // A drain for this chat is scheduled or running
+        boolean running;
+
+        ChatState(String chatId) {
+            this.chatId = chatId;
+        }
+    }
+
+    private static final double BOT_MESSAGES_PER_SECOND = 30;
+    private static final double CHAT_MESSAGES_PER_SECOND = 1;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MILLIS = 2_000L;
+    private static final int DEFAULT_THREADS = 4;
+
+    private final TelegramService telegram;
+    private final Listener listener;
+    private final ScheduledExecutorService executor;
+    private final double botRate;
+    private final double chatRate;
+
+    // Guarded by themselves
+    private final Map<String, TokenBucket> botBuckets = new HashMap<>();
+    private final Map<String, TokenBucket> chatBuckets = new HashMap<>();
+
+    public TelegramBroadcaster(TelegramService telegram, Listener listener) {
+        this(telegram, listener, DEFAULT_THREADS, BOT_MESSAGES_PER_SECOND, CHAT_MESSAGES_PER_SECOND);
+    }
+
+    /**
+     * @param threads  Chats served at the same time.
+     * @param botRate  Messages per second per bot, across all chats.
+     * @param chatRate Messages per second per bot in one chat.
+     */
+    public TelegramBroadcaster(TelegramService telegram, Listener listener, int threads, double botRate, double chatRate) {
+        this.telegram = telegram;
+        this.listener = listener;
+        this.botRate = botRate;
+        this.chatRate = chatRate;
+        ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(threads);
+        pool.setRemoveOnCancelPolicy(true);
+        this.executor = pool;
+    }
+
+    /**
+     * Makes {@code text} the build's message in every chat: sent where there is no message
+     * yet, edited elsewhere. Returns at once; text equal to the last published is ignored.
+     */
+    public void publish(Broadcast broadcast, String text) {
+        List<ChatState> toStart = new ArrayList<>();
+        synchronized (broadcast) {
+            if (text.equals(broadcast.lastText)) return;
+            broadcast.lastText = text;
+            for (ChatState chat : broadcast.chats.values()) {
+                chat.pendingText = text; // replaces a text still waiting: only the latest matters
+                chat.failedAttempts = 0;
+                if (!chat.running) {
+                    chat.running = true;
+                    toStart.add(chat);
+                }
+            }
+        }
+        for (ChatState chat : toStart) {
+            schedule(broadcast, chat);
+        }
+    }
+
+    /**
+     * Sends a separate one-off message to every chat of the broadcast, within the same limits.
+     */
+    public void announce(final Broadcast broadcast, final String text) {
+        for (final String chatId : broadcast.getChatIds()) {
+            schedule(broadcast.botToken, chatId, () -> {
+                try {
+                    if (telegram.sendMessageWithId(broadcast.botToken, chatId, text) == null) {
+                        listener.onDeliveryFailed(chatId, new IOException("Telegram did not accept the message"));
+                    }
+                } catch (IOException e) {
+                    pushBackIfRateLimited(broadcast.botToken, chatId, e);
+                    listener.onDeliveryFailed(chatId, e);
+                }
+            });
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // The chat is marked running; runs its next send when the buckets allow
+    private void schedule(final Broadcast broadcast, final ChatState chat) {
+        schedule(broadcast.botToken, chat.chatId, () -> deliver(broadcast, chat));
+    }
+
+    /**
+     * Runs {@code send} once the chat's bucket allows it, then once the bot's does. The bot
+     * permit is booked only when the chat's wait is over, i.e. for the time the send happens.
+     */
+    private void schedule(final String botToken, String chatId, final Runnable send) {
+        if (executor.isShutdown()) return;
+        executor.schedule(() -> {
+            long wait = botBucket(botToken).reserve();
+            if (wait == 0) {
+                send.run();
+            } else if (!executor.isShutdown()) {
+                executor.schedule(send, wait, TimeUnit.MILLISECONDS);
+            }
+        }, chatBucket(botToken, chatId).reserve(), TimeUnit.MILLISECONDS);
+    }
+
+    private void deliver(Broadcast broadcast, ChatState chat) {
+        String text;
+        String messageId;
+        synchronized (broadcast) {
+            text = chat.pendingText;
+            chat.pendingText = null;
+            messageId = chat.messageId;
+            if (text == null || text.equals(chat.deliveredText)) {
+                chat.running = false;
+                return;
+            }
+        }
+
+        boolean delivered;
+        IOException error = null;
+        String sentId = null;
+        try {
+            if (messageId == null) {
+                sentId = telegram.sendMessageWithId(broadcast.botToken, chat.chatId, text);
+                delivered = sentId != null;
+            } else {
+                delivered = telegram.editMessage(broadcast.botToken, chat.chatId, messageId, text);
+            }
+        } catch (IOException e) {
+            delivered = false;
+            error = e;
+        }
+        // Telegram's own wait replaces the fixed retry delay: the buckets hold the retry back
+        boolean rateLimited = pushBackIfRateLimited(broadcast.botToken, chat.chatId, error);
+
+        boolean again;
+        long delay = 0;
+        synchronized (broadcast) {
+            if (delivered) {
+                if (sentId != null) chat.messageId = sentId;
+                chat.deliveredText = text;
+                chat.failedAttempts = 0;
+            } else if (chat.pendingText == null && ++chat.failedAttempts < MAX_ATTEMPTS) {
+                chat.pendingText = text; // nothing newer to send instead: try this one again
+                if (!rateLimited) delay = RETRY_DELAY_MILLIS * chat.failedAttempts;
+            }
+            again = chat.pendingText != null;
+            if (!again) chat.running = false;
+        }
+        if (!delivered) {
+            listener.onDeliveryFailed(chat.chatId, error != null ? error : new IOException("Telegram did not accept the message"));
+        }
+        if (again) {
+            if (delay > 0 && !executor.isShutdown()) {
+                executor.schedule(() -> schedule(broadcast, chat), delay, TimeUnit.MILLISECONDS);
+            } else {
+                schedule(broadcast, chat);
+            }
+        }
+    }
+
+    /**
+     * After a 429 that named a wait, sends no more messages to the chat, nor through the
+     * bot, until it is over.
+     * @return whether {@code error} was such a 429.
+     */
+    private boolean pushBackIfRateLimited(String botToken, String chatId, IOException error) {
+        if (!(error instanceof ApiException)) return false;
+        ApiException api = (ApiException) error;
+        if (!api.isRateLimited() || api.getRetryAfterMillis() < 0) return false;
+        chatBucket(botToken, chatId).pushBack(api.getRetryAfterMillis());
+        botBucket(botToken).pushBack(api.getRetryAfterMillis());
+        return true;
+    }
+
+    private TokenBucket botBucket(String botToken) {
+        synchronized (botBuckets) {
+            TokenBucket bot = botBuckets.get(botToken);
+            if (bot == null) {
+                // No burst: a full bucket plus its refill would allow twice the rate within one second
+                bot = new TokenBucket(botRate, 1);
+                botBuckets.put(botToken, bot);
+            }
+            return bot;
+        }
+    }
+
+    private TokenBucket chatBucket(String botToken, String chatId) {
+        String chatKey = botToken + "\n" + chatId;
+        synchronized (chatBuckets) {
+            TokenBucket chat = chatBuckets.get(chatKey);
+            if (chat == null) {
+                chat = new TokenBucket(chatRate, 1);
+                chatBuckets.put(chatKey, chat);
+            }
+            return chat;
+        }
+    }
+}
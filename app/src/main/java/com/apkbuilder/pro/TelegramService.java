@@ -3,20 +3,67 @@ package com.apkbuilder.pro;
 import okhttp3.*;
 import org.json.JSONObject;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class TelegramService {
+    private static final String TELEGRAM_API_BASE = "https://api.telegram.org";
+    private final String apiBase;
     private OkHttpClient client;
+    // Whose calls these are, for HttpClients.cancelCalls; null for calls that are never cancelled
+    private final Object owner;
 
     public TelegramService() {
-        this.client = new OkHttpClient();
+        this(TELEGRAM_API_BASE);
+    }
+
+    /**
+     * @param apiBase Bot API root without a trailing slash; tests point this at a local simulator.
+     */
+    public TelegramService(String apiBase) {
+        this.apiBase = apiBase;
+        this.owner = null;
+        this.client = HttpClients.shared().newBuilder()
+                .addInterceptor(new RetryInterceptor())
+                .build();
+    }
+
+    private TelegramService(TelegramService base, Object owner) {
+        this.apiBase = base.apiBase;
+        this.client = base.client;
+        this.owner = owner;
+    }
+
+    /**
+     * This service with every call tagged as made for {@code owner}, like {@link GitHubService#forOwner}.
+     */
+    public TelegramService forOwner(Object owner) {
+        return new TelegramService(this, owner);
+    }
+
+    private Request.Builder newRequest() {
+        return new Request.Builder().tag(CallOwners.class, new CallOwners(owner));
+    }
+
+    /**
+     * Splits the chat ID input field: numeric IDs or @channel names separated by commas or whitespace.
+     */
+    public static List<String> parseChatIds(String input) {
+        List<String> chatIds = new ArrayList<>();
+        if (input == null) return chatIds;
+        for (String part : input.split("[,\\s]+")) {
+            if (!part.isEmpty() && !chatIds.contains(part)) chatIds.add(part);
+        }
+        return chatIds;
     }
 
     /**
      * Sends a message and returns the message_id for later editing.
      * @return The message ID as a String, or null on failure.
+     * @throws ApiException 429: Telegram is rate limiting the bot; carries its retry_after.
      */
     public String sendMessageWithId(String botToken, String chatId, String message) throws IOException {
-        String url = "https://api.telegram.org/bot" + botToken + "/sendMessage";
+        String url = apiBase + "/bot" + botToken + "/sendMessage";
         
         JSONObject requestBody = new JSONObject();
         try {
@@ -27,15 +74,18 @@ public class TelegramService {
             throw new IOException("Error creating request body: " + e.getMessage());
         }
 
-        Request request = new Request.Builder()
+        Request request = newRequest()
                 .url(url)
                 .header("Content-Type", "application/json")
                 .post(RequestBody.create(requestBody.toString(), MediaType.parse("application/json")))
                 .build();
 
         try (Response response = client.newCall(request).execute()) {
+            String body = response.body().string();
+            if (response.code() == 429) {
+                throw rateLimited(response, body, "sending message");
+            }
             if (response.code() == 200) {
-                String body = response.body().string();
                 JSONObject jsonResponse = new JSONObject(body);
                 if (jsonResponse.optBoolean("ok", false)) {
                     // Extract message_id from the result object
@@ -43,16 +93,17 @@ public class TelegramService {
                 }
             }
             return null;
-        } catch (Exception e) {
+        } catch (org.json.JSONException e) {
             throw new IOException("Error sending message: " + e.getMessage());
         }
     }
     
     /**
      * Edits an existing message in the Telegram chat.
+     * @throws ApiException 429: Telegram is rate limiting the bot; carries its retry_after.
      */
     public boolean editMessage(String botToken, String chatId, String messageId, String newText) throws IOException {
-        String url = "https://api.telegram.org/bot" + botToken + "/editMessageText";
+        String url = apiBase + "/bot" + botToken + "/editMessageText";
         
         JSONObject requestBody = new JSONObject();
         try {
@@ -64,18 +115,74 @@ public class TelegramService {
             throw new IOException("Error creating request body for edit: " + e.getMessage());
         }
 
-        Request request = new Request.Builder()
+        // Setting the same text twice leaves the message as it is, so a lost response may be retried
+        Request request = RetryInterceptor.idempotent(newRequest())
                 .url(url)
                 .header("Content-Type", "application/json")
                 .post(RequestBody.create(requestBody.toString(), MediaType.parse("application/json")))
                 .build();
 
         try (Response response = client.newCall(request).execute()) {
+            if (response.code() == 429) {
+                throw rateLimited(response, response.body().string(), "editing message");
+            }
             // Telegram returns 200 for success
             return response.code() == 200;
         }
     }
 
+    /**
+     * A 429 that outlasted the retries inside the call, with the wait Telegram asked for:
+     * {@code parameters.retry_after} in the body, else the Retry-After header.
+     */
+    private static ApiException rateLimited(Response response, String body, String what) {
+        long seconds = -1;
+        try {
+            JSONObject parameters = new JSONObject(body).optJSONObject("parameters");
+            if (parameters != null) seconds = parameters.optLong("retry_after", -1);
+        } catch (org.json.JSONException e) {
+            // Not Telegram's error shape; fall back to the header
+        }
+        if (seconds < 0) {
+            try {
+                seconds = Long.parseLong(String.valueOf(response.header("Retry-After")).trim());
+            } catch (NumberFormatException e) {
+                return new ApiException(429, "Telegram rate limit while " + what);
+            }
+        }
+        long millis = seconds * 1000L;
+        return new ApiException(429, "Telegram rate limit while " + what + ", retry in "
+                + ApiException.formatWait(millis), millis);
+    }
+
+    /**
+     * Checks that the bot token is valid via getMe, without posting anything to the chat.
+     * @return false only if Telegram rejected the token.
+     * @throws ApiException Telegram is rate limiting the bot or failing (transient); the
+     *         token may well be fine.
+     */
+    public boolean checkBot(String botToken) throws IOException {
+        String url = apiBase + "/bot" + botToken + "/getMe";
+
+        Request request = newRequest()
+                .url(url)
+                .get()
+                .build();
+
+        try (Response response = client.newCall(request).execute()) {
+            if (response.code() == 200) {
+                JSONObject jsonResponse = new JSONObject(response.body().string());
+                return jsonResponse.optBoolean("ok", false);
+            }
+            if (response.code() == 429 || response.code() >= 500) {
+                throw new ApiException(response.code(), "Failed to check bot: " + response.code());
+            }
+            return false;
+        } catch (org.json.JSONException e) {
+            throw new IOException("Error checking bot: " + e.getMessage());
+        }
+    }
+
     // Existing sendMessage method for simple use cases
     public boolean sendMessage(String botToken, String chatId, String message) throws IOException {
         // Use the new method and discard the ID
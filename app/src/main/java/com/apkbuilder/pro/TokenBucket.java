@@ -0,0 +1,52 @@
+package com.apkbuilder.pro;
+
+/**
+ * Token-bucket rate limiter: {@code permitsPerSecond} on average, with bursts of up to
+ * {@code burst} after a quiet period. {@link #reserve} never blocks; it books the next
+ * permit and says how long to wait before using it, so callers can schedule the work
+ * instead of parking a thread. Thread-safe.
+ */
+public class TokenBucket {
+
+    private final double permitsPerMilli;
+    private final double burst;
+
+    // Guarded by this. Negative while permits are booked ahead of time
+    private double available;
+    private long refilledAtMillis;
+
+    public TokenBucket(double permitsPerSecond, int burst) {
+        this.permitsPerMilli = permitsPerSecond / 1000.0;
+        this.burst = burst;
+        this.available = burst;
+        this.refilledAtMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Takes one permit.
+     * @return Milliseconds to wait before acting on it; 0 to go now.
+     */
+    public synchronized long reserve() {
+        refill();
+        available -= 1;
+        if (available >= 0) return 0;
+        return (long) Math.ceil(-available / permitsPerMilli);
+    }
+
+    /**
+     * Hands out no permit for the next {@code millis}, e.g. after the server asked us to back
+     * off. Permits already booked later than that keep their times.
+     */
+    public synchronized void pushBack(long millis) {
+        refill();
+        // The next reserve() then waits exactly millis
+        available = Math.min(available, 1 - millis * permitsPerMilli);
+    }
+
+    // Must hold the lock
+    private void refill() {
+        long now = System.currentTimeMillis();
+        available = Math.min(burst, available + (now - refilledAtMillis) * permitsPerMilli);
+        refilledAtMillis = now;
+    }
+}
@@ -0,0 +1,229 @@
+package com.apkbuilder.pro;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Health and rate-limit state for a set of GitHub tokens, so API traffic can be
+ * spread across several accounts instead of exhausting one.
+ *
+ * Quota is learned from the X-RateLimit-* headers of every response (see
+ * {@link #record}). A token that hits its limit is rotated out until its reset time
+ * and comes back automatically; a token GitHub rejects (401) stays out. Repos a token
+ * could not see are remembered for a while so requests for them go to another token.
+ * All methods are thread-safe.
+ */
+public class TokenPool {
+
+    // Assumed quota until the first response for a token tells us the real one
+    private static final int DEFAULT_LIMIT = 5000;
+    // How long a "no access" answer is trusted before the token is tried on that repo again
+    private static final long ACCESS_RECHECK_MILLIS = 10 * 60_000L;
+    // Secondary rate limits come without a reset header; back off this long
+    private static final long DEFAULT_BACKOFF_MILLIS = 60_000L;
+
+    private static class TokenState {
+        int limit = DEFAULT_LIMIT;
+        int remaining = DEFAULT_LIMIT;
+        long resetAtMillis;
+        long throttledUntilMillis;
+        boolean invalid;
+        int lastStatusCode;
+        long requests;
+        final Map<String, Long> deniedUntil = new HashMap<>();
+        final Set<String> knownRepos = new HashSet<>();
+
+        int remainingAt(long now) {
+            // Past the reset time the window has refilled even if no response said so yet
+            return resetAtMillis > 0 && now >= resetAtMillis ? limit : remaining;
+        }
+    }
+
+    private final Map<String, TokenState> states = new HashMap<>();
+
+    /**
+     * Splits the token input field: tokens separated by commas, whitespace or newlines.
+     */
+    public static List<String> parse(String input) {
+        List<String> tokens = new ArrayList<>();
+        if (input == null) return tokens;
+        for (String part : input.split("[,\\s]+")) {
+            if (!part.isEmpty() && !tokens.contains(part)) tokens.add(part);
+        }
+        return tokens;
+    }
+
+    /**
+     * Picks the token with the most remaining quota among {@code candidates} that can
+     * access {@code owner/repo} (pass null owner for requests not tied to a repo).
+     * @throws ApiException 429 if every usable token is throttled, 403 if none can access the repo.
+     */
+    public synchronized String select(String owner, String repo, List<String> candidates) throws ApiException {
+        long now = System.currentTimeMillis();
+        String repoKey = owner != null ? owner + "/" + repo : null;
+        String best = null;
+        int bestScore = -1;
+        long nextRestore = Long.MAX_VALUE;
+
+        for (String token : candidates) {
+            TokenState state = stateOf(token);
+            if (state.invalid) continue;
+            if (repoKey != null && isDenied(state, repoKey, now)) continue;
+            if (state.throttledUntilMillis > now) {
+                nextRestore = Math.min(nextRestore, state.throttledUntilMillis);
+                continue;
+            }
+            // Among equal quota, prefer a token already known to see the repo
+            int score = state.remainingAt(now) * 2;
+            if (repoKey != null && state.knownRepos.contains(repoKey)) score++;
+            if (score > bestScore) {
+                best = token;
+                bestScore = score;
+            }
+        }
+
+        if (best == null) {
+            if (nextRestore != Long.MAX_VALUE) {
+                throw new ApiException(429, "All GitHub tokens are rate limited; the first one is available again in " +
+                        ApiException.formatWait(nextRestore - now));
+            }
+            throw new ApiException(403, repoKey != null
+                    ? "No GitHub token can access " + repoKey + ". Check token permissions (repo scope)."
+                    : "No usable GitHub token. Check your tokens.");
+        }
+
+        // Count the request now so concurrent callers spread out before the response headers arrive
+        TokenState chosen = states.get(best);
+        if (chosen.remaining > 0) chosen.remaining--;
+        chosen.requests++;
+        return best;
+    }
+
+    /**
+     * Updates a token's state from a GitHub response.
+     * @param repoKey "owner/repo" the request targeted, or null.
+     * @param repoRoot True if the request was for the repository itself (GET /repos/owner/repo),
+     *                 where 403/404 means the token cannot see the repo.
+     */
+    public synchronized void record(String token, String repoKey, boolean repoRoot, int statusCode,
+                                    String limitHeader, String remainingHeader, String resetHeader,
+                                    String retryAfterHeader) {
+        TokenState state = stateOf(token);
+        long now = System.currentTimeMillis();
+        state.lastStatusCode = statusCode;
+
+        int limit = parseInt(limitHeader, -1);
+        int remaining = parseInt(remainingHeader, -1);
+        long resetSeconds = parseLong(resetHeader, -1);
+        if (limit > 0) state.limit = limit;
+        if (remaining >= 0) state.remaining = remaining;
+        if (resetSeconds > 0) state.resetAtMillis = resetSeconds * 1000L;
+
+        if (statusCode == 401) {
+            state.invalid = true;
+            return;
+        }
+
+        boolean rateLimited = statusCode == 429 || (statusCode == 403 && (remaining == 0 || retryAfterHeader != null));
+        if (rateLimited) {
+            long retryAfterSeconds = parseLong(retryAfterHeader, -1);
+            if (retryAfterSeconds >= 0) {
+                state.throttledUntilMillis = now + retryAfterSeconds * 1000L;
+            } else if (remaining == 0 && state.resetAtMillis > now) {
+                state.throttledUntilMillis = state.resetAtMillis;
+            } else {
+                state.throttledUntilMillis = now + DEFAULT_BACKOFF_MILLIS;
+            }
+            return;
+        }
+        if (remaining == 0 && state.resetAtMillis > now) {
+            // The last call of the window succeeded; the next one would not
+            state.throttledUntilMillis = state.resetAtMillis;
+        }
+
+        if (repoKey == null) return;
+        if (statusCode >= 200 && statusCode < 400) {
+            state.knownRepos.add(repoKey);
+            state.deniedUntil.remove(repoKey);
+        } else if (repoRoot && (statusCode == 403 || statusCode == 404)) {
+            state.knownRepos.remove(repoKey);
+            state.deniedUntil.put(repoKey, now + ACCESS_RECHECK_MILLIS);
+        }
+    }
+
+    /**
+     * Records that a token can see these repositories, e.g. from its repository listing.
+     */
+    public synchronized void grantAccess(String token, List<String> repoKeys) {
+        TokenState state = stateOf(token);
+        for (String repoKey : repoKeys) {
+            state.knownRepos.add(repoKey);
+            state.deniedUntil.remove(repoKey);
+        }
+    }
+
+    /**
+     * One line per token (masked), for logs: quota, throttle and health.
+     */
+    public synchronized String describe() {
+        long now = System.currentTimeMillis();
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, TokenState> entry : states.entrySet()) {
+            TokenState state = entry.getValue();
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(mask(entry.getKey())).append(": ")
+              .append(state.remainingAt(now)).append('/').append(state.limit)
+              .append(", requests ").append(state.requests)
+              .append(", last ").append(state.lastStatusCode);
+            if (state.invalid) {
+                sb.append(", rejected");
+            } else if (state.throttledUntilMillis > now) {
+                sb.append(", throttled for ").append((state.throttledUntilMillis - now) / 1000).append(" s");
+            }
+        }
+        return sb.toString();
+    }
+
+    private TokenState stateOf(String token) {
+        TokenState state = states.get(token);
+        if (state == null) {
+            state = new TokenState();
+            states.put(token, state);
+        }
+        return state;
+    }
+
+    private static boolean isDenied(TokenState state, String repoKey, long now) {
+        Long until = state.deniedUntil.get(repoKey);
+        if (until == null) return false;
+        if (until > now) return true;
+        state.deniedUntil.remove(repoKey); // expired: give the token another chance
+        return false;
+    }
+
+    private static String mask(String token) {
+        return token.length() <= 8 ? "****" : token.substring(0, 4) + "…" + token.substring(token.length() - 4);
+    }
+
+    private static int parseInt(String value, int fallback) {
+        if (value == null) return fallback;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static long parseLong(String value, long fallback) {
+        if (value == null) return fallback;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.apkbuilder.pro;
+
+import com.apkbuilder.pro.models.BuildRequest;
+import com.apkbuilder.pro.models.BuildStage;
+import com.apkbuilder.pro.models.RunSnapshot;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * State of one build the app is following, from dispatch until its run completes.
+ * Identity fields are fixed at creation; progress fields are written by the
+ * worker/poller threads and read by the UI, hence volatile.
+ */
+public class TrackedBuild {
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    private final long id = NEXT_ID.incrementAndGet();
+    private final String repoOwner;
+    private final String repoName;
+    private final String branch;
+    private final String buildType;
+    private final String githubToken;
+    private final String botToken;
+    private final String chatId;
+    // The build's status message in each of its Telegram chats
+    private final TelegramBroadcaster.Broadcast telegram;
+
+    private volatile BuildStage stage = BuildStage.IDLE;
+    private volatile String runId = "";
+    private volatile RunSnapshot lastSnapshot;
+    private volatile String statusMessage = "";
+    private volatile long dispatchedAtMillis;
+    // Sent with the dispatch and echoed in the run's name, to find exactly this build's run
+    private volatile String dispatchId;
+    // The dispatch failed in a way GitHub may still have accepted it (timeout, 5xx)
+    private volatile boolean dispatchUnconfirmed;
+    private volatile boolean cancelled;
+    // Sequence number in the offline BuildQueue, or 0 when the build is not queued
+    private volatile long queueSeq;
+    // Hash of the workflow this build committed or found, for the build cache
+    private volatile String workflowHash;
+    // Consecutive polls that failed transiently; only the status poller thread writes it
+    private volatile int pollFailures;
+    // When the run's steps were last fetched; only the status poller thread writes it
+    private volatile long stepsCheckedAtMillis;
+
+    public TrackedBuild(String repoOwner, String repoName, String branch, String buildType,
+                        String githubToken, String botToken, String chatId) {
+        this.repoOwner = repoOwner;
+        this.repoName = repoName;
+        this.branch = branch;
+        this.buildType = buildType;
+        this.githubToken = githubToken;
+        this.botToken = botToken;
+        this.chatId = chatId;
+        this.telegram = new TelegramBroadcaster.Broadcast(botToken, TelegramService.parseChatIds(chatId));
+    }
+
+    public static TrackedBuild fromRequest(BuildRequest request) {
+        return new TrackedBuild(request.getRepoOwner(), request.getRepoName(), request.getBranch(),
+                request.getBuildType(), request.getGithubToken(), request.getBotToken(), request.getUserId());
+    }
+
+    /**
+     * The persistable part of this build, for the offline queue.
+     */
+    public BuildRequest toRequest() {
+        BuildRequest request = new BuildRequest();
+        request.setRepoUrl("https://github.com/" + getFullName());
+        request.setRepoOwner(repoOwner);
+        request.setRepoName(repoName);
+        request.setBranch(branch);
+        request.setBuildType(buildType);
+        request.setGithubToken(githubToken);
+        request.setBotToken(botToken);
+        request.setUserId(chatId);
+        request.setQueuedAtMillis(System.currentTimeMillis());
+        return request;
+    }
+
+    /**
+     * Builds for the same repo, branch and variant share a key, the same as their {@link BuildRequest}'s.
+     */
+    public String getKey() { return BuildRequest.keyOf(repoOwner, repoName, branch, buildType); }
+
+    /**
+     * Unique per build instance; tags the build's HTTP calls so cancelling it aborts only those.
+     */
+    public long getId() { return id; }
+
+    /**
+     * Unique per build instance, so a superseded build keeps its own dashboard row.
+     */
+    public String getRowKey() { return getKey() + "/" + id; }
+    public String getFullName() { return repoOwner + "/" + repoName; }
+
+    // Getters and Setters
+    public String getRepoOwner() { return repoOwner; }
+    public String getRepoName() { return repoName; }
+    public String getBranch() { return branch; }
+    public String getBuildType() { return buildType; }
+    public String getGithubToken() { return githubToken; }
+    public String getBotToken() { return botToken; }
+    public String getChatId() { return chatId; }
+    public TelegramBroadcaster.Broadcast getTelegram() { return telegram; }
+
+    public BuildStage getStage() { return stage; }
+    public void setStage(BuildStage stage) { this.stage = stage; }
+
+    public String getRunId() { return runId; }
+    public void setRunId(String runId) { this.runId = runId; }
+
+    public RunSnapshot getLastSnapshot() { return lastSnapshot; }
+    public void setLastSnapshot(RunSnapshot lastSnapshot) { this.lastSnapshot = lastSnapshot; }
+
+    public String getStatusMessage() { return statusMessage; }
+    public void setStatusMessage(String statusMessage) { this.statusMessage = statusMessage; }
+
+    public long getDispatchedAtMillis() { return dispatchedAtMillis; }
+    public void setDispatchedAtMillis(long dispatchedAtMillis) { this.dispatchedAtMillis = dispatchedAtMillis; }
+
+    public String getDispatchId() { return dispatchId; }
+    public void setDispatchId(String dispatchId) { this.dispatchId = dispatchId; }
+
+    public boolean isDispatchUnconfirmed() { return dispatchUnconfirmed; }
+    public void setDispatchUnconfirmed(boolean dispatchUnconfirmed) { this.dispatchUnconfirmed = dispatchUnconfirmed; }
+
+    public long getQueueSeq() { return queueSeq; }
+    public void setQueueSeq(long queueSeq) { this.queueSeq = queueSeq; }
+
+    public String getWorkflowHash() { return workflowHash; }
+    public void setWorkflowHash(String workflowHash) { this.workflowHash = workflowHash; }
+
+    public long getStepsCheckedAtMillis() { return stepsCheckedAtMillis; }
+    public void setStepsCheckedAtMillis(long stepsCheckedAtMillis) { this.stepsCheckedAtMillis = stepsCheckedAtMillis; }
+
+    public int recordPollFailure() { return ++pollFailures; }
+
+    /**
+     * Clears the failure streak after a successful poll; returns how long it was.
+     */
+    public int resetPollFailures() {
+        int failures = pollFailures;
+        pollFailures = 0;
+        return failures;
+    }
+
+    public boolean isCancelled() { return cancelled; }
+
+    /**
+     * Flags the build as cancelled. Returns false if it was already cancelled or had finished.
+     */
+    public synchronized boolean markCancelled() {
+        if (cancelled || isFinished()) return false;
+        cancelled = true;
+        return true;
+    }
+
+    public boolean isFinished() {
+        return stage == BuildStage.COMPLETED || stage == BuildStage.FAILED || stage == BuildStage.CANCELLED;
+    }
+}
@@ -0,0 +1,106 @@
+package com.apkbuilder.pro;
+
+import java.util.List;
+
+/**
+ * Builds the GitHub Actions workflow committed to {@code .github/workflows/android-build.yml}:
+ * build the requested variant on repository_dispatch and send the APK to Telegram.
+ * The variant comes from the dispatch's {@code build_type} at run time rather than being
+ * written into the file, so builds of different variants share one workflow and never
+ * race to commit their own version of it.
+ * Each run is named after the dispatch's {@code dispatch_id}, so the app can tell its run
+ * from any other dispatch of the repo (see {@code GitHubService.findDispatchedRun}).
+ */
+public final class WorkflowYamlGenerator {
+
+    private WorkflowYamlGenerator() {}
+
+    public static String generate(String botToken, String userId) {
+        return "name: Android CI with APK Builder Pro\n" +
+                "run-name: APK build (${{ github.event.client_payload.build_type }}) ${{ github.event.client_payload.dispatch_id }}\n" +
+                "\n" +
+                "on:\n" +
+                "  repository_dispatch:\n" +
+                "    types: [run_android_build]\n" +
+                "    inputs:\n" +
+                "      build_type:\n" +
+                "        description: 'Build variant'\n" +
+                "        required: true\n" +
+                "        default: 'release'\n" +
+                "\n" +
+                "jobs:\n" +
+                "  build:\n" +
+                "    runs-on: ubuntu-latest\n" +
+                "\n" +
+                "    steps:\n" +
+                "    - name: 🚀 Checkout code\n" +
+                "      uses: actions/checkout@v4\n" +
+                "\n" +
+                "    - name: 🛠️ Set up Java\n" +
+                "      uses: actions/setup-java@v4\n" +
+                "      with:\n" +
+                "        distribution: 'temurin'\n" +
+                "        java-version: '17'\n" +
+                "        cache: 'gradle'\n" +
+                "\n" +
+                "    - name: 🔑 Grant execute permission to gradlew\n" +
+                "      run: chmod +x gradlew\n" +
+                "\n" +
+                "    - name: 🏗️ Build APK\n" +
+                // Through env, not ${{ }} in the script: the payload must not become shell code
+                "      env:\n" +
+                "        BUILD_TYPE: ${{ github.event.client_payload.build_type }}\n" +
+                "      run: |\n" +
+                "        case \"$BUILD_TYPE\" in\n" +
+                "          debug) TASK=assembleDebug ;;\n" +
+                "          release) TASK=assembleRelease ;;\n" +
+                "          *) TASK=assemble ;;\n" +
+                "        esac\n" +
+                "        ./gradlew clean\n" +
+                "        ./gradlew $TASK\n" +
+                "\n" +
+                "    - name: 🔍 Find APK\n" +
+                "      id: find_apk\n" +
+                "      env:\n" +
+                "        BUILD_TYPE: ${{ github.event.client_payload.build_type }}\n" +
+                "      run: |\n" +
+                "        APK_PATH=$(find ./app/build/outputs/apk/ -name \"*.$BUILD_TYPE.apk\" | grep -v \"unsigned\" | head -1)\n" +
+                "        if [ -z \"$APK_PATH\" ]; then\n" +
+                "          APK_PATH=$(find . -name \"*.apk\" | grep -v \"unsigned\" | head -1)\n" +
+                "        fi\n" +
+                "        echo \"APK_PATH=$APK_PATH\" >> $GITHUB_OUTPUT\n" +
+                "        echo \"📱 Found APK: $APK_PATH\"\n" +
+                "\n" +
+                sendSteps(botToken, userId) +
+                "    - name: 📊 Final Report\n" +
+                "      if: always()\n" +
+                "      run: echo \"Final Job Status: ${{ job.status }}\"";
+    }
+
+    /**
+     * One "Send to Telegram" step per chat in {@code userId} (comma-separated); the action takes a single chat.
+     */
+    private static String sendSteps(String botToken, String userId) {
+        List<String> chatIds = TelegramService.parseChatIds(userId);
+        StringBuilder steps = new StringBuilder();
+        for (String chatId : chatIds) {
+            steps.append("    - name: 📤 Send to Telegram").append(chatIds.size() > 1 ? " (" + chatId + ")" : "").append("\n")
+                 .append("      uses: appleboy/telegram-action@master\n")
+                 .append("      if: always()\n")
+                 .append("      with:\n")
+                 // Numeric IDs stay plain as before; "@channel" must be quoted ('@' is reserved in YAML)
+                 .append("        to: ").append(chatId.matches("-?\\d+") ? chatId : "'" + chatId + "'").append("\n")
+                 .append("        token: ").append(botToken).append("\n")
+                 .append("        document: ${{ steps.find_apk.outputs.APK_PATH }}\n")
+                 .append("        caption: |\n")
+                 .append("          🚀 APK Build Complete!\n")
+                 .append("          \n")
+                 .append("          📦 Project: ${{ github.repository }}\n")
+                 .append("          📱 Build Type: ${{ github.event.client_payload.build_type }}\n")
+                 .append("          🔨 Status: ${{ job.status }}\n")
+                 .append("          ✅ Ready to install!\n")
+                 .append("\n");
+        }
+        return steps.toString();
+    }
+}
@@ -0,0 +1,18 @@
+package com.apkbuilder.pro.models;
+
+/**
+ * The commit a branch points to, with the ETag of that answer so the next
+ * check can be a conditional request.
+ */
+public class BranchHead {
+    private final String sha;
+    private final String etag;
+
+    public BranchHead(String sha, String etag) {
+        this.sha = sha;
+        this.etag = etag;
+    }
+
+    public String getSha() { return sha; }
+    public String getEtag() { return etag; }
+}
@@ -1,5 +1,8 @@
 package com.apkbuilder.pro.models;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
 // Consider adding @NonNull annotations for improved safety, but keeping
 // the original structure for compatibility.
 public class BuildRequest {
@@ -10,9 +13,53 @@ public class BuildRequest {
     private String buildType;
     private String repoOwner;
     private String repoName;
+    private String branch;
+    private long queuedAtMillis;
 
     public BuildRequest() {}
 
+    /**
+     * Requests for the same repo, branch and variant share a key; a newer one replaces an older one.
+     */
+    public String getKey() {
+        return keyOf(repoOwner, repoName, branch, buildType);
+    }
+
+    public static String keyOf(String repoOwner, String repoName, String branch, String buildType) {
+        return repoOwner + "/" + repoName + "@" + branch + "#" + buildType;
+    }
+
+    /**
+     * Serialises the request for the on-device build queue (one JSON object per line).
+     */
+    public JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("repo_url", repoUrl);
+        json.put("github_token", githubToken);
+        json.put("bot_token", botToken);
+        json.put("user_id", userId);
+        json.put("build_type", buildType);
+        json.put("repo_owner", repoOwner);
+        json.put("repo_name", repoName);
+        json.put("branch", branch);
+        json.put("queued_at", queuedAtMillis);
+        return json;
+    }
+
+    public static BuildRequest fromJson(JSONObject json) {
+        BuildRequest request = new BuildRequest();
+        request.repoUrl = json.optString("repo_url", null);
+        request.githubToken = json.optString("github_token", null);
+        request.botToken = json.optString("bot_token", null);
+        request.userId = json.optString("user_id", null);
+        request.buildType = json.optString("build_type", null);
+        request.repoOwner = json.optString("repo_owner", null);
+        request.repoName = json.optString("repo_name", null);
+        request.branch = json.optString("branch", "main");
+        request.queuedAtMillis = json.optLong("queued_at", 0);
+        return request;
+    }
+
     // Getters and Setters
     public String getRepoUrl() { return repoUrl; }
     public void setRepoUrl(String repoUrl) { this.repoUrl = repoUrl; }
@@ -34,4 +81,10 @@ public class BuildRequest {
 
     public String getRepoName() { return repoName; }
     public void setRepoName(String repoName) { this.repoName = repoName; }
+
+    public String getBranch() { return branch; }
+    public void setBranch(String branch) { this.branch = branch; }
+
+    public long getQueuedAtMillis() { return queuedAtMillis; }
+    public void setQueuedAtMillis(long queuedAtMillis) { this.queuedAtMillis = queuedAtMillis; }
 }
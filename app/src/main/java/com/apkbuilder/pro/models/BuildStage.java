@@ -9,12 +9,15 @@ public enum BuildStage {
     CHECKING_TOKEN(1, "🔑 Verifying GitHub token..."),
     FETCHING_REPOS(2, "📥 Fetching repository list..."),
     VERIFYING_ACCESS(3, "🔍 Checking repository access..."),
-    SETUP_WORKFLOW(4, "📝 Creating CI/CD workflow file..."),
-    TESTING_TELEGRAM(5, "💬 Testing Telegram connection..."),
-    TRIGGER_BUILD(6, "🚀 Triggering GitHub Actions workflow..."),
-    POLLING_STATUS(7, "⏳ Build started. Polling status..."),
-    COMPLETED(8, "✅ Build process finished."),
-    FAILED(9, "❌ Build process failed.");
+    CHECKING_WORKFLOW(4, "🧾 Comparing existing workflow file..."),
+    SETUP_WORKFLOW(5, "📝 Creating CI/CD workflow file..."),
+    TESTING_TELEGRAM(6, "💬 Testing Telegram connection..."),
+    TRIGGER_BUILD(7, "🚀 Triggering GitHub Actions workflow..."),
+    POLLING_STATUS(8, "⏳ Build started. Polling status..."),
+    COMPLETED(9, "✅ Build process finished."),
+    FAILED(10, "❌ Build process failed."),
+    CANCELLED(11, "🛑 Build cancelled."),
+    QUEUED(12, "📥 Queued until the connection is back.");
 
     private final int stageId;
     private final String message;
@@ -50,6 +53,7 @@ public enum BuildStage {
     public String getTelegramStatus() {
         switch (this) {
             case VERIFYING_ACCESS:
+            case CHECKING_WORKFLOW:
             case SETUP_WORKFLOW:
                 return "🔧 Build Setup";
             case TRIGGER_BUILD:
@@ -59,6 +63,10 @@ public enum BuildStage {
                 return "✅ Build Finished";
             case FAILED:
                 return "❌ Build Failed";
+            case CANCELLED:
+                return "🛑 Build Cancelled";
+            case QUEUED:
+                return "📥 Build Queued";
             default:
                 return "ℹ️ Status Update";
         }
@@ -0,0 +1,40 @@
+package com.apkbuilder.pro.models;
+
+/**
+ * Typed form of a workflow run's "conclusion" field. NONE means the run has not concluded.
+ */
+public enum RunConclusion {
+    NONE(null),
+    SUCCESS("success"),
+    FAILURE("failure"),
+    CANCELLED("cancelled"),
+    SKIPPED("skipped"),
+    TIMED_OUT("timed_out"),
+    ACTION_REQUIRED("action_required"),
+    NEUTRAL("neutral"),
+    STALE("stale"),
+    STARTUP_FAILURE("startup_failure"),
+    UNKNOWN("unknown");
+
+    private final String apiValue;
+
+    RunConclusion(String apiValue) {
+        this.apiValue = apiValue;
+    }
+
+    public String getApiValue() {
+        return apiValue;
+    }
+
+    public static RunConclusion fromApi(String value) {
+        if (value == null || value.isEmpty() || "null".equals(value)) {
+            return NONE;
+        }
+        for (RunConclusion conclusion : values()) {
+            if (conclusion.apiValue != null && conclusion.apiValue.equalsIgnoreCase(value)) {
+                return conclusion;
+            }
+        }
+        return UNKNOWN;
+    }
+}
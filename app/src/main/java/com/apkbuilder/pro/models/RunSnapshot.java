@@ -0,0 +1,147 @@
+package com.apkbuilder.pro.models;
+
+/**
+ * Immutable, compact view of one workflow run at one point in time.
+ * Status and conclusion are enums and timestamps are pre-parsed epoch millis,
+ * so comparing two polls is cheap (see {@link RunTransition}).
+ */
+public final class RunSnapshot {
+
+    private static final String[] MONTHS = {"Jan", "Feb", "Mar", "Apr", "May", "Jun",
+                                            "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+
+    private final long runId;
+    private final int runNumber;
+    private final RunStatus status;
+    private final RunConclusion conclusion;
+    private final String headBranch;
+    private final String htmlUrl;
+    private final long createdAtMillis;
+    private final long updatedAtMillis;
+    private final String currentStep;
+
+    public RunSnapshot(long runId, int runNumber, RunStatus status, RunConclusion conclusion,
+                       String headBranch, String htmlUrl, long createdAtMillis, long updatedAtMillis,
+                       String currentStep) {
+        this.runId = runId;
+        this.runNumber = runNumber;
+        this.status = status != null ? status : RunStatus.UNKNOWN;
+        this.conclusion = conclusion != null ? conclusion : RunConclusion.NONE;
+        this.headBranch = headBranch;
+        this.htmlUrl = htmlUrl;
+        this.createdAtMillis = createdAtMillis;
+        this.updatedAtMillis = updatedAtMillis;
+        this.currentStep = currentStep;
+    }
+
+    /**
+     * Returns a copy with the given in-progress step name (null when unknown).
+     */
+    public RunSnapshot withCurrentStep(String step) {
+        return new RunSnapshot(runId, runNumber, status, conclusion, headBranch, htmlUrl,
+                createdAtMillis, updatedAtMillis, step);
+    }
+
+    // Public Getters
+    public long getRunId() { return runId; }
+    public boolean hasRun() { return runId != 0; }
+    public int getRunNumber() { return runNumber; }
+    public RunStatus getStatus() { return status; }
+    public RunConclusion getConclusion() { return conclusion; }
+    public String getHeadBranch() { return headBranch; }
+    public String getHtmlUrl() { return htmlUrl; }
+    public long getCreatedAtMillis() { return createdAtMillis; }
+    public long getUpdatedAtMillis() { return updatedAtMillis; }
+    public String getCurrentStep() { return currentStep; }
+
+    public boolean isActive() {
+        return status.isActive();
+    }
+
+    public boolean isCompleted() {
+        return status == RunStatus.COMPLETED;
+    }
+
+    public boolean isSuccessful() {
+        return status == RunStatus.COMPLETED && conclusion == RunConclusion.SUCCESS;
+    }
+
+    // --- Time helpers (no java.time below API 26) ---
+
+    /**
+     * Parses a GitHub UTC timestamp ("2024-03-05T10:11:12Z") to epoch millis.
+     * @return The timestamp, or 0 if the value is missing or malformed.
+     */
+    public static long parseIsoMillis(String iso) {
+        if (iso == null || iso.length() < 19 || iso.charAt(4) != '-' || iso.charAt(10) != 'T') {
+            return 0;
+        }
+        int year = digits(iso, 0, 4);
+        int month = digits(iso, 5, 2);
+        int day = digits(iso, 8, 2);
+        int hour = digits(iso, 11, 2);
+        int minute = digits(iso, 14, 2);
+        int second = digits(iso, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || hour < 0 || minute < 0 || second < 0) {
+            return 0;
+        }
+        long days = daysFromCivil(year, month, day);
+        return ((days * 24 + hour) * 60 + minute) * 60_000L + second * 1000L;
+    }
+
+    /**
+     * Formats epoch millis as "Mar 05, 10:15" (UTC), matching the app's status messages.
+     */
+    public static String formatDate(long epochMillis) {
+        return appendDate(new StringBuilder(13), epochMillis).toString();
+    }
+
+    public static StringBuilder appendDate(StringBuilder sb, long epochMillis) {
+        // Math.floorDiv/floorMod need API 24
+        long days = epochMillis / 86_400_000L;
+        long millisOfDay = epochMillis % 86_400_000L;
+        if (millisOfDay < 0) {
+            millisOfDay += 86_400_000L;
+            days--;
+        }
+        int minuteOfDay = (int) (millisOfDay / 60_000L);
+
+        // Civil-from-days (proleptic Gregorian), see H. Hinnant's date algorithms
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+
+        sb.append(MONTHS[month - 1]).append(' ');
+        appendTwoDigits(sb, day).append(", ");
+        appendTwoDigits(sb, minuteOfDay / 60).append(':');
+        return appendTwoDigits(sb, minuteOfDay % 60);
+    }
+
+    private static long daysFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yoe = y - era * 400;
+        long doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    private static int digits(String s, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder sb, int value) {
+        return sb.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+}
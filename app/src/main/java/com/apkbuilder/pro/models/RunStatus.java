@@ -0,0 +1,42 @@
+package com.apkbuilder.pro.models;
+
+/**
+ * Typed form of a workflow run's "status" field.
+ */
+public enum RunStatus {
+    REQUESTED("requested"),
+    QUEUED("queued"),
+    WAITING("waiting"),
+    PENDING("pending"),
+    IN_PROGRESS("in_progress"),
+    COMPLETED("completed"),
+    UNKNOWN("unknown");
+
+    private final String apiValue;
+
+    RunStatus(String apiValue) {
+        this.apiValue = apiValue;
+    }
+
+    public String getApiValue() {
+        return apiValue;
+    }
+
+    public boolean isActive() {
+        return this != COMPLETED && this != UNKNOWN;
+    }
+
+    /**
+     * Maps the REST value (or the upper-case GraphQL enum) to a status; null maps to UNKNOWN.
+     */
+    public static RunStatus fromApi(String value) {
+        if (value != null) {
+            for (RunStatus status : values()) {
+                if (status.apiValue.equalsIgnoreCase(value)) {
+                    return status;
+                }
+            }
+        }
+        return UNKNOWN;
+    }
+}
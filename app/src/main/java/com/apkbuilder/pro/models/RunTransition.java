@@ -0,0 +1,68 @@
+package com.apkbuilder.pro.models;
+
+/**
+ * What actually changed between two consecutive {@link RunSnapshot}s of a build.
+ * Timestamps alone (updated_at ticking) are not a change; UI and Telegram updates
+ * should only be issued when {@link #hasChanges()} is true.
+ */
+public final class RunTransition {
+
+    private final RunSnapshot previous;
+    private final RunSnapshot current;
+    private final boolean newRun;
+    private final boolean statusChanged;
+    private final boolean conclusionChanged;
+    private final boolean stepChanged;
+
+    private RunTransition(RunSnapshot previous, RunSnapshot current) {
+        this.previous = previous;
+        this.current = current;
+        this.newRun = previous == null || previous.getRunId() != current.getRunId();
+        this.statusChanged = previous == null || previous.getStatus() != current.getStatus();
+        this.conclusionChanged = previous == null || previous.getConclusion() != current.getConclusion();
+        this.stepChanged = previous != null && !equalsNullable(previous.getCurrentStep(), current.getCurrentStep());
+    }
+
+    /**
+     * @param previous The last snapshot seen, or null for the first observation.
+     */
+    public static RunTransition between(RunSnapshot previous, RunSnapshot current) {
+        return new RunTransition(previous, current);
+    }
+
+    public RunSnapshot getPrevious() { return previous; }
+    public RunSnapshot getCurrent() { return current; }
+    public boolean isNewRun() { return newRun; }
+    public boolean isStatusChanged() { return statusChanged; }
+    public boolean isConclusionChanged() { return conclusionChanged; }
+    public boolean isStepChanged() { return stepChanged; }
+
+    public boolean hasChanges() {
+        return newRun || statusChanged || conclusionChanged || stepChanged;
+    }
+
+    /**
+     * Short human-readable summary, e.g. "queued → in_progress".
+     */
+    public String describe() {
+        StringBuilder sb = new StringBuilder(48);
+        if (newRun) {
+            sb.append("run #").append(current.getRunNumber()).append(": ").append(current.getStatus().getApiValue());
+        } else if (statusChanged) {
+            sb.append(previous.getStatus().getApiValue()).append(" → ").append(current.getStatus().getApiValue());
+        }
+        if (conclusionChanged && current.getConclusion() != RunConclusion.NONE) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(current.getConclusion().getApiValue());
+        }
+        if (stepChanged && current.getCurrentStep() != null) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append("step: ").append(current.getCurrentStep());
+        }
+        return sb.toString();
+    }
+
+    private static boolean equalsNullable(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,99 @@
+package com.apkbuilder.pro.models;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One step of one job of a workflow run, as reported by the run's jobs endpoint.
+ * Timestamps are pre-parsed epoch millis (0 while the step has not started or finished).
+ */
+public final class StepTiming {
+
+    private final String jobName;
+    private final String stepName;
+    private final int number;
+    private final RunStatus status;
+    private final RunConclusion conclusion;
+    private final long startedAtMillis;
+    private final long completedAtMillis;
+
+    public StepTiming(String jobName, String stepName, int number, RunStatus status, RunConclusion conclusion,
+                      long startedAtMillis, long completedAtMillis) {
+        this.jobName = jobName;
+        this.stepName = stepName;
+        this.number = number;
+        this.status = status != null ? status : RunStatus.UNKNOWN;
+        this.conclusion = conclusion != null ? conclusion : RunConclusion.NONE;
+        this.startedAtMillis = startedAtMillis;
+        this.completedAtMillis = completedAtMillis;
+    }
+
+    /**
+     * Every step of every job in one page of a {@code /actions/runs/{id}/jobs} response body, in run order.
+     */
+    public static List<StepTiming> parseJobs(String body) throws JSONException {
+        JSONArray jobs = new JSONObject(body).optJSONArray("jobs");
+        List<StepTiming> timings = new ArrayList<>();
+        if (jobs == null) return timings;
+        for (int i = 0; i < jobs.length(); i++) {
+            JSONObject job = jobs.getJSONObject(i);
+            String jobName = job.optString("name", "job");
+            JSONArray steps = job.optJSONArray("steps");
+            if (steps == null) continue;
+            for (int j = 0; j < steps.length(); j++) {
+                JSONObject step = steps.getJSONObject(j);
+                timings.add(new StepTiming(
+                        jobName,
+                        step.optString("name", "step " + (j + 1)),
+                        step.optInt("number", j + 1),
+                        RunStatus.fromApi(WorkflowResponse.optNullableString(step, "status")),
+                        RunConclusion.fromApi(WorkflowResponse.optNullableString(step, "conclusion")),
+                        RunSnapshot.parseIsoMillis(WorkflowResponse.optNullableString(step, "started_at")),
+                        RunSnapshot.parseIsoMillis(WorkflowResponse.optNullableString(step, "completed_at"))));
+            }
+        }
+        return timings;
+    }
+
+    /**
+     * The step currently running, or null if none is (queued, between jobs, or done).
+     */
+    public static StepTiming currentStep(List<StepTiming> timings) {
+        for (StepTiming timing : timings) {
+            if (timing.status == RunStatus.IN_PROGRESS) return timing;
+        }
+        return null;
+    }
+
+    // Public Getters
+    public String getJobName() { return jobName; }
+    public String getStepName() { return stepName; }
+    public int getNumber() { return number; }
+    public RunStatus getStatus() { return status; }
+    public RunConclusion getConclusion() { return conclusion; }
+    public long getStartedAtMillis() { return startedAtMillis; }
+    public long getCompletedAtMillis() { return completedAtMillis; }
+
+    /**
+     * "job / step", unique within a workflow as long as step names are.
+     */
+    public String getQualifiedName() { return jobName + " / " + stepName; }
+
+    /**
+     * Wall-clock duration, or -1 if the step has not both started and finished.
+     */
+    public long getDurationMillis() {
+        if (startedAtMillis == 0 || completedAtMillis == 0) return -1;
+        return Math.max(0, completedAtMillis - startedAtMillis);
+    }
+
+    /**
+     * Finished and actually ran (skipped steps report zero-length timings).
+     */
+    public boolean isMeasured() {
+        return status == RunStatus.COMPLETED && conclusion != RunConclusion.SKIPPED && getDurationMillis() >= 0;
+    }
+}
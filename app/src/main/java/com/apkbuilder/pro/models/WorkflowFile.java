@@ -0,0 +1,25 @@
+package com.apkbuilder.pro.models;
+
+/**
+ * The workflow file currently committed in a repository: its blob SHA
+ * (required by the contents API to update it) and its decoded text.
+ */
+public class WorkflowFile {
+    private final String sha;
+    private final String content;
+
+    public WorkflowFile(String sha, String content) {
+        this.sha = sha;
+        this.content = content;
+    }
+
+    public String getSha() { return sha; }
+    public String getContent() { return content; }
+
+    /**
+     * True when the committed file already matches the generated workflow.
+     */
+    public boolean matches(String workflowContent) {
+        return content != null && content.equals(workflowContent);
+    }
+}
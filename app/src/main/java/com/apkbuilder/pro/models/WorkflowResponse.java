@@ -3,6 +3,8 @@ package com.apkbuilder.pro.models;
 import org.json.JSONObject;
 import org.json.JSONArray;
 import org.json.JSONException;
+import java.util.ArrayList;
+import java.util.List;
 
 // IMPORTANT: Keeping this manual JSON parsing logic for compatibility,
 // but strongly recommend migrating to Gson/Moshi for safety and readability.
@@ -18,7 +20,10 @@ public class WorkflowResponse {
     private String updatedAt;
     private String workflowName;
     private String headBranch;
+    private String headSha;
     private String event;
+    // The run-name the workflow gave the run; carries the dispatch ID (see WorkflowYamlGenerator)
+    private String displayTitle;
     private int runNumber;
 
     // Constructor for successful workflow creation
@@ -62,15 +67,90 @@ public class WorkflowResponse {
         }
     }
 
+    /**
+     * Parses every run in a /actions/runs list response, newest first.
+     */
+    public static List<WorkflowResponse> listRuns(JSONObject jsonResponse) throws JSONException {
+        List<WorkflowResponse> runs = new ArrayList<>();
+        JSONArray array = jsonResponse.optJSONArray("workflow_runs");
+        if (array != null) {
+            for (int i = 0; i < array.length(); i++) {
+                runs.add(new WorkflowResponse(array.getJSONObject(i)));
+            }
+        }
+        return runs;
+    }
+
+    private WorkflowResponse() {
+        this.success = false;
+        this.message = "No workflow runs found";
+    }
+
+    /**
+     * Builds a status from one repository node of the GraphQL dashboard query:
+     * the default branch plus the latest GitHub Actions check suite on its head commit.
+     */
+    public static WorkflowResponse fromRepositoryNode(JSONObject repoNode) throws JSONException {
+        WorkflowResponse response = new WorkflowResponse();
+        JSONObject branchRef = repoNode.optJSONObject("defaultBranchRef");
+        if (branchRef == null) {
+            response.message = "Repository has no default branch";
+            return response;
+        }
+        response.headBranch = optNullableString(branchRef, "name");
+
+        JSONObject target = branchRef.optJSONObject("target");
+        JSONObject suites = target != null ? target.optJSONObject("checkSuites") : null;
+        JSONArray nodes = suites != null ? suites.optJSONArray("nodes") : null;
+        if (nodes == null || nodes.length() == 0) {
+            return response;
+        }
+
+        JSONObject suite = nodes.getJSONObject(0);
+        // GraphQL enums are upper case (IN_PROGRESS); the REST model uses lower case
+        String status = optNullableString(suite, "status");
+        String conclusion = optNullableString(suite, "conclusion");
+        response.status = status != null ? status.toLowerCase(java.util.Locale.US) : null;
+        response.conclusion = conclusion != null ? conclusion.toLowerCase(java.util.Locale.US) : null;
+        response.createdAt = optNullableString(suite, "createdAt");
+        response.updatedAt = optNullableString(suite, "updatedAt");
+
+        JSONObject run = suite.optJSONObject("workflowRun");
+        if (run != null) {
+            response.runId = optNullableString(run, "databaseId");
+            response.runNumber = run.optInt("runNumber", 0);
+            response.htmlUrl = optNullableString(run, "url");
+            response.event = optNullableString(run, "event");
+            JSONObject workflow = run.optJSONObject("workflow");
+            if (workflow != null) {
+                response.workflowName = workflow.optString("name", "Unknown Workflow");
+            }
+        }
+
+        response.success = true;
+        response.message = null;
+        return response;
+    }
+
+    /**
+     * The string at {@code key}, or null if it is missing or JSON null (optString alone gives "null").
+     */
+    static String optNullableString(JSONObject object, String key) {
+        return object.isNull(key) ? null : object.optString(key, null);
+    }
+
     private void parseWorkflowRun(JSONObject run) throws JSONException {
         this.runId = run.optString("id", null);
-        this.status = run.optString("status", null);
-        this.conclusion = run.optString("conclusion", null);
+        // JSON null must stay null, not the string "null" (conclusion is null while running)
+        this.status = optNullableString(run, "status");
+        this.conclusion = optNullableString(run, "conclusion");
         this.htmlUrl = run.optString("html_url", null);
         this.createdAt = run.optString("created_at", null);
         this.updatedAt = run.optString("updated_at", null);
         this.headBranch = run.optString("head_branch", null);
+        this.headSha = run.optString("head_sha", null);
         this.event = run.optString("event", null);
+        this.displayTitle = optNullableString(run, "display_title");
         this.runNumber = run.optInt("run_number", 0);
         
         if (run.has("workflow_id")) {
@@ -78,7 +158,8 @@ public class WorkflowResponse {
             this.workflowName = run.optString("name", "Unknown Workflow");
         }
 
-        this.message = formatStatusMessage();
+        // Formatted lazily in getMessage(); most polls never need the text
+        this.message = null;
     }
 
     // --- Getters and Setters (omitted for brevity, assume they exist) ---
@@ -86,16 +167,50 @@ public class WorkflowResponse {
 
     // Public Getters
     public boolean isSuccess() { return success; }
-    public String getMessage() { return message; }
     public String getRunId() { return runId; }
+    public int getRunNumber() { return runNumber; }
+    public String getCreatedAt() { return createdAt; }
+    public String getUpdatedAt() { return updatedAt; }
     public String getStatus() { return status; }
     public String getConclusion() { return conclusion; }
     public String getHtmlUrl() { return htmlUrl; }
+    public String getHeadBranch() { return headBranch; }
+    public String getHeadSha() { return headSha; }
+    public String getDisplayTitle() { return displayTitle; }
 
 
+    public String getMessage() {
+        if (message == null && success) {
+            message = formatStatusMessage();
+        }
+        return message;
+    }
+
+    /**
+     * Typed, immutable copy of the run state for change detection between polls.
+     */
+    public RunSnapshot toSnapshot() {
+        long id = 0;
+        try {
+            if (runId != null) id = Long.parseLong(runId);
+        } catch (NumberFormatException e) {
+            // Leave as 0: treated as "no run"
+        }
+        return new RunSnapshot(id, runNumber, RunStatus.fromApi(status), RunConclusion.fromApi(conclusion),
+                headBranch, htmlUrl, RunSnapshot.parseIsoMillis(createdAt), RunSnapshot.parseIsoMillis(updatedAt),
+                null);
+    }
+
     // Helper Methods
-    private String formatStatusMessage() {
-        StringBuilder sb = new StringBuilder();
+    String formatStatusMessage() {
+        return formatStatusMessage(null);
+    }
+
+    /**
+     * The status text shown in the app, with the running step if one is known.
+     */
+    public String formatStatusMessage(String currentStep) {
+        StringBuilder sb = new StringBuilder(96);
         String emoji = "⏳";
         
         if ("completed".equals(status)) {
@@ -115,13 +230,23 @@ public class WorkflowResponse {
 
         sb.append("  ").append(emoji).append(" Run #").append(runNumber);
         sb.append(" on branch ").append(headBranch).append("\n");
-        sb.append("  📅 Updated: ").append(formatDate(updatedAt)).append("\n");
+        appendDate(sb.append("  📅 Updated: "), updatedAt).append("\n");
+        if (currentStep != null) {
+            sb.append("  🔧 Step: ").append(currentStep).append("\n");
+        }
         
         return sb.toString();
     }
 
     public String formatTelegramMessage(String repoFullName) {
-        StringBuilder sb = new StringBuilder();
+        return formatTelegramMessage(repoFullName, null);
+    }
+
+    /**
+     * The Telegram (HTML) status message, with the running step if one is known.
+     */
+    public String formatTelegramMessage(String repoFullName, String currentStep) {
+        StringBuilder sb = new StringBuilder(256);
         String emoji = "⏳";
 
         // Determine emoji and primary status line
@@ -144,7 +269,11 @@ public class WorkflowResponse {
         sb.append(emoji).append(" Repository: <code>").append(repoFullName).append("</code>\n");
         sb.append("  • Run ID: ").append(runId).append("\n");
         sb.append("  • Branch: <code>").append(headBranch).append("</code>\n");
-        sb.append("  • Created: ").append(formatDate(createdAt)).append("\n");
+        appendDate(sb.append("  • Created: "), createdAt).append("\n");
+        if (currentStep != null) {
+            // Step names come from the workflow file and may contain HTML specials
+            sb.append("  • Step: ").append(currentStep.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;")).append("\n");
+        }
 
         if (htmlUrl != null) {
             sb.append("\n<a href=\"").append(htmlUrl).append("\">🔗 View Full Workflow Details</a>");
@@ -153,26 +282,20 @@ public class WorkflowResponse {
         return sb.toString();
     }
 
-    private String formatDate(String isoDate) {
-        // Keeping the simple implementation to avoid adding complex date dependencies
-        try {
-            if (isoDate != null && isoDate.length() >= 16) {
-                String datePart = isoDate.substring(5, 10); // MM-DD
-                String timePart = isoDate.substring(11, 16); // HH:MM
-                String[] dateParts = datePart.split("-");
-                String month = getMonthName(Integer.parseInt(dateParts[0]));
-                return month + " " + dateParts[1] + ", " + timePart;
-            }
-        } catch (Exception e) {
-            // If formatting fails, return original
-        }
-        return isoDate;
+    public static String formatDate(String isoDate) {
+        return appendDate(new StringBuilder(13), isoDate).toString();
     }
 
-    private String getMonthName(int month) {
-        String[] months = {"Jan", "Feb", "Mar", "Apr", "May", "Jun", 
-                          "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
-        return months[month - 1];
+    /**
+     * Appends "Mar 05, 10:15" for an ISO timestamp without intermediate strings;
+     * falls back to the raw value if it cannot be parsed.
+     */
+    private static StringBuilder appendDate(StringBuilder sb, String isoDate) {
+        long millis = RunSnapshot.parseIsoMillis(isoDate);
+        if (millis == 0) {
+            return sb.append(isoDate);
+        }
+        return RunSnapshot.appendDate(sb, millis);
     }
 
     public boolean isActive() {
@@ -0,0 +1,101 @@
+package com.apkbuilder.pro;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BuildCacheTest {
+
+    private static final long DAY_MILLIS = 24 * 60 * 60_000L;
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("build-cache").toFile();
+    }
+
+    private static BuildCache.Entry entry(String sha, long builtAtMillis) {
+        String key = BuildCache.keyOf("octo/app", sha, "release", "workflow-hash");
+        return new BuildCache.Entry(key, "octo/app", sha, "release", "run-" + sha, 7,
+                "https://github.com/octo/app/actions/runs/" + sha, builtAtMillis);
+    }
+
+    private static BuildCache.Entry entry(String sha) {
+        return entry(sha, System.currentTimeMillis());
+    }
+
+    private byte[] index() throws Exception {
+        return Files.readAllBytes(new File(directory, "build-cache.json").toPath());
+    }
+
+    @Test
+    public void putEntriesAreFoundAgainAfterARestart() throws Exception {
+        BuildCache cache = new BuildCache(directory);
+        cache.put(entry("aaa"));
+        assertEquals("run-aaa", cache.get(entry("aaa").getKey()).getRunId());
+        assertNull(cache.get(entry("bbb").getKey()));
+
+        BuildCache.Entry reloaded = new BuildCache(directory).get(entry("aaa").getKey());
+        assertNotNull(reloaded);
+        assertEquals("aaa", reloaded.getHeadSha());
+        assertEquals(7, reloaded.getRunNumber());
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedEntry() throws Exception {
+        BuildCache cache = new BuildCache(directory, 3, 1 << 20);
+        cache.put(entry("aaa"));
+        cache.put(entry("bbb"));
+        cache.put(entry("ccc"));
+        cache.get(entry("aaa").getKey()); // now bbb is the eldest
+
+        cache.put(entry("ddd"));
+        assertEquals(3, cache.size());
+        assertNull(cache.get(entry("bbb").getKey()));
+        assertNotNull(cache.get(entry("aaa").getKey()));
+        // The put wrote the lookup's LRU order along with the eviction
+        assertNull(new BuildCache(directory, 3, 1 << 20).get(entry("bbb").getKey()));
+    }
+
+    @Test
+    public void indexStaysUnderTheSizeCap() throws Exception {
+        long maxBytes = 1_000;
+        BuildCache cache = new BuildCache(directory, 500, maxBytes);
+        for (int i = 0; i < 20; i++) cache.put(entry("sha-" + i));
+
+        assertTrue(index().length <= maxBytes);
+        assertTrue(cache.size() < 20);
+        assertNotNull(cache.get(entry("sha-19").getKey()));
+        assertNull(cache.get(entry("sha-0").getKey()));
+    }
+
+    @Test
+    public void entriesOlderThanRunRetentionAreMisses() throws Exception {
+        BuildCache cache = new BuildCache(directory);
+        cache.put(entry("old", System.currentTimeMillis() - 91 * DAY_MILLIS));
+        cache.put(entry("new", System.currentTimeMillis() - 89 * DAY_MILLIS));
+
+        assertNull(cache.get(entry("old").getKey()));
+        assertNotNull(cache.get(entry("new").getKey()));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void lookupsDoNotRewriteTheIndex() throws Exception {
+        BuildCache cache = new BuildCache(directory);
+        cache.put(entry("aaa"));
+        cache.put(entry("bbb"));
+        byte[] written = index();
+
+        for (int i = 0; i < 10; i++) cache.get(entry("aaa").getKey());
+        assertArrayEquals(written, index());
+    }
+}
@@ -0,0 +1,91 @@
+package com.apkbuilder.pro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.apkbuilder.pro.simulator.BuildLoadScenario;
+import com.apkbuilder.pro.simulator.Faults;
+import com.apkbuilder.pro.simulator.GitHubSimulator;
+import com.apkbuilder.pro.simulator.TelegramSimulator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Load scenarios against the local simulators. Each fails if a build does not finish
+ * or the request budget per build grows, which is where regressions show first; the
+ * report (throughput, request counts per endpoint, latency percentiles) is the failure message.
+ */
+public class BuildLoadTest {
+
+    private GitHubSimulator github;
+    private TelegramSimulator telegram;
+
+    @Before
+    public void setUp() throws Exception {
+        github = new GitHubSimulator(new Faults(1).latency(2, 8)).start();
+        telegram = new TelegramSimulator(new Faults(2).latency(2, 8)).start();
+        github.runTimings(100, 300, "success");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        github.close();
+        telegram.close();
+    }
+
+    @Test
+    public void hundredsOfBuildsComplete() throws Exception {
+        BuildLoadScenario.LoadReport report = new BuildLoadScenario(github, telegram)
+                .builds(300)
+                .repos(100)
+                .concurrency(32)
+                .pollInterval(25)
+                .run();
+
+        assertEquals(report.toString(), 300, report.completed);
+        assertTrue(report.toString(), report.failures.isEmpty());
+        // Without faults no build of a repo overlaps the next, so each one runs
+        assertEquals(report.toString(), 0, report.cacheHits);
+        // One dispatch per build, and no workflow commits when the file is already current
+        assertEquals(report.toString(), 300, report.github.count("POST /repos/{owner}/{repo}/dispatches"));
+        assertEquals(report.toString(), 0, report.github.count("PUT /repos/{owner}/{repo}/contents/{path}"));
+        // One announcement per build
+        assertEquals(report.toString(), 300, report.telegram.count("POST /bot{token}/sendMessage"));
+        // 5 pre-flight/dispatch calls plus polling; polling dominates and must stay bounded
+        assertTrue(report.toString(), report.githubRequestsPerBuild() < 30);
+        assertTrue(report.toString(), report.percentileMillis("end-to-end", 50) > 0);
+    }
+
+    @Test
+    public void firstBuildsCommitTheWorkflowOncePerRepo() throws Exception {
+        // Four builds per repo; one slot per repo, so each repo's first build is alone in pre-flight
+        BuildLoadScenario.LoadReport report = new BuildLoadScenario(github, telegram)
+                .builds(100)
+                .repos(25)
+                .concurrency(25)
+                .seedWorkflows(false)
+                .run();
+
+        assertEquals(report.toString(), 100, report.completed);
+        assertEquals(report.toString(), 25, report.github.count("PUT /repos/{owner}/{repo}/contents/{path}"));
+        assertEquals(report.toString(), 100, report.github.count("POST /repos/{owner}/{repo}/dispatches"));
+    }
+
+    @Test
+    public void serverErrorsFailBuildsWithoutHanging() throws Exception {
+        github.faults().serverErrors(0.05);
+        BuildLoadScenario.LoadReport report = new BuildLoadScenario(github, telegram)
+                .builds(100)
+                .repos(25)
+                .buildTimeout(10_000)
+                .run();
+
+        // Retries absorb the faults on reads; only non-idempotent dispatches that hit a 503 fail,
+        // and they fail on the injected error, not on a timeout
+        assertTrue(report.toString(), report.completed >= 85);
+        for (String reason : report.failures.keySet()) {
+            assertTrue(reason, reason.contains("503"));
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.apkbuilder.pro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.apkbuilder.pro.models.BuildStage;
+import com.apkbuilder.pro.models.RunStatus;
+import com.apkbuilder.pro.simulator.Faults;
+import com.apkbuilder.pro.simulator.GitHubSimulator;
+import com.apkbuilder.pro.simulator.TelegramSimulator;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BuildPipelineTest {
+
+    private static final String TOKEN = "test-token";
+    private static final String BOT = "123:abc";
+    private static final String DISPATCHES = "POST /repos/{owner}/{repo}/dispatches";
+    private static final String JOBS = "GET /repos/{owner}/{repo}/actions/runs/{id}/jobs";
+
+    private GitHubSimulator github;
+    private TelegramSimulator telegram;
+    private ExecutorService stagePool;
+    private BuildPipeline pipeline;
+    private volatile Runnable beforeTrigger;
+
+    @Before
+    public void setUp() throws Exception {
+        github = new GitHubSimulator().start();
+        github.grant(TOKEN, "octo/app");
+        telegram = new TelegramSimulator().start();
+        telegram.addBot(BOT);
+        stagePool = Executors.newCachedThreadPool();
+        pipeline = new BuildPipeline(new GitHubService(github.baseUrl()), new TelegramService(telegram.baseUrl()),
+                new TokenPool(), new BuildCache(Files.createTempDirectory("build-cache").toFile()), stagePool,
+                new BuildPipeline.Listener() {
+                    @Override
+                    public void onStageStarted(TrackedBuild build, BuildStage stage) {
+                        Runnable hook = beforeTrigger;
+                        if (stage == BuildStage.TRIGGER_BUILD && hook != null) hook.run();
+                    }
+
+                    @Override
+                    public void onWorkflowCommitted(TrackedBuild build) {}
+                });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        stagePool.shutdownNow();
+        github.close();
+        telegram.close();
+    }
+
+    private TrackedBuild newBuild() {
+        return new TrackedBuild("octo", "app", "main", "release", TOKEN, BOT, "42");
+    }
+
+    @Test
+    public void pollsReportTheStepTheRunMovedTo() throws Exception {
+        pipeline.setStepRefreshMillis(0); // the simulated clock moves, the real one does not
+        github.runTimings(0, 100_000, "success")
+                .steps(new String[] {"Checkout code", "Build APK"}, new double[] {0.2, 0.8});
+        TrackedBuild build = newBuild();
+        assertNull(pipeline.dispatch(build).getCachedBuild());
+
+        BuildPipeline.RunUpdate first = pipeline.poll(build);
+        assertNotNull(first);
+        assertTrue(first.getTransition().isNewRun());
+        assertEquals(RunStatus.IN_PROGRESS, first.getTransition().getCurrent().getStatus());
+        assertEquals("build / Checkout code", first.getTransition().getCurrent().getCurrentStep());
+
+        // Same step: nothing to show
+        assertNull(pipeline.poll(build));
+
+        github.advanceClock(50_000);
+        BuildPipeline.RunUpdate next = pipeline.poll(build);
+        assertNotNull(next);
+        assertTrue(next.getTransition().isStepChanged());
+        assertFalse(next.getTransition().isStatusChanged());
+        assertEquals("build / Build APK", next.getTransition().getCurrent().getCurrentStep());
+        assertTrue(next.getResponse().formatStatusMessage(next.getTransition().getCurrent().getCurrentStep())
+                .contains("Step: build / Build APK"));
+
+        github.advanceClock(60_000);
+        BuildPipeline.RunUpdate done = pipeline.poll(build);
+        assertTrue(done.getTransition().getCurrent().isCompleted());
+        assertNull(done.getTransition().getCurrent().getCurrentStep());
+    }
+
+    @Test
+    public void stepsAreRefreshedOnASlowerCadenceThanTheRun() throws Exception {
+        github.runTimings(0, 100_000, "success")
+                .steps(new String[] {"Checkout code", "Build APK"}, new double[] {0.2, 0.8});
+        TrackedBuild build = newBuild();
+        pipeline.dispatch(build);
+
+        // The run starting fetches its steps; the next polls within the interval reuse them
+        assertEquals("build / Checkout code", pipeline.poll(build).getTransition().getCurrent().getCurrentStep());
+        github.advanceClock(50_000);
+        assertNull(pipeline.poll(build));
+        assertNull(pipeline.poll(build));
+        assertEquals(1, github.stats().count(JOBS));
+
+        // Once it has passed, the step the run moved to shows up
+        pipeline.setStepRefreshMillis(0);
+        BuildPipeline.RunUpdate next = pipeline.poll(build);
+        assertEquals("build / Build APK", next.getTransition().getCurrent().getCurrentStep());
+        assertEquals(2, github.stats().count(JOBS));
+    }
+
+    @Test
+    public void telegramTroubleDoesNotHoldTheDispatch() throws Exception {
+        telegram.faults().failNext(Faults.rateLimited(30));
+        assertNull(pipeline.dispatch(newBuild()).getCachedBuild());
+        assertEquals(1, github.runCount("octo/app"));
+    }
+
+    @Test
+    public void rejectedBotTokenAbortsTheOtherStagesCalls() throws Exception {
+        github.faults().latency(3_000, 0);
+        TrackedBuild build = new TrackedBuild("octo", "app", "main", "release", TOKEN, "999:wrong", "42");
+        try {
+            pipeline.dispatch(build);
+            fail("Expected the bot token to be rejected");
+        } catch (Exception e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Telegram bot token was rejected"));
+        }
+        // The GitHub stages were still waiting on their responses; their calls were cancelled
+        long deadline = System.currentTimeMillis() + 1_000;
+        while (HttpClients.shared().dispatcher().runningCallsCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, HttpClients.shared().dispatcher().runningCallsCount());
+        assertEquals(0, github.runCount("octo/app"));
+    }
+
+    @Test
+    public void refusedDispatchFailsSoItCanBeQueued() throws Exception {
+        github.seedWorkflow("octo/app", WorkflowYamlGenerator.generate(BOT, "42"));
+        github.pushCommit("octo/app");
+        // Everything before the dispatch succeeds; the dispatch itself is refused
+        github.failNext(DISPATCHES, Faults.rateLimited(30));
+        TrackedBuild build = newBuild();
+        try {
+            pipeline.dispatch(build);
+            fail("Expected the dispatch to be refused");
+        } catch (ApiException e) {
+            assertTrue(ApiException.isSafeToResend(e));
+        }
+        assertFalse(build.isDispatchUnconfirmed());
+    }
+
+    @Test
+    public void dispatchShedByTheOpenCircuitFailsSoItCanBeQueued() throws Exception {
+        github.seedWorkflow("octo/app", WorkflowYamlGenerator.generate(BOT, "42"));
+        github.pushCommit("octo/app");
+        URI uri = URI.create(github.baseUrl());
+        String host = uri.getHost() + ":" + uri.getPort();
+        CircuitBreaker breaker = HttpClients.breaker();
+        // The host goes down just as the dispatch is due
+        beforeTrigger = () -> {
+            for (int i = 0; i < 10 && !breaker.isOpen(host); i++) breaker.onFailure(host);
+        };
+        TrackedBuild build = newBuild();
+        try {
+            pipeline.dispatch(build);
+            fail("Expected the dispatch to be shed");
+        } catch (CircuitOpenException e) {
+            assertTrue(ApiException.isSafeToResend(e));
+        } finally {
+            breaker.onSuccess(host);
+        }
+        // Never sent: nothing to wait for before sending it again
+        assertFalse(build.isDispatchUnconfirmed());
+        assertEquals(0, github.stats().count(DISPATCHES));
+    }
+
+    @Test
+    public void ambiguousDispatchIsFollowedBeforeItIsSentAgain() throws Exception {
+        github.seedWorkflow("octo/app", WorkflowYamlGenerator.generate(BOT, "42"));
+        github.pushCommit("octo/app");
+        TrackedBuild build = newBuild();
+        github.failNext(DISPATCHES, Faults.serverError(502));
+        assertNull(pipeline.dispatch(build).getCachedBuild());
+        assertTrue(build.isDispatchUnconfirmed());
+        assertEquals(0, github.runCount("octo/app"));
+
+        // No run yet, but it may still show up: not lost until the confirm window has passed
+        assertNull(pipeline.poll(build));
+        assertFalse(pipeline.isDispatchLost(build));
+        pipeline.setDispatchConfirmMillis(0);
+        Thread.sleep(5);
+        assertNull(pipeline.poll(build));
+        assertTrue(pipeline.isDispatchLost(build));
+
+        // Had GitHub accepted it after all, polling finds the run instead
+        TrackedBuild accepted = newBuild();
+        github.failNext(DISPATCHES, Faults.serverError(502));
+        pipeline.dispatch(accepted);
+        new GitHubService(github.baseUrl()).dispatchWorkflow("octo", "app", TOKEN, "release", accepted.getDispatchId());
+        assertNotNull(pipeline.poll(accepted));
+        assertFalse(pipeline.isDispatchLost(accepted));
+    }
+
+    @Test
+    public void variantsOfOneRepoShareTheWorkflowAndKeepTheirOwnRuns() throws Exception {
+        github.runTimings(60_000, 60_000, "success");
+        final TrackedBuild release = newBuild();
+        final TrackedBuild debug = new TrackedBuild("octo", "app", "main", "debug", TOKEN, BOT, "42");
+        // Both find no workflow yet and race to commit it; the loser sees the same file and goes on
+        github.faults().latency(100, 0);
+        Future<BuildPipeline.Dispatch> first = stagePool.submit(() -> pipeline.dispatch(release));
+        Future<BuildPipeline.Dispatch> second = stagePool.submit(() -> pipeline.dispatch(debug));
+        first.get();
+        second.get();
+        github.faults().latency(0, 0);
+
+        assertEquals(WorkflowYamlGenerator.generate(BOT, "42"), github.workflowContent("octo/app"));
+        assertEquals(2, github.runCount("octo/app"));
+        // Dispatched the other way round from when they poll: each still gets its own run
+        assertTrue(pipeline.poll(debug).getResponse().getDisplayTitle().contains("(debug)"));
+        assertTrue(pipeline.poll(release).getResponse().getDisplayTitle().contains("(release)"));
+        assertFalse(release.getRunId().equals(debug.getRunId()));
+    }
+}
@@ -0,0 +1,159 @@
+package com.apkbuilder.pro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.apkbuilder.pro.models.BuildRequest;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BuildQueueTest {
+
+    private File directory;
+    private final List<BuildQueue> queues = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("build-queue").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        for (BuildQueue queue : queues) queue.shutdown();
+    }
+
+    /**
+     * A queue over the same journal, as after the process was restarted.
+     */
+    private BuildQueue open() {
+        BuildQueue queue = new BuildQueue(directory, 4, 2);
+        queues.add(queue);
+        return queue;
+    }
+
+    private static BuildRequest request(String repo, String buildType) {
+        return new TrackedBuild("octo", repo, "main", buildType, "ghp_token", "123:abc", "42").toRequest();
+    }
+
+    private static List<String> keys(BuildQueue queue) throws IOException {
+        List<String> keys = new ArrayList<>();
+        for (BuildQueue.Entry entry : queue.snapshot()) keys.add(entry.getRequest().getKey());
+        return keys;
+    }
+
+    private File journal() {
+        return new File(directory, "build-queue.journal");
+    }
+
+    private List<String> journalLines() throws IOException {
+        return Files.readAllLines(journal().toPath(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void pendingRequestsSurviveARestartInOrder() throws Exception {
+        BuildQueue queue = open();
+        queue.enqueue(request("one", "release"));
+        long second = queue.enqueue(request("two", "release"));
+        queue.enqueue(request("three", "debug"));
+        assertTrue(queue.remove("octo/two@main#release", second));
+
+        BuildQueue reopened = open();
+        assertEquals(Arrays.asList("octo/one@main#release", "octo/three@main#debug"), keys(reopened));
+        assertEquals("ghp_token", reopened.snapshot().get(0).getRequest().getGithubToken());
+        // Sequence numbers carry on after the restart
+        assertEquals(4, reopened.enqueue(request("four", "release")));
+    }
+
+    @Test
+    public void tornTailRecordIsSkippedAndDoesNotSwallowTheNextOne() throws Exception {
+        BuildQueue queue = open();
+        queue.enqueue(request("one", "release"));
+        queue.enqueue(request("two", "release"));
+        // The process died halfway through appending a third record
+        try (FileOutputStream out = new FileOutputStream(journal(), true)) {
+            out.write("{\"op\":\"add\",\"seq\":3,\"request\":{\"repo_ow".getBytes(StandardCharsets.UTF_8));
+        }
+
+        BuildQueue reopened = open();
+        assertEquals(2, reopened.size());
+        // Appended after the torn bytes were compacted away, so it is a line of its own
+        reopened.enqueue(request("three", "release"));
+        assertEquals(Arrays.asList("octo/one@main#release", "octo/two@main#release", "octo/three@main#release"),
+                keys(open()));
+    }
+
+    @Test
+    public void compactionKeepsTheJournalBounded() throws Exception {
+        BuildQueue queue = open();
+        queue.enqueue(request("kept", "release"));
+        for (int i = 0; i < 500; i++) {
+            long seq = queue.enqueue(request("churn-" + i, "release"));
+            assertTrue(queue.remove("octo/churn-" + i + "@main#release", seq));
+        }
+
+        // One live entry; everything else was rewritten away well before 1000 records
+        assertTrue(journalLines().size() + " lines", journalLines().size() <= 1 + 64 + 2);
+        assertFalse(new File(directory, "build-queue.journal.tmp").exists());
+        assertEquals(Collections.singletonList("octo/kept@main#release"), keys(open()));
+    }
+
+    @Test
+    public void newerRequestForTheSameKeyReplacesTheOlder() throws Exception {
+        BuildQueue queue = open();
+        long older = queue.enqueue(request("app", "release"));
+        queue.enqueue(request("other", "release"));
+        long newer = queue.enqueue(request("app", "release"));
+
+        // The newest request for a key also moves to the back of the queue
+        assertEquals(Arrays.asList("octo/other@main#release", "octo/app@main#release"), keys(queue));
+        assertFalse(queue.remove("octo/app@main#release", older));
+
+        BuildQueue reopened = open();
+        assertEquals(2, reopened.size());
+        assertEquals(newer, reopened.snapshot().get(1).getSeq());
+        assertTrue(reopened.remove("octo/app@main#release", newer));
+        assertEquals(Collections.singletonList("octo/other@main#release"), keys(open()));
+    }
+
+    @Test
+    public void drainKeepsTransientFailuresAndDropsTheRest() throws Exception {
+        BuildQueue queue = open();
+        queue.enqueue(request("sent", "release"));
+        queue.enqueue(request("outage", "release"));
+        queue.enqueue(request("missing", "release"));
+
+        final List<String> dispatched = Collections.synchronizedList(new ArrayList<String>());
+        final List<String> dropped = Collections.synchronizedList(new ArrayList<String>());
+        boolean drained = queue.drain(entry -> {
+            String repo = entry.getRequest().getRepoName();
+            if ("outage".equals(repo)) throw new ApiException(503, "Service unavailable");
+            if ("missing".equals(repo)) throw new ApiException(404, "Not Found");
+        }, new BuildQueue.Listener() {
+            @Override
+            public void onDispatched(BuildQueue.Entry entry) {
+                dispatched.add(entry.getRequest().getRepoName());
+            }
+
+            @Override
+            public void onDropped(BuildQueue.Entry entry, Exception error) {
+                dropped.add(entry.getRequest().getRepoName());
+            }
+        });
+
+        assertFalse(drained);
+        assertEquals(Collections.singletonList("sent"), dispatched);
+        assertEquals(Collections.singletonList("missing"), dropped);
+        assertEquals(Collections.singletonList("octo/outage@main#release"), keys(open()));
+    }
+}
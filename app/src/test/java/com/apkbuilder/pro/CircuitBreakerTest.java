@@ -0,0 +1,99 @@
+package com.apkbuilder.pro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.apkbuilder.pro.simulator.GitHubSimulator;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+    private GitHubSimulator github;
+
+    @Before
+    public void setUp() throws Exception {
+        github = new GitHubSimulator().start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        github.close();
+    }
+
+    @Test
+    public void onlyOneProbeGoesThroughUntilItReports() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 0);
+        assertFalse(breaker.acquire("host"));
+        breaker.onFailure("host");
+        assertTrue(breaker.isOpen("host"));
+
+        assertTrue(breaker.acquire("host"));
+        try {
+            breaker.acquire("host");
+            fail("A probe is already in flight");
+        } catch (ApiException e) {
+            assertEquals(503, e.getStatusCode());
+            assertTrue(e.getMessage(), e.getMessage().contains("next attempt in 60 s"));
+        }
+
+        // A probe that ends without an answer hands over to the next call
+        breaker.releaseProbe("host");
+        assertTrue(breaker.acquire("host"));
+        breaker.onSuccess("host");
+        assertFalse(breaker.isOpen("host"));
+    }
+
+    @Test
+    public void cancelledProbeDoesNotKeepTheHostShed() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 0);
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(new RetryInterceptor(breaker, 1, 10, 100))
+                .build();
+        HttpUrl url = HttpUrl.get(github.baseUrl() + "/rate_limit");
+        String host = url.host() + ":" + url.port();
+        breaker.onFailure(host);
+
+        // The probe hangs on a slow host and is cancelled, e.g. because its build was
+        github.faults().latency(5_000, 0);
+        final Call probe = client.newCall(new Request.Builder().url(url).build());
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<?> pending = pool.submit(() -> {
+            try (Response response = probe.execute()) {
+                return response.code();
+            }
+        });
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (github.stats().total() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        probe.cancel();
+        try {
+            pending.get();
+            fail("The probe was cancelled");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        pool.shutdown();
+
+        // The next call probes right away instead of failing fast for a minute
+        github.faults().latency(0, 0);
+        try (Response response = client.newCall(new Request.Builder().url(url).build()).execute()) {
+            assertTrue(response.code() < 500);
+        }
+        assertFalse(breaker.isOpen(host));
+    }
+}
@@ -0,0 +1,375 @@
+package com.apkbuilder.pro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.apkbuilder.pro.models.BranchHead;
+import com.apkbuilder.pro.models.WorkflowFile;
+import com.apkbuilder.pro.models.WorkflowResponse;
+import com.apkbuilder.pro.simulator.Faults;
+import com.apkbuilder.pro.simulator.GitHubSimulator;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GitHubServiceTest {
+
+    private static final String TOKEN = "test-token";
+    private static final String REPO = "octo/app";
+
+    private GitHubSimulator github;
+    private GitHubService service;
+
+    @Before
+    public void setUp() throws Exception {
+        github = new GitHubSimulator().start();
+        github.grant(TOKEN, REPO);
+        service = new GitHubService(github.baseUrl());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        github.close();
+    }
+
+    @Test
+    public void listsRepositoriesAcrossPages() throws Exception {
+        String[] repos = new String[250];
+        for (int i = 0; i < repos.length; i++) repos[i] = String.format("octo/repo-%03d", i);
+        github.grant(TOKEN, repos);
+
+        List<Integer> pageSizes = new ArrayList<>();
+        List<String> all = service.getRepositories(TOKEN, page -> pageSizes.add(page.size()));
+
+        assertEquals(251, all.size());
+        assertEquals(3, pageSizes.size());
+        assertEquals(3, github.stats().count("GET /user/repos"));
+    }
+
+    @Test
+    public void dashboardBringsEveryReposLatestRunInOneQuery() throws Exception {
+        github.grant(TOKEN, "octo/idle", "octo/lib");
+        github.runTimings(5_000, 5_000, "success");
+        service.dispatchWorkflow("octo", "app", TOKEN, "release");
+        service.dispatchWorkflow("octo", "lib", TOKEN, "release");
+        service.dispatchWorkflow("octo", "lib", TOKEN, "debug");
+        // The app's run finishes; lib's newest run is still queued
+        github.advanceClock(11_000);
+        service.dispatchWorkflow("octo", "lib", TOKEN, "release");
+
+        List<String> pages = new ArrayList<>();
+        Map<String, WorkflowResponse> dashboard = service.getDashboard(TOKEN, pages::addAll);
+
+        assertEquals(1, github.stats().count("POST /graphql"));
+        assertEquals(0, github.stats().count("GET /repos/{owner}/{repo}/actions/runs"));
+        assertEquals(new HashSet<>(Arrays.asList("octo/app", "octo/idle", "octo/lib")), dashboard.keySet());
+        assertEquals(new ArrayList<>(dashboard.keySet()), pages);
+
+        WorkflowResponse app = dashboard.get("octo/app");
+        assertTrue(app.isSuccessful());
+        assertEquals(1, app.getRunNumber());
+        assertEquals("main", app.getHeadBranch());
+        WorkflowResponse lib = dashboard.get("octo/lib");
+        assertEquals("queued", lib.getStatus());
+        assertEquals(3, lib.getRunNumber());
+        assertTrue(lib.toSnapshot().getRunId() > 0);
+        // No run yet: the repo is listed, without a status
+        assertFalse(dashboard.get("octo/idle").isSuccess());
+    }
+
+    @Test
+    public void commitsAndReadsBackTheWorkflowFile() throws Exception {
+        assertNull(service.getWorkflowFile("octo", "app", TOKEN));
+
+        String yaml = "name: CI\non: push\n# " + Collections.nCopies(40, "long line").toString() + "\n";
+        service.createWorkflowFile("octo", "app", TOKEN, yaml, null);
+        WorkflowFile file = service.getWorkflowFile("octo", "app", TOKEN);
+        assertNotNull(file);
+        assertTrue(file.matches(yaml));
+
+        // Updating needs the current blob SHA
+        service.createWorkflowFile("octo", "app", TOKEN, yaml + "# v2\n", file.getSha());
+        assertEquals(yaml + "# v2\n", github.workflowContent(REPO));
+    }
+
+    @Test
+    public void resolvesTheBranchHeadTheRunBuilds() throws Exception {
+        String head = service.getBranchHeadSha("octo", "app", TOKEN, "main");
+        assertEquals(head, github.headSha(REPO));
+
+        // Committing the workflow moves main; the dispatched run builds the new head
+        service.createWorkflowFile("octo", "app", TOKEN, "name: CI\n", null);
+        String afterCommit = service.getBranchHeadSha("octo", "app", TOKEN, "main");
+        assertFalse(head.equals(afterCommit));
+
+        github.runTimings(0, 0, "success");
+        long dispatchedAt = System.currentTimeMillis();
+        service.dispatchWorkflow("octo", "app", TOKEN, "release");
+        WorkflowResponse run = service.findDispatchedRun("octo", "app", TOKEN, dispatchedAt, Collections.<String>emptySet());
+        assertNotNull(run);
+        assertEquals(afterCommit, run.getHeadSha());
+    }
+
+    @Test
+    public void branchHeadChecksAreConditional() throws Exception {
+        BranchHead head = service.checkBranchHead("octo", "app", TOKEN, "main", null);
+        assertEquals(github.headSha(REPO), head.getSha());
+        assertNotNull(head.getEtag());
+
+        // Unchanged: 304, no new head, and no quota spent
+        int remaining = github.remaining(TOKEN);
+        assertNull(service.checkBranchHead("octo", "app", TOKEN, "main", head.getEtag()));
+        assertEquals(1, github.stats().countStatus(304));
+        assertEquals(remaining, github.remaining(TOKEN));
+
+        String pushed = github.pushCommit(REPO);
+        BranchHead moved = service.checkBranchHead("octo", "app", TOKEN, "main", head.getEtag());
+        assertEquals(pushed, moved.getSha());
+        assertFalse(head.getEtag().equals(moved.getEtag()));
+    }
+
+    @Test
+    public void findsPollsAndCancelsTheDispatchedRun() throws Exception {
+        github.runTimings(5_000, 5_000, "success");
+        long dispatchedAt = System.currentTimeMillis();
+        service.dispatchWorkflow("octo", "app", TOKEN, "release");
+
+        WorkflowResponse run = service.findDispatchedRun("octo", "app", TOKEN, dispatchedAt, Collections.<String>emptySet());
+        assertNotNull(run);
+        assertEquals("queued", run.getStatus());
+        // A run already claimed by another build is skipped
+        assertNull(service.findDispatchedRun("octo", "app", TOKEN, dispatchedAt, Collections.singleton(run.getRunId())));
+
+        service.cancelWorkflowRun("octo", "app", TOKEN, run.getRunId());
+        WorkflowResponse cancelled = service.getWorkflowRunById("octo", "app", TOKEN, run.getRunId());
+        assertEquals("completed", cancelled.getStatus());
+        assertEquals("cancelled", cancelled.getConclusion());
+
+        try {
+            service.cancelWorkflowRun("octo", "app", TOKEN, run.getRunId());
+            fail("Cancelling a completed run should fail");
+        } catch (ApiException e) {
+            assertEquals(409, e.getStatusCode());
+            assertFalse(ApiException.isTransient(e));
+        }
+    }
+
+    @Test
+    public void dispatchIdsMatchEachBuildToItsOwnRun() throws Exception {
+        github.seedWorkflow(REPO, WorkflowYamlGenerator.generate("123:abc", "42"));
+        long dispatchedAt = System.currentTimeMillis();
+        service.dispatchWorkflow("octo", "app", TOKEN, "debug", "dispatch-1");
+        service.dispatchWorkflow("octo", "app", TOKEN, "release", "dispatch-2");
+
+        // The newer dispatch gets the newer run, though the older one is still unclaimed
+        Set<String> none = Collections.emptySet();
+        WorkflowResponse second = service.findDispatchedRun("octo", "app", TOKEN, dispatchedAt, "dispatch-2", none);
+        WorkflowResponse first = service.findDispatchedRun("octo", "app", TOKEN, dispatchedAt, "dispatch-1", none);
+        assertEquals(2, second.getRunNumber());
+        assertEquals("APK build (release) dispatch-2", second.getDisplayTitle());
+        assertEquals(1, first.getRunNumber());
+        assertNull(service.findDispatchedRun("octo", "app", TOKEN, dispatchedAt, "dispatch-3", none));
+    }
+
+    @Test
+    public void retriesIdempotentCallsThroughTransientErrors() throws Exception {
+        github.faults().failNext(Faults.serverError(502));
+        assertNull(service.getWorkflowFile("octo", "app", TOKEN));
+        assertEquals(1, github.stats().countStatus(502));
+        assertEquals(2, github.stats().count("GET /repos/{owner}/{repo}/contents/{path}"));
+
+        // 5xx that outlasts the retries surfaces as transient, not as "no access"
+        for (int i = 0; i < 3; i++) github.faults().failNext(Faults.serverError(503));
+        try {
+            service.verifyRepositoryAccess("octo", "app", TOKEN);
+            fail("Expected a 503");
+        } catch (ApiException e) {
+            assertTrue(e.isServerError());
+            assertTrue(ApiException.isTransient(e));
+        }
+        assertEquals(3, github.stats().count("GET /repos/{owner}/{repo}"));
+    }
+
+    @Test
+    public void doesNotRepeatDispatchesTheServerMayHaveRun() throws Exception {
+        github.faults().failNext(Faults.serverError(502));
+        try {
+            service.dispatchWorkflow("octo", "app", TOKEN, "debug");
+            fail("Expected a 502");
+        } catch (ApiException e) {
+            assertEquals(502, e.getStatusCode());
+            assertTrue(ApiException.isTransient(e));
+            // GitHub may have started the run before failing
+            assertFalse(ApiException.isSafeToResend(e));
+        }
+        assertEquals(1, github.stats().count("POST /repos/{owner}/{repo}/dispatches"));
+
+        // A 429 was refused before processing, but a long Retry-After goes back to the caller
+        github.faults().failNext(Faults.rateLimited(30));
+        try {
+            service.dispatchWorkflow("octo", "app", TOKEN, "debug");
+            fail("Expected a 429");
+        } catch (ApiException e) {
+            assertTrue(e.isRateLimited());
+            assertTrue(ApiException.isTransient(e));
+            assertTrue(ApiException.isSafeToResend(e));
+        }
+        assertEquals(2, github.stats().count("POST /repos/{owner}/{repo}/dispatches"));
+    }
+
+    @Test
+    public void circuitOpensDuringSustainedOutage() throws Exception {
+        github.faults().serverErrors(1.0);
+        String message = null;
+        for (int call = 0; call < 5 && message == null; call++) {
+            try {
+                service.getWorkflowFile("octo", "app", TOKEN);
+                fail("Every request fails");
+            } catch (ApiException e) {
+                assertTrue(ApiException.isTransient(e));
+                if (e.getMessage().contains("Circuit open")) message = e.getMessage();
+            }
+        }
+        assertNotNull("The circuit never opened", message);
+
+        // While open, calls fail fast without reaching the host
+        int requests = github.stats().total();
+        try {
+            service.getWorkflowFile("octo", "app", TOKEN);
+            fail("Circuit should still be open");
+        } catch (ApiException e) {
+            assertEquals(503, e.getStatusCode());
+        }
+        // The breaker is shared: another service instance sheds the host too
+        try {
+            new GitHubService(github.baseUrl()).getWorkflowFile("octo", "app", TOKEN);
+            fail("Circuit should be open for every service");
+        } catch (ApiException e) {
+            assertTrue(e.getMessage().contains("Circuit open"));
+        }
+        assertEquals(requests, github.stats().total());
+    }
+
+    @Test
+    public void tokenPoolRotatesAwayFromThrottledAndDeniedTokens() throws Exception {
+        TokenPool pool = new TokenPool();
+        service.setTokenPool(pool);
+        github.grant("other-token", "octo/other");
+        List<String> tokens = TokenPool.parse(TOKEN + ",other-token");
+
+        // "other-token" cannot see octo/app: the 404 on the repo root marks it
+        assertFalse(service.verifyRepositoryAccess("octo", "app", "other-token"));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(TOKEN, pool.select("octo", "app", tokens));
+        }
+
+        // Retry-After throttles the token that got the 429
+        github.faults().failNext(Faults.rateLimited(60));
+        try {
+            service.getWorkflowFile("octo", "app", TOKEN);
+            fail("Expected a 429");
+        } catch (ApiException expected) {
+        }
+        try {
+            pool.select("octo", "app", tokens);
+            fail("Every token able to see octo/app is throttled");
+        } catch (ApiException e) {
+            assertTrue(e.isRateLimited());
+        }
+        assertEquals("other-token", pool.select("octo", "other", tokens));
+    }
+
+    @Test
+    public void concurrentIdenticalGetsShareOneRequest() throws Exception {
+        github.faults().latency(200, 0);
+        int callers = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return service.verifyRepositoryAccess("octo", "app", TOKEN);
+            }));
+        }
+        start.countDown();
+        for (Future<Boolean> result : results) assertTrue(result.get());
+        pool.shutdown();
+
+        assertTrue("Expected the callers to share requests, got " + github.stats().total(),
+                github.stats().total() < callers);
+    }
+
+    @Test
+    public void sharedFailuresKeepTheirType() throws Exception {
+        github.faults().latency(200, 0);
+        int callers = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                try {
+                    service.getWorkflowRunById("octo", "app", TOKEN, "999");
+                    return 0;
+                } catch (ApiException e) {
+                    return e.getStatusCode();
+                }
+            }));
+        }
+        start.countDown();
+        for (Future<Integer> result : results) assertEquals(404, (int) result.get());
+        pool.shutdown();
+        assertTrue(github.stats().total() < callers);
+    }
+
+    @Test
+    public void cancellingABuildLeavesOtherBuildsOfTheRepoRunning() throws Exception {
+        github.seedWorkflow(REPO, "name: CI\n");
+        github.faults().latency(500, 0);
+        final GitHubService first = service.forOwner(1L);
+        final GitHubService second = service.forOwner(2L);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        // Both builds wait on one shared GET, and each makes a call of its own
+        Future<WorkflowFile> firstShared = pool.submit(() -> first.getWorkflowFile("octo", "app", TOKEN));
+        Future<WorkflowFile> secondShared = pool.submit(() -> second.getWorkflowFile("octo", "app", TOKEN));
+        Future<BranchHead> firstOwn = pool.submit(() -> first.checkBranchHead("octo", "app", TOKEN, "main", null));
+        Future<BranchHead> secondOwn = pool.submit(() -> second.checkBranchHead("octo", "app", TOKEN, "main", null));
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (HttpClients.shared().dispatcher().runningCallsCount() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // Only the first build's own call: the second build still needs the shared one
+        assertEquals(1, HttpClients.cancelCalls(1L));
+        try {
+            firstOwn.get();
+            fail("The cancelled build's call should have been aborted");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertNotNull(secondOwn.get());
+        assertNotNull(secondShared.get());
+        assertNotNull(firstShared.get());
+        assertEquals(0, HttpClients.cancelCalls(2L)); // nothing of it left in flight
+        pool.shutdown();
+    }
+}
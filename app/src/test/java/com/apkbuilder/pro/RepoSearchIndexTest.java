@@ -0,0 +1,74 @@
+package com.apkbuilder.pro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RepoSearchIndexTest {
+
+    private RepoSearchIndex index;
+
+    @Before
+    public void setUp() {
+        index = new RepoSearchIndex();
+        index.addAll(Arrays.asList(
+                "octo/app",
+                "octo/backend",
+                "kit/app-core",
+                "mona/docs",
+                "octo/apk-builder",
+                "octo/builder-tools"));
+    }
+
+    @Test
+    public void oneAndTwoCharacterQueriesMatchTokenPrefixes() {
+        assertEquals(Arrays.asList("octo/app", "kit/app-core", "octo/apk-builder"), index.search("a", 10));
+        assertEquals(Arrays.asList("octo/app", "kit/app-core", "octo/apk-builder"), index.search("AP", 10));
+        assertEquals(Arrays.asList("mona/docs"), index.search("d", 10));
+        // "core" is a token of kit/app-core, so it counts as a prefix too
+        assertEquals(Arrays.asList("kit/app-core"), index.search("co", 10));
+    }
+
+    @Test
+    public void twoCharacterQueriesFallBackToSubsequences() {
+        // Not the start of any token: only the fuzzy pass can find it
+        assertEquals(Arrays.asList("octo/backend"), index.search("kn", 10));
+        assertEquals(Collections.<String>emptyList(), index.search("x", 10));
+    }
+
+    @Test
+    public void substringsMatchAnywhereInTheName() {
+        assertEquals(Arrays.asList("octo/backend"), index.search("end", 10));
+        assertEquals(Arrays.asList("octo/builder-tools", "octo/apk-builder"), index.search("builder", 10));
+    }
+
+    @Test
+    public void typosFallBackToSubsequenceMatches() {
+        assertEquals(Arrays.asList("octo/apk-builder"), index.search("apkbuilder", 10));
+        assertEquals(Arrays.asList("octo/backend"), index.search("bakend", 10));
+        assertEquals(Collections.<String>emptyList(), index.search("zzz", 10));
+    }
+
+    @Test
+    public void tiesGoToShorterNamesThenToInsertionOrder() {
+        RepoSearchIndex ties = new RepoSearchIndex();
+        ties.addAll(Arrays.asList("bb/app-2", "octo/apple", "aa/app-1", "zed/app"));
+
+        // zed/app is exact; the rest are name prefixes: shorter first, equal lengths in insertion order
+        assertEquals(Arrays.asList("zed/app", "bb/app-2", "aa/app-1", "octo/apple"), ties.search("app", 10));
+        assertEquals(Arrays.asList("zed/app", "bb/app-2"), ties.search("app", 2));
+    }
+
+    @Test
+    public void emptyQueryListsEntriesInInsertionOrderWithoutDuplicates() {
+        index.addAll(Arrays.asList("octo/app", "new/repo"));
+
+        assertEquals(7, index.size());
+        assertEquals(Arrays.asList("octo/app", "octo/backend", "kit/app-core"), index.search("", 3));
+        assertTrue(index.search("repo", 10).contains("new/repo"));
+    }
+}
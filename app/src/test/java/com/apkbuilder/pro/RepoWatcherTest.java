@@ -0,0 +1,198 @@
+package com.apkbuilder.pro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.apkbuilder.pro.models.BuildRequest;
+import com.apkbuilder.pro.simulator.GitHubSimulator;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import okhttp3.mockwebserver.MockResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RepoWatcherTest {
+
+    private static final String TOKEN = "test-token";
+    private static final String REPO = "octo/app";
+    private static final String HEAD_CHECKS = "GET /repos/{owner}/{repo}/commits/{ref}";
+
+    private GitHubSimulator github;
+    private GitHubService service;
+    private File directory;
+    private final List<String> changes = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+    private final RepoWatcher.Listener listener = new RepoWatcher.Listener() {
+        @Override
+        public void onHeadChanged(BuildRequest request, String previousSha, String newSha) {
+            changes.add(request.getBranch() + ":" + newSha);
+        }
+
+        @Override
+        public void onCheckFailed(BuildRequest request, IOException error) {
+            failures.add(error.getMessage());
+        }
+    };
+    private final RepoWatcher.TokenSource tokens = request -> TOKEN;
+
+    @Before
+    public void setUp() throws Exception {
+        github = new GitHubSimulator().start();
+        github.grant(TOKEN, REPO);
+        service = new GitHubService(github.baseUrl());
+        directory = Files.createTempDirectory("watcher").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        github.close();
+    }
+
+    private RepoWatcher open(long baseIntervalMillis, long maxIntervalMillis) throws IOException {
+        RepoWatcher watcher = new RepoWatcher(directory, service, tokens, listener, baseIntervalMillis, maxIntervalMillis);
+        BuildRequest request = new BuildRequest();
+        request.setRepoOwner("octo");
+        request.setRepoName("app");
+        request.setBuildType("release");
+        request.setGithubToken(TOKEN);
+        if (!watcher.isWatching(REPO)) watcher.watch(request);
+        return watcher;
+    }
+
+    /**
+     * Waits out the longest interval the test uses, then checks the repo.
+     */
+    private static void checkLater(RepoWatcher watcher) throws InterruptedException {
+        Thread.sleep(60);
+        watcher.checkDue();
+    }
+
+    @Test
+    public void watcherReportsOnlyPushesAfterTheBaseline() throws Exception {
+        RepoWatcher watcher = open(0, 0);
+
+        watcher.checkDue(); // baseline only
+        watcher.checkDue();
+        assertTrue(changes.isEmpty());
+
+        String pushed = github.pushCommit(REPO);
+        watcher.checkDue();
+        assertEquals(Collections.singletonList("main:" + pushed), changes);
+
+        // Our own workflow commit is acknowledged and does not count as a push
+        service.createWorkflowFile("octo", "app", TOKEN, "name: CI\n", null);
+        watcher.acknowledge(REPO, github.headSha(REPO));
+        watcher.checkDue();
+        assertEquals(1, changes.size());
+
+        // A new instance picks the watch up from disk, baseline included
+        RepoWatcher reloaded = open(0, 0);
+        assertTrue(reloaded.isWatching(REPO));
+        reloaded.checkDue();
+        assertEquals(1, changes.size());
+        String next = github.pushCommit(REPO);
+        reloaded.checkDue();
+        assertEquals("main:" + next, changes.get(1));
+        assertTrue(failures.isEmpty());
+    }
+
+    @Test
+    public void idleChecksAreAnsweredWithNotModified() throws Exception {
+        RepoWatcher watcher = open(0, 0);
+        watcher.checkDue(); // baseline: a full answer with an ETag
+        assertEquals(0, github.stats().countStatus(304));
+
+        watcher.checkDue();
+        watcher.checkDue();
+        assertEquals(2, github.stats().countStatus(304));
+
+        // The ETag is kept with the watch, so a restart does not cost a full answer
+        RepoWatcher reloaded = open(0, 0);
+        reloaded.checkDue();
+        assertEquals(3, github.stats().countStatus(304));
+        assertEquals(4, github.stats().count(HEAD_CHECKS));
+
+        // An acknowledged commit drops the ETag, which was for the old head
+        service.createWorkflowFile("octo", "app", TOKEN, "name: CI\n", null);
+        reloaded.acknowledge(REPO, github.headSha(REPO));
+        reloaded.checkDue();
+        assertEquals(3, github.stats().countStatus(304));
+        reloaded.checkDue();
+        assertEquals(4, github.stats().countStatus(304));
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    public void idleReposBackOffAndPushesResetTheInterval() throws Exception {
+        RepoWatcher watcher = open(10, 40);
+        watcher.checkDue();
+        // Idle checks stretch the interval by half each time, up to the maximum
+        long[] expected = {15, 22, 33, 40, 40};
+        for (long interval : expected) {
+            checkLater(watcher);
+            assertEquals(interval, watcher.intervalMillis(REPO));
+        }
+
+        github.pushCommit(REPO);
+        checkLater(watcher);
+        assertEquals(1, changes.size());
+        assertEquals(10, watcher.intervalMillis(REPO));
+    }
+
+    @Test
+    public void failedChecksBackOffFasterAndAreReported() throws Exception {
+        RepoWatcher watcher = open(10, 40);
+        watcher.checkDue();
+
+        github.failNext(HEAD_CHECKS, new MockResponse().setResponseCode(404).setBody("{\"message\":\"Not Found\"}"));
+        checkLater(watcher);
+        assertEquals(20, watcher.intervalMillis(REPO));
+        assertEquals(1, failures.size());
+
+        github.failNext(HEAD_CHECKS, new MockResponse().setResponseCode(404).setBody("{\"message\":\"Not Found\"}"));
+        checkLater(watcher);
+        assertEquals(40, watcher.intervalMillis(REPO));
+
+        // Recovering does not count as a push: the baseline survived the failures
+        checkLater(watcher);
+        assertEquals(40, watcher.intervalMillis(REPO));
+        assertTrue(changes.isEmpty());
+        assertEquals(2, failures.size());
+    }
+
+    @Test
+    public void pushIsReportedEvenIfTheWatchCannotBeSaved() throws Exception {
+        RepoWatcher watcher = open(0, 0);
+        watcher.checkDue();
+
+        // A directory in the state file's place cannot be replaced
+        File stateFile = new File(directory, "watched-repos.json");
+        assertTrue(stateFile.delete());
+        assertTrue(new File(stateFile, "blocker").mkdirs());
+
+        String pushed = github.pushCommit(REPO);
+        watcher.checkDue();
+        assertEquals(Collections.singletonList("main:" + pushed), changes);
+        assertEquals(1, failures.size());
+
+        // The new head is still the baseline: the same push is not reported twice
+        watcher.checkDue();
+        assertEquals(1, changes.size());
+    }
+
+    @Test
+    public void checksAreNotMadeBeforeTheyAreDue() throws Exception {
+        RepoWatcher watcher = open(60_000, 300_000);
+        watcher.checkDue();
+        watcher.checkDue();
+        watcher.checkDue();
+        assertEquals(1, github.stats().count(HEAD_CHECKS));
+        assertTrue(watcher.unwatch(REPO));
+        assertEquals(-1, watcher.intervalMillis(REPO));
+    }
+}
@@ -0,0 +1,136 @@
+package com.apkbuilder.pro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.apkbuilder.pro.models.StepTiming;
+import com.apkbuilder.pro.models.WorkflowResponse;
+import com.apkbuilder.pro.simulator.GitHubSimulator;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StepTrendsTest {
+
+    private static final String TOKEN = "test-token";
+    private static final String REPO = "octo/app";
+
+    private GitHubSimulator github;
+    private GitHubService service;
+
+    @Before
+    public void setUp() throws Exception {
+        github = new GitHubSimulator().start();
+        github.grant(TOKEN, REPO);
+        service = new GitHubService(github.baseUrl());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        github.close();
+    }
+
+    @Test
+    public void stepTrendsPointAtTheStepThatGotSlower() throws Exception {
+        StepTrends trends = new StepTrends(Files.createTempDirectory("trends").toFile());
+        String[] steps = {"Checkout code", "Set up Java", "Build APK", "Find APK"};
+        Set<String> claimed = new HashSet<>();
+
+        // Six steady 100s runs: 5s, 15s, 70s, 10s
+        github.runTimings(0, 100_000, "success").steps(steps, new double[] {0.05, 0.15, 0.7, 0.1});
+        for (int i = 0; i < 6; i++) {
+            String runId = runToCompletion(claimed, 100_000);
+            assertTrue(trends.record(REPO, runId, service.getRunSteps("octo", "app", TOKEN, runId)));
+        }
+        List<StepTrends.StepStats> slowest = trends.slowest(REPO, 2);
+        assertEquals(2, slowest.size());
+        assertEquals("build / Build APK", slowest.get(0).getName());
+        assertEquals(70_000, slowest.get(0).getLastMillis());
+        assertEquals(0, slowest.get(0).getRegression(), 0.01);
+
+        // The Gradle step alone grows to 170s
+        github.runTimings(0, 200_000, "success").steps(steps, new double[] {0.025, 0.075, 0.85, 0.05});
+        String lastRun = null;
+        for (int i = 0; i < 3; i++) {
+            lastRun = runToCompletion(claimed, 200_000);
+            trends.record(REPO, lastRun, service.getRunSteps("octo", "app", TOKEN, lastRun));
+        }
+        assertFalse("A run counts once", trends.record(REPO, lastRun, service.getRunSteps("octo", "app", TOKEN, lastRun)));
+        assertEquals(9, trends.runCount(REPO));
+
+        slowest = trends.slowest(REPO, 4);
+        assertEquals("build / Build APK", slowest.get(0).getName());
+        assertTrue("Build APK regression " + slowest.get(0).getRegression(), slowest.get(0).getRegression() > 0.5);
+        for (StepTrends.StepStats other : slowest.subList(1, slowest.size())) {
+            assertEquals(other.getName(), 0, other.getRegression(), 0.01);
+        }
+        // The report shows the recent average, not just the slowest last run
+        assertEquals(170_000, slowest.get(0).getLastMillis());
+        assertTrue(StepTrends.formatReport(slowest).contains("Build APK: 2m 16s (+"));
+    }
+
+    @Test
+    public void runStepsShowWhichStepIsRunning() throws Exception {
+        github.runTimings(0, 100_000, "success")
+                .steps(new String[] {"Checkout code", "Build APK"}, new double[] {0.2, 0.8});
+        long dispatchedAt = System.currentTimeMillis();
+        service.dispatchWorkflow("octo", "app", TOKEN, "release");
+        github.advanceClock(50_000);
+        String runId = service.findDispatchedRun("octo", "app", TOKEN, dispatchedAt, Collections.<String>emptySet()).getRunId();
+
+        List<StepTiming> steps = service.getRunSteps("octo", "app", TOKEN, runId);
+        assertEquals(2, steps.size());
+        assertTrue(steps.get(0).isMeasured());
+        assertFalse(steps.get(1).isMeasured());
+        assertEquals("Build APK", StepTiming.currentStep(steps).getStepName());
+    }
+
+    @Test
+    public void reportIsOrderedByTheDurationsItShows() throws Exception {
+        StepTrends trends = new StepTrends(Files.createTempDirectory("trends").toFile());
+        String[] steps = {"Build APK", "Run tests"};
+        Set<String> claimed = new HashSet<>();
+
+        // Gradle is usually the slow step: 60s against 30s of tests
+        github.runTimings(0, 90_000, "success").steps(steps, new double[] {0.667, 0.333});
+        for (int i = 0; i < 6; i++) {
+            String runId = runToCompletion(claimed, 90_000);
+            trends.record(REPO, runId, service.getRunSteps("octo", "app", TOKEN, runId));
+        }
+        // One run with slow tests (70s) and a warm Gradle cache (20s)
+        github.runTimings(0, 90_000, "success").steps(steps, new double[] {0.222, 0.778});
+        String runId = runToCompletion(claimed, 90_000);
+        trends.record(REPO, runId, service.getRunSteps("octo", "app", TOKEN, runId));
+
+        List<StepTrends.StepStats> slowest = trends.slowest(REPO, 2);
+        // By the last run alone the tests are slower; on average Gradle still is
+        assertTrue(slowest.get(1).getLastMillis() > slowest.get(0).getLastMillis());
+        assertEquals("build / Build APK", slowest.get(0).getName());
+
+        // Each line shows the average the order comes from
+        String report = StepTrends.formatReport(slowest);
+        for (StepTrends.StepStats stats : slowest) {
+            String line = stats.getName() + ": " + StepTrends.formatDuration(stats.getRecentMillis());
+            assertTrue(report, report.contains(line));
+        }
+        assertTrue(slowest.get(0).getRecentMillis() > slowest.get(1).getRecentMillis());
+    }
+
+    /**
+     * Dispatches a run, lets it finish on the simulated clock and returns its id.
+     */
+    private String runToCompletion(Set<String> claimed, long runningMillis) throws Exception {
+        long dispatchedAt = System.currentTimeMillis();
+        service.dispatchWorkflow("octo", "app", TOKEN, "release");
+        WorkflowResponse run = service.findDispatchedRun("octo", "app", TOKEN, dispatchedAt, claimed);
+        claimed.add(run.getRunId());
+        github.advanceClock(runningMillis + 1_000);
+        return run.getRunId();
+    }
+}
@@ -0,0 +1,199 @@
+package com.apkbuilder.pro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.apkbuilder.pro.simulator.Faults;
+import com.apkbuilder.pro.simulator.TelegramSimulator;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TelegramServiceTest {
+
+    private static final String BOT = "123:abc";
+    private static final String CHAT = "42";
+
+    private TelegramSimulator telegram;
+    private TelegramService service;
+
+    @Before
+    public void setUp() throws Exception {
+        telegram = new TelegramSimulator().start();
+        telegram.addBot(BOT);
+        service = new TelegramService(telegram.baseUrl());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        telegram.close();
+    }
+
+    @Test
+    public void checksTheBotToken() throws Exception {
+        assertTrue(service.checkBot(BOT));
+        assertFalse(service.checkBot("999:wrong"));
+    }
+
+    @Test
+    public void sendsAndEditsOneMessage() throws Exception {
+        String messageId = service.sendMessageWithId(BOT, CHAT, "<b>Started</b>");
+        assertNotNull(messageId);
+        assertTrue(service.editMessage(BOT, CHAT, messageId, "<b>Finished</b>"));
+
+        assertEquals("<b>Finished</b>", telegram.message(CHAT, messageId));
+        assertEquals(1, telegram.messageCount());
+        assertEquals(1, telegram.editCount());
+        // Telegram rejects an edit that changes nothing
+        assertFalse(service.editMessage(BOT, CHAT, messageId, "<b>Finished</b>"));
+    }
+
+    @Test
+    public void shortRateLimitIsWaitedOut() throws Exception {
+        telegram.faults().failNext(Faults.rateLimited(1));
+        assertNotNull(service.sendMessageWithId(BOT, CHAT, "hello"));
+        assertEquals(1, telegram.stats().countStatus(429));
+        assertEquals(1, telegram.messageCount());
+    }
+
+    @Test
+    public void longRateLimitCarriesTelegramsWait() throws Exception {
+        telegram.faults().failNext(Faults.rateLimited(30));
+        try {
+            service.sendMessageWithId(BOT, CHAT, "hello");
+            fail("Expected a 429");
+        } catch (ApiException e) {
+            assertEquals(429, e.getStatusCode());
+            assertEquals(30_000, e.getRetryAfterMillis());
+            assertTrue(ApiException.isTransient(e));
+        }
+        assertEquals(1, telegram.stats().countStatus(429));
+        assertEquals(0, telegram.messageCount());
+    }
+
+    @Test
+    public void serverErrorOnBotCheckIsRetriedThenTransient() throws Exception {
+        telegram.faults().failNext(Faults.serverError(502));
+        assertTrue(service.checkBot(BOT));
+
+        for (int i = 0; i < 3; i++) telegram.faults().failNext(Faults.serverError(502));
+        try {
+            service.checkBot(BOT);
+            fail("Expected a 502");
+        } catch (ApiException e) {
+            assertTrue(ApiException.isTransient(e));
+        }
+        assertEquals(4, telegram.stats().countStatus(502));
+    }
+
+    @Test
+    public void rateLimitedBotCheckIsTransientNotARejection() throws Exception {
+        // Too long to wait out inside the call
+        telegram.faults().failNext(Faults.rateLimited(30));
+        try {
+            service.checkBot(BOT);
+            fail("Expected a 429");
+        } catch (ApiException e) {
+            assertEquals(429, e.getStatusCode());
+            assertTrue(ApiException.isTransient(e));
+        }
+    }
+
+    @Test
+    public void broadcastSendsEachChatOnlyTheLatestState() throws Exception {
+        telegram.floodLimits(5, 25); // a little looser than the broadcaster's own pace
+        List<IOException> errors = Collections.synchronizedList(new ArrayList<IOException>());
+        TelegramBroadcaster broadcaster = new TelegramBroadcaster(service, (chatId, error) -> errors.add(error), 4, 20, 4);
+        List<String> chats = new ArrayList<>();
+        for (int i = 1; i <= 30; i++) chats.add(String.valueOf(-1000 - i));
+        TelegramBroadcaster.Broadcast broadcast = new TelegramBroadcaster.Broadcast(BOT, chats);
+
+        try {
+            for (int state = 1; state <= 20; state++) {
+                broadcaster.publish(broadcast, "<b>State " + state + "</b>");
+            }
+            broadcaster.publish(broadcast, "<b>State 20</b>"); // unchanged: nothing to do
+            awaitIdle(broadcast, 15_000);
+        } finally {
+            broadcaster.shutdown();
+        }
+
+        assertTrue("Delivery errors: " + errors, errors.isEmpty());
+        assertEquals(0, telegram.floodRejections());
+        for (String chat : chats) {
+            assertEquals(1, telegram.messageCount(chat));
+            assertEquals("<b>State 20</b>", telegram.latestMessage(chat));
+            assertNotNull(broadcast.getMessageId(chat));
+        }
+        // The first state is sent, then the chat catches up with one edit, not 19
+        int calls = telegram.stats().total();
+        assertTrue("Expected about 2 calls per chat, got " + calls, calls <= 2 * chats.size());
+    }
+
+    @Test
+    public void broadcastRetriesAChatThatWasNotReached() throws Exception {
+        List<IOException> errors = Collections.synchronizedList(new ArrayList<IOException>());
+        TelegramBroadcaster broadcaster = new TelegramBroadcaster(service, (chatId, error) -> errors.add(error));
+        TelegramBroadcaster.Broadcast broadcast = new TelegramBroadcaster.Broadcast(BOT, TelegramService.parseChatIds("42, @team"));
+        telegram.faults().failNext(Faults.rateLimited(9)); // just too long to wait out inside the call
+
+        long started = System.currentTimeMillis();
+        try {
+            broadcaster.publish(broadcast, "<b>Started</b>");
+            awaitIdle(broadcast, 20_000);
+        } finally {
+            broadcaster.shutdown();
+        }
+
+        // The retry waited for as long as Telegram asked, not the fixed retry delay
+        long elapsed = System.currentTimeMillis() - started;
+        assertTrue("Done after " + elapsed + " ms", elapsed >= 9_000);
+        assertEquals(1, errors.size());
+        assertEquals(9_000, ((ApiException) errors.get(0)).getRetryAfterMillis());
+        assertEquals("<b>Started</b>", telegram.latestMessage("42"));
+        assertEquals("<b>Started</b>", telegram.latestMessage("@team"));
+    }
+
+    @Test
+    public void chatsWaitingTheirTurnDoNotHoldTheBotsSlots() throws Exception {
+        // Two messages a second for the bot, one every two seconds in a chat
+        List<IOException> errors = Collections.synchronizedList(new ArrayList<IOException>());
+        TelegramBroadcaster broadcaster = new TelegramBroadcaster(service, (chatId, error) -> errors.add(error), 4, 2, 0.5);
+        TelegramBroadcaster.Broadcast busy = new TelegramBroadcaster.Broadcast(BOT, Collections.singletonList("-1001"));
+        TelegramBroadcaster.Broadcast quiet = new TelegramBroadcaster.Broadcast(BOT, Collections.singletonList("-1002"));
+
+        long started = System.currentTimeMillis();
+        try {
+            // Due at 0, 2 and 4 s in their chat; only the first may take a bot slot now
+            for (int i = 1; i <= 3; i++) broadcaster.announce(busy, "<b>Update " + i + "</b>");
+            broadcaster.announce(quiet, "<b>Started</b>");
+            while (telegram.messageCount("-1002") == 0) {
+                if (System.currentTimeMillis() - started > 5_000) fail("The quiet chat got nothing");
+                Thread.sleep(10);
+            }
+        } finally {
+            broadcaster.shutdown();
+        }
+
+        // Next bot slot after the busy chat's first message: half a second, not 1.5 s
+        long elapsed = System.currentTimeMillis() - started;
+        assertTrue("Quiet chat served after " + elapsed + " ms", elapsed < 1_200);
+        assertEquals(1, telegram.messageCount("-1001"));
+        assertTrue("Delivery errors: " + errors, errors.isEmpty());
+    }
+
+    private static void awaitIdle(TelegramBroadcaster.Broadcast broadcast, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!broadcast.isIdle()) {
+            if (System.currentTimeMillis() > deadline) fail("Broadcast still busy after " + timeoutMillis + " ms");
+            Thread.sleep(20);
+        }
+    }
+}
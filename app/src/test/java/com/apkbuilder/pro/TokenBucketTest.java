@@ -0,0 +1,40 @@
+package com.apkbuilder.pro;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TokenBucketTest {
+
+    @Test
+    public void permitsBeyondTheBurstAreBookedAhead() {
+        TokenBucket bucket = new TokenBucket(10, 2);
+        assertEquals(0, bucket.reserve());
+        assertEquals(0, bucket.reserve());
+        long third = bucket.reserve();
+        long fourth = bucket.reserve();
+        assertTrue("Third permit in " + third, third > 50 && third <= 100);
+        assertTrue("Fourth permit in " + fourth, fourth > 150 && fourth <= 200);
+    }
+
+    @Test
+    public void pushBackHoldsTheNextPermit() {
+        TokenBucket bucket = new TokenBucket(10, 1);
+        bucket.pushBack(3_000);
+        long wait = bucket.reserve();
+        assertTrue("Waited " + wait, wait > 2_900 && wait <= 3_000);
+        // Paced as usual from there
+        long next = bucket.reserve();
+        assertTrue("Next in " + next, next > 3_000 && next <= 3_100);
+    }
+
+    @Test
+    public void pushBackKeepsPermitsBookedLaterThanIt() {
+        TokenBucket bucket = new TokenBucket(1, 1);
+        for (int i = 0; i < 5; i++) bucket.reserve(); // booked up to 4s ahead
+        bucket.pushBack(1_000);
+        long wait = bucket.reserve();
+        assertTrue("Waited " + wait, wait > 4_900 && wait <= 5_000);
+    }
+}
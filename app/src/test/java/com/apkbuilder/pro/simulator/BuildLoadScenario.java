@@ -0,0 +1,290 @@
+package com.apkbuilder.pro.simulator;
+
+import com.apkbuilder.pro.ApiException;
+import com.apkbuilder.pro.BuildCache;
+import com.apkbuilder.pro.BuildPipeline;
+import com.apkbuilder.pro.GitHubService;
+import com.apkbuilder.pro.TelegramService;
+import com.apkbuilder.pro.TokenPool;
+import com.apkbuilder.pro.TrackedBuild;
+import com.apkbuilder.pro.WorkflowYamlGenerator;
+import com.apkbuilder.pro.models.BuildStage;
+import com.apkbuilder.pro.models.RunSnapshot;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives many simulated builds through the {@link BuildPipeline} {@code MainActivity} uses:
+ * the pre-flight stage graph and dispatch, a Telegram announcement, then a poll per tick
+ * (editing the Telegram message on every update) until the run completes. Transient
+ * polling errors skip a tick, as in the app. Every build pushes a new commit, so the build
+ * cache is consulted but only short-cuts a build when builds of one repo overlap (slowed by
+ * retries, or re-dispatched after a lost dispatch) and another one already built the head;
+ * those count as completed, as the app hands out the cached APK. Records client-side
+ * latency per pre-flight stage and per operation.
+ */
+public class BuildLoadScenario {
+
+    static final String GITHUB_TOKEN = "sim-token";
+    static final String BOT_TOKEN = "sim-bot";
+    static final String CHAT_ID = "1001";
+    static final String BUILD_TYPE = "release";
+
+    private final GitHubSimulator github;
+    private final TelegramSimulator telegram;
+    private int builds = 100;
+    private int repos = 25;
+    private int concurrency = 16;
+    private long pollIntervalMillis = 20;
+    private long buildTimeoutMillis = 15_000;
+    private boolean seedWorkflows = true;
+
+    private final Map<String, List<Long>> latencies = new ConcurrentHashMap<>();
+    private final AtomicInteger pollErrors = new AtomicInteger();
+    private final AtomicInteger cacheHits = new AtomicInteger();
+
+    private interface Call<T> {
+        T call() throws Exception;
+    }
+
+    public BuildLoadScenario(GitHubSimulator github, TelegramSimulator telegram) {
+        this.github = github;
+        this.telegram = telegram;
+    }
+
+    public BuildLoadScenario builds(int builds) { this.builds = builds; return this; }
+    public BuildLoadScenario repos(int repos) { this.repos = repos; return this; }
+    public BuildLoadScenario concurrency(int concurrency) { this.concurrency = concurrency; return this; }
+    public BuildLoadScenario pollInterval(long millis) { this.pollIntervalMillis = millis; return this; }
+    public BuildLoadScenario buildTimeout(long millis) { this.buildTimeoutMillis = millis; return this; }
+
+    /**
+     * False to start from repos without the workflow file, so the first builds commit it.
+     */
+    public BuildLoadScenario seedWorkflows(boolean seed) { this.seedWorkflows = seed; return this; }
+
+    public LoadReport run() throws Exception {
+        List<String> repoNames = new ArrayList<>();
+        for (int i = 0; i < repos; i++) {
+            String repo = "sim-owner/app-" + i;
+            repoNames.add(repo);
+            if (seedWorkflows) github.seedWorkflow(repo, WorkflowYamlGenerator.generate(BOT_TOKEN, CHAT_ID));
+        }
+        github.grant(GITHUB_TOKEN, repoNames.toArray(new String[0]));
+        telegram.addBot(BOT_TOKEN);
+
+        final TokenPool tokenPool = new TokenPool();
+        final GitHubService gitHubService = new GitHubService(github.baseUrl());
+        gitHubService.setTokenPool(tokenPool);
+        final TelegramService telegramService = new TelegramService(telegram.baseUrl());
+        ExecutorService buildPool = Executors.newFixedThreadPool(concurrency);
+        final ExecutorService stagePool = Executors.newCachedThreadPool();
+        final BuildPipeline pipeline = new BuildPipeline(gitHubService, telegramService, tokenPool,
+                new BuildCache(Files.createTempDirectory("build-cache").toFile()), stagePool,
+                new BuildPipeline.Listener() {
+                    @Override
+                    public void onStageStarted(TrackedBuild build, BuildStage stage) {}
+
+                    @Override
+                    public void onWorkflowCommitted(TrackedBuild build) {}
+                });
+        // Simulated runs show up within milliseconds of their dispatch
+        pipeline.setDispatchConfirmMillis(1_000);
+        final AtomicInteger completed = new AtomicInteger();
+        final Map<String, AtomicInteger> failures = new ConcurrentHashMap<>();
+
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < builds; i++) {
+            final String repo = repoNames.get(i % repos);
+            futures.add(buildPool.submit(() -> {
+                long buildStart = System.nanoTime();
+                try {
+                    runBuild(pipeline, telegramService, repo);
+                    completed.incrementAndGet();
+                } catch (Exception e) {
+                    String reason = e.getClass().getSimpleName() + ": " + e.getMessage();
+                    failures.computeIfAbsent(reason, k -> new AtomicInteger()).incrementAndGet();
+                }
+                record("end-to-end", System.nanoTime() - buildStart);
+            }));
+        }
+        for (Future<?> future : futures) future.get();
+        long elapsedNanos = System.nanoTime() - start;
+
+        buildPool.shutdown();
+        stagePool.shutdown();
+        buildPool.awaitTermination(5, TimeUnit.SECONDS);
+        return new LoadReport(builds, completed.get(), failures, pollErrors.get(), cacheHits.get(), elapsedNanos,
+                latencies, github.stats(), telegram.stats());
+    }
+
+    private void runBuild(final BuildPipeline pipeline, final TelegramService telegramService,
+                          final String fullName) throws Exception {
+        final TrackedBuild build = new TrackedBuild(fullName.substring(0, fullName.indexOf('/')),
+                fullName.substring(fullName.indexOf('/') + 1), "main", BUILD_TYPE, GITHUB_TOKEN, BOT_TOKEN, CHAT_ID);
+        github.pushCommit(fullName);
+
+        BuildPipeline.Dispatch dispatch = pipeline.dispatch(build);
+        for (Map.Entry<BuildStage, Long> stage : dispatch.getTimings().entrySet()) {
+            record(stage.getKey().name().toLowerCase(Locale.US), stage.getValue() * 1_000_000L);
+        }
+        if (dispatch.getCachedBuild() != null) {
+            cacheHits.incrementAndGet();
+            return;
+        }
+
+        String messageId = timed("telegram-send", () -> telegramService.sendMessageWithId(BOT_TOKEN, CHAT_ID,
+                "🚀 Build started: " + fullName));
+
+        long deadline = System.currentTimeMillis() + buildTimeoutMillis;
+        while (System.currentTimeMillis() < deadline) {
+            Thread.sleep(pollIntervalMillis);
+            BuildPipeline.RunUpdate update;
+            try {
+                update = timed("poll", () -> pipeline.poll(build));
+            } catch (IOException e) {
+                // Like the app: the run goes on without us, so a transient error only skips this tick
+                if (!ApiException.isTransient(e)) throw e;
+                build.recordPollFailure();
+                pollErrors.incrementAndGet();
+                continue;
+            }
+            if (update == null) {
+                if (pipeline.isDispatchLost(build)) {
+                    // Like the app, which queues it again: GitHub never started this dispatch.
+                    // The head may have moved meanwhile, to a commit another build already made
+                    BuildPipeline.Dispatch again = timed("redispatch", () -> pipeline.dispatch(build));
+                    if (again.getCachedBuild() != null) {
+                        cacheHits.incrementAndGet();
+                        return;
+                    }
+                }
+                continue;
+            }
+
+            RunSnapshot current = update.getTransition().getCurrent();
+            if (messageId != null) {
+                final String text = update.getResponse().formatTelegramMessage(fullName, current.getCurrentStep());
+                timed("telegram-edit", () -> telegramService.editMessage(BOT_TOKEN, CHAT_ID, messageId, text));
+            }
+            if (current.isCompleted()) {
+                if (!current.isSuccessful()) throw new Exception("Run concluded " + current.getConclusion());
+                return;
+            }
+        }
+        throw new Exception("Timed out waiting for the run to complete");
+    }
+
+    private <T> T timed(String operation, Call<T> call) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return call.call();
+        } finally {
+            record(operation, System.nanoTime() - start);
+        }
+    }
+
+    private void record(String operation, long nanos) {
+        latencies.computeIfAbsent(operation, k -> Collections.synchronizedList(new ArrayList<Long>())).add(nanos);
+    }
+
+    /**
+     * Outcome of one scenario run: throughput, request counts and latency percentiles.
+     */
+    public static final class LoadReport {
+        public final int builds;
+        public final int completed;
+        public final Map<String, AtomicInteger> failures;
+        /** Polls that failed transiently and were skipped rather than failing the build. */
+        public final int pollErrors;
+        /** Builds that found their commit already built by an overlapping build of the repo. */
+        public final int cacheHits;
+        public final long elapsedNanos;
+        public final RequestStats github;
+        public final RequestStats telegram;
+        private final Map<String, long[]> sorted = new TreeMap<>();
+
+        LoadReport(int builds, int completed, Map<String, AtomicInteger> failures, int pollErrors, int cacheHits,
+                   long elapsedNanos, Map<String, List<Long>> latencies, RequestStats github, RequestStats telegram) {
+            this.builds = builds;
+            this.completed = completed;
+            this.failures = failures;
+            this.pollErrors = pollErrors;
+            this.cacheHits = cacheHits;
+            this.elapsedNanos = elapsedNanos;
+            this.github = github;
+            this.telegram = telegram;
+            for (Map.Entry<String, List<Long>> entry : latencies.entrySet()) {
+                long[] values;
+                synchronized (entry.getValue()) {
+                    values = new long[entry.getValue().size()];
+                    for (int i = 0; i < values.length; i++) values[i] = entry.getValue().get(i);
+                }
+                Arrays.sort(values);
+                sorted.put(entry.getKey(), values);
+            }
+        }
+
+        public double buildsPerSecond() {
+            return completed / (elapsedNanos / 1e9);
+        }
+
+        public double githubRequestsPerBuild() {
+            return github.total() / (double) builds;
+        }
+
+        /**
+         * Latency percentile in milliseconds for an operation ("dispatch", "end-to-end", ...).
+         */
+        public double percentileMillis(String operation, double percentile) {
+            long[] values = sorted.get(operation);
+            if (values == null || values.length == 0) return 0;
+            int index = (int) Math.ceil(percentile / 100.0 * values.length) - 1;
+            return values[Math.max(0, Math.min(index, values.length - 1))] / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.US, "builds: %d (completed %d, failed %d) in %.2f s -> %.1f builds/s%n",
+                    builds, completed, builds - completed, elapsedNanos / 1e9, buildsPerSecond()));
+            for (Map.Entry<String, AtomicInteger> failure : failures.entrySet()) {
+                sb.append("  failure x").append(failure.getValue()).append(": ").append(failure.getKey()).append('\n');
+            }
+            if (pollErrors > 0) sb.append("  transient poll errors skipped: ").append(pollErrors).append('\n');
+            if (cacheHits > 0) sb.append("  served from the build cache: ").append(cacheHits).append('\n');
+            sb.append(String.format(Locale.US, "requests: github %d (%.1f/build), telegram %d%n",
+                    github.total(), githubRequestsPerBuild(), telegram.total()));
+            for (Map.Entry<String, Integer> route : github.byRoute().entrySet()) {
+                sb.append(String.format(Locale.US, "  %-55s %6d%n", route.getKey(), route.getValue()));
+            }
+            for (Map.Entry<String, Integer> route : telegram.byRoute().entrySet()) {
+                sb.append(String.format(Locale.US, "  %-55s %6d%n", route.getKey(), route.getValue()));
+            }
+            sb.append("  status codes: github ").append(github.byStatus())
+              .append(", telegram ").append(telegram.byStatus()).append('\n');
+            sb.append(String.format(Locale.US, "latency ms       %8s %8s %8s %8s %6s%n", "p50", "p95", "p99", "max", "n"));
+            for (Map.Entry<String, long[]> entry : sorted.entrySet()) {
+                String op = entry.getKey();
+                sb.append(String.format(Locale.US, "  %-14s %8.1f %8.1f %8.1f %8.1f %6d%n", op,
+                        percentileMillis(op, 50), percentileMillis(op, 95), percentileMillis(op, 99),
+                        percentileMillis(op, 100), entry.getValue().length));
+            }
+            return sb.toString();
+        }
+    }
+}
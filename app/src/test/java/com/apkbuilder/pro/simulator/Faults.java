@@ -0,0 +1,86 @@
+package com.apkbuilder.pro.simulator;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import okhttp3.mockwebserver.MockResponse;
+
+/**
+ * Fault injection shared by the simulators: latency, random 5xx and 429s, and
+ * scripted one-off responses. Random decisions use a fixed seed so runs are repeatable.
+ */
+public class Faults {
+
+    private final Random random;
+    private final Deque<MockResponse> scripted = new ArrayDeque<>();
+    private long latencyMillis;
+    private long jitterMillis;
+    private double serverErrorRate;
+    private double rateLimitRate;
+    private int retryAfterSeconds = 1;
+
+    public Faults(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Every response waits {@code latencyMillis} plus up to {@code jitterMillis} before its headers.
+     */
+    public synchronized Faults latency(long latencyMillis, long jitterMillis) {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        return this;
+    }
+
+    /**
+     * Fraction of requests (0..1) answered with 503.
+     */
+    public synchronized Faults serverErrors(double rate) {
+        this.serverErrorRate = rate;
+        return this;
+    }
+
+    /**
+     * Fraction of requests (0..1) answered with 429 and a Retry-After header.
+     */
+    public synchronized Faults rateLimits(double rate, int retryAfterSeconds) {
+        this.rateLimitRate = rate;
+        this.retryAfterSeconds = retryAfterSeconds;
+        return this;
+    }
+
+    /**
+     * The next request gets exactly this response, ahead of any other fault.
+     */
+    public synchronized Faults failNext(MockResponse response) {
+        scripted.add(response);
+        return this;
+    }
+
+    public static MockResponse serverError(int code) {
+        return new MockResponse().setResponseCode(code).setBody("{\"message\":\"Simulated server error\"}");
+    }
+
+    public static MockResponse rateLimited(int retryAfterSeconds) {
+        return new MockResponse().setResponseCode(429)
+                .setHeader("Retry-After", String.valueOf(retryAfterSeconds))
+                .setBody("{\"message\":\"Simulated rate limit\"}");
+    }
+
+    /**
+     * Returns an injected fault for this request, or null to let the simulator answer normally.
+     */
+    synchronized MockResponse pick() {
+        if (!scripted.isEmpty()) return scripted.poll();
+        double roll = random.nextDouble();
+        if (roll < serverErrorRate) return serverError(503);
+        if (roll < serverErrorRate + rateLimitRate) return rateLimited(retryAfterSeconds);
+        return null;
+    }
+
+    synchronized MockResponse delay(MockResponse response) {
+        long delay = latencyMillis + (jitterMillis > 0 ? (long) (random.nextDouble() * jitterMillis) : 0);
+        return delay > 0 ? response.setHeadersDelay(delay, TimeUnit.MILLISECONDS) : response;
+    }
+}
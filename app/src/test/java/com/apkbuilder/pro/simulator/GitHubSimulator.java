@@ -0,0 +1,631 @@
+package com.apkbuilder.pro.simulator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.ByteString;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * In-process stand-in for the parts of the GitHub REST API the app uses:
+ * repository listing (paginated with Link headers), repository lookup, the contents
+ * API, branch heads (commits/{ref}), repository_dispatch, workflow runs (list, by id,
+ * jobs and steps, cancel) with conditional GETs, and per-token rate-limit headers; plus the
+ * GraphQL dashboard query (repositories with their latest run). Dispatched runs move from queued to
+ * in_progress to completed on a timer, so polling sees real transitions.
+ *
+ * Usage: {@code new GitHubSimulator().start()}, then point {@code GitHubService} at {@link #baseUrl()}.
+ */
+public class GitHubSimulator extends Dispatcher implements Closeable {
+
+    private static final String WORKFLOW_PATH = ".github/workflows/android-build.yml";
+
+    private final MockWebServer server = new MockWebServer();
+    private final Faults faults;
+    private final RequestStats stats = new RequestStats();
+    private final AtomicLong nextRunId = new AtomicLong(1000);
+    private final AtomicLong nextSha = new AtomicLong(1);
+
+    // Guarded by this
+    private final Map<String, Set<String>> accessByToken = new HashMap<>();
+    private final Map<String, Integer> remainingByToken = new HashMap<>();
+    private final Map<String, String[]> workflowFiles = new HashMap<>(); // repo -> {sha, content}
+    private final Map<String, List<Run>> runsByRepo = new HashMap<>();
+    private final Map<String, String> headShas = new HashMap<>(); // repo -> main's head commit
+    private final Map<String, MockResponse> scriptedByRoute = new HashMap<>();
+    private int pageSize = 100;
+    private int rateLimit = 5000;
+    private long queuedMillis = 50;
+    private long runningMillis = 200;
+    private String runConclusion = "success";
+    // The run's one job: step names and their share of the running time
+    // Added to the wall clock, so tests can let minutes of CI time pass instantly
+    private long clockOffsetMillis;
+    private String[] stepNames = {"Checkout code", "Set up Java", "Build APK", "Find APK"};
+    private double[] stepShares = {0.05, 0.15, 0.7, 0.1};
+
+    private static final class Run {
+        final long id;
+        final int number;
+        final String repo;
+        final long createdAt;
+        final String headSha;
+        final String displayTitle;
+        String cancelledConclusion;
+        long cancelledAt;
+
+        Run(long id, int number, String repo, long createdAt, String headSha, String displayTitle) {
+            this.id = id;
+            this.number = number;
+            this.repo = repo;
+            this.createdAt = createdAt;
+            this.headSha = headSha;
+            this.displayTitle = displayTitle;
+        }
+    }
+
+    public GitHubSimulator() {
+        this(new Faults(42));
+    }
+
+    public GitHubSimulator(Faults faults) {
+        this.faults = faults;
+        server.setDispatcher(this);
+    }
+
+    public GitHubSimulator start() throws IOException {
+        server.start();
+        return this;
+    }
+
+    public void close() throws IOException {
+        server.shutdown();
+    }
+
+    /**
+     * API root to hand to {@code new GitHubService(...)}, without a trailing slash.
+     */
+    public String baseUrl() {
+        String url = server.url("/").toString();
+        return url.substring(0, url.length() - 1);
+    }
+
+    public Faults faults() { return faults; }
+    public RequestStats stats() { return stats; }
+
+    /**
+     * Registers a token that can see (and write to) the given "owner/name" repositories.
+     */
+    public synchronized GitHubSimulator grant(String token, String... repos) {
+        Set<String> access = accessByToken.get(token);
+        if (access == null) {
+            access = new HashSet<>();
+            accessByToken.put(token, access);
+            remainingByToken.put(token, rateLimit);
+        }
+        for (String repo : repos) access.add(repo);
+        return this;
+    }
+
+    public synchronized GitHubSimulator pageSize(int pageSize) {
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * Requests per token before GitHub answers 403 with X-RateLimit-Remaining: 0.
+     */
+    public synchronized GitHubSimulator rateLimit(int requestsPerToken) {
+        this.rateLimit = requestsPerToken;
+        for (String token : remainingByToken.keySet()) remainingByToken.put(token, requestsPerToken);
+        return this;
+    }
+
+    /**
+     * Requests the token may still make in this rate-limit window.
+     */
+    public synchronized int remaining(String token) {
+        return remainingByToken.get(token);
+    }
+
+    /**
+     * How long a dispatched run stays queued, then in progress, and how it concludes.
+     */
+    public synchronized GitHubSimulator runTimings(long queuedMillis, long runningMillis, String conclusion) {
+        this.queuedMillis = queuedMillis;
+        this.runningMillis = runningMillis;
+        this.runConclusion = conclusion;
+        return this;
+    }
+
+    /**
+     * Moves the simulated clock forward: runs progress as if that much time had passed.
+     */
+    public synchronized GitHubSimulator advanceClock(long millis) {
+        clockOffsetMillis += millis;
+        return this;
+    }
+
+    /**
+     * Steps of the run's job and the share of the running time each takes; shares should add up to 1.
+     * Applies to runs still in progress too, so a test can slow one step down between runs.
+     */
+    public synchronized GitHubSimulator steps(String[] names, double[] shares) {
+        this.stepNames = names.clone();
+        this.stepShares = shares.clone();
+        return this;
+    }
+
+    /**
+     * Commits a workflow file up front, as if an earlier build had set it up.
+     */
+    public synchronized GitHubSimulator seedWorkflow(String repo, String content) {
+        workflowFiles.put(repo, new String[] {newSha(), content});
+        headShas.put(repo, newSha());
+        return this;
+    }
+
+    /**
+     * Moves main to a new commit, as a push would. Returns the new head SHA.
+     */
+    public synchronized String pushCommit(String repo) {
+        String sha = newSha();
+        headShas.put(repo, sha);
+        return sha;
+    }
+
+    public synchronized String headSha(String repo) {
+        String sha = headShas.get(repo);
+        if (sha == null) {
+            sha = newSha(); // every repo starts with an initial commit
+            headShas.put(repo, sha);
+        }
+        return sha;
+    }
+
+    public synchronized String workflowContent(String repo) {
+        String[] file = workflowFiles.get(repo);
+        return file != null ? file[1] : null;
+    }
+
+    /**
+     * The next request on {@code route} (e.g. "POST /repos/{owner}/{repo}/dispatches") gets
+     * exactly this response and is not acted on, whatever other requests come first.
+     */
+    public synchronized GitHubSimulator failNext(String route, MockResponse response) {
+        scriptedByRoute.put(route, response);
+        return this;
+    }
+
+    private synchronized MockResponse scriptedFor(String route) {
+        return scriptedByRoute.remove(route);
+    }
+
+    public synchronized int runCount(String repo) {
+        List<Run> runs = runsByRepo.get(repo);
+        return runs == null ? 0 : runs.size();
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+        HttpUrl url = request.getRequestUrl();
+        List<String> segments = url.pathSegments();
+        String route = route(request.getMethod(), segments);
+
+        MockResponse response = scriptedFor(route);
+        if (response == null) response = faults.pick();
+        if (response == null) {
+            try {
+                response = handle(request, url, segments);
+            } catch (JSONException e) {
+                response = new MockResponse().setResponseCode(400).setBody("{\"message\":\"" + e.getMessage() + "\"}");
+            }
+        }
+        stats.record(route, parseStatus(response.getStatus()));
+        return faults.delay(response);
+    }
+
+    private synchronized MockResponse handle(RecordedRequest request, HttpUrl url, List<String> segments) throws JSONException {
+        String auth = request.getHeader("Authorization");
+        // REST calls send "token ...", GraphQL calls "bearer ..."
+        String token = auth == null ? null
+                : auth.startsWith("token ") ? auth.substring(6)
+                : auth.startsWith("bearer ") ? auth.substring(7) : null;
+        Set<String> access = token != null ? accessByToken.get(token) : null;
+        if (access == null) {
+            return json(401, new JSONObject().put("message", "Bad credentials"));
+        }
+
+        int remaining = remainingByToken.get(token);
+        long resetSeconds = System.currentTimeMillis() / 1000 + 3600;
+        if (remaining <= 0) {
+            return withRateHeaders(json(403, new JSONObject().put("message", "API rate limit exceeded")), 0, resetSeconds);
+        }
+        MockResponse response = respond(request, url, segments, access);
+        // Like GitHub, a 304 to a conditional request does not count against the rate limit
+        if (!response.getStatus().contains(" 304 ")) {
+            remainingByToken.put(token, --remaining);
+        }
+        return withRateHeaders(response, remaining, resetSeconds);
+    }
+
+    private MockResponse respond(RecordedRequest request, HttpUrl url, List<String> segments, Set<String> access) throws JSONException {
+        String method = request.getMethod();
+        if (segments.size() == 2 && "user".equals(segments.get(0)) && "repos".equals(segments.get(1))) {
+            return listRepos(url, access);
+        }
+        if (segments.size() == 1 && "graphql".equals(segments.get(0)) && "POST".equals(method)) {
+            return dashboardPage(new JSONObject(request.getBody().readUtf8()), access);
+        }
+        if (segments.size() < 3 || !"repos".equals(segments.get(0))) {
+            return json(404, new JSONObject().put("message", "Not Found"));
+        }
+
+        String repo = segments.get(1) + "/" + segments.get(2);
+        if (!access.contains(repo)) {
+            return json(404, new JSONObject().put("message", "Not Found"));
+        }
+        List<String> rest = segments.subList(3, segments.size());
+
+        if (rest.isEmpty() && "GET".equals(method)) {
+            return json(200, new JSONObject().put("full_name", repo).put("default_branch", "main"));
+        }
+        if (rest.size() == 2 && "commits".equals(rest.get(0)) && "GET".equals(method)) {
+            return getCommit(repo, rest.get(1), request);
+        }
+        if (!rest.isEmpty() && "contents".equals(rest.get(0))) {
+            return "PUT".equals(method) ? putContents(repo, request) : getContents(repo);
+        }
+        if (rest.size() == 1 && "dispatches".equals(rest.get(0)) && "POST".equals(method)) {
+            return dispatchRun(repo, new JSONObject(request.getBody().readUtf8()));
+        }
+        if (rest.size() >= 2 && "actions".equals(rest.get(0)) && "runs".equals(rest.get(1))) {
+            if (rest.size() == 2) return listRuns(repo, url);
+            Run run = findRun(repo, rest.get(2));
+            if (run == null) return json(404, new JSONObject().put("message", "Not Found"));
+            if (rest.size() == 4 && "cancel".equals(rest.get(3)) && "POST".equals(method)) {
+                return cancelRun(run);
+            }
+            if (rest.size() == 3) {
+                return conditional(request, runJson(run, now()).toString(), "application/json");
+            }
+            if (rest.size() == 4 && "jobs".equals(rest.get(3)) && "GET".equals(method)) {
+                return json(200, jobsJson(run, now()));
+            }
+        }
+        return json(404, new JSONObject().put("message", "Not Found"));
+    }
+
+    private MockResponse listRepos(HttpUrl url, Set<String> access) throws JSONException {
+        List<String> repos = new ArrayList<>(access);
+        Collections.sort(repos);
+        String pageParam = url.queryParameter("page");
+        int page = pageParam != null ? Integer.parseInt(pageParam) : 1;
+        int from = (page - 1) * pageSize;
+        int to = Math.min(from + pageSize, repos.size());
+
+        JSONArray array = new JSONArray();
+        for (int i = from; i < to; i++) {
+            array.put(new JSONObject().put("full_name", repos.get(i)));
+        }
+        MockResponse response = new MockResponse().setResponseCode(200).setBody(array.toString());
+        if (to < repos.size()) {
+            HttpUrl next = url.newBuilder().setQueryParameter("page", String.valueOf(page + 1)).build();
+            response.setHeader("Link", "<" + next + ">; rel=\"next\"");
+        }
+        return response;
+    }
+
+    /**
+     * Answers the GraphQL dashboard query: a page of the viewer's repositories, each with its
+     * default branch and the check suite of the latest run on the branch's head commit.
+     * The cursor is the index of the page's first repository.
+     */
+    private MockResponse dashboardPage(JSONObject body, Set<String> access) throws JSONException {
+        List<String> repos = new ArrayList<>(access);
+        Collections.sort(repos);
+        JSONObject variables = body.optJSONObject("variables");
+        int from = variables != null && !variables.isNull("cursor") ? Integer.parseInt(variables.getString("cursor")) : 0;
+        int to = Math.min(from + pageSize, repos.size());
+        long now = now();
+
+        JSONArray nodes = new JSONArray();
+        for (int i = from; i < to; i++) {
+            String repo = repos.get(i);
+            JSONArray suites = new JSONArray();
+            List<Run> runs = runsByRepo.get(repo);
+            if (runs != null) {
+                for (int r = runs.size() - 1; r >= 0; r--) {
+                    if (!runs.get(r).headSha.equals(headSha(repo))) continue;
+                    JSONObject run = runJson(runs.get(r), now);
+                    suites.put(new JSONObject()
+                            .put("status", run.getString("status").toUpperCase(Locale.US))
+                            .put("conclusion", run.isNull("conclusion") ? JSONObject.NULL
+                                    : run.getString("conclusion").toUpperCase(Locale.US))
+                            .put("createdAt", run.get("created_at"))
+                            .put("updatedAt", run.get("updated_at"))
+                            .put("workflowRun", new JSONObject()
+                                    .put("databaseId", run.get("id"))
+                                    .put("runNumber", run.get("run_number"))
+                                    .put("url", run.get("html_url"))
+                                    .put("event", run.get("event"))
+                                    .put("workflow", new JSONObject().put("name", run.get("name")))));
+                    break;
+                }
+            }
+            nodes.put(new JSONObject()
+                    .put("nameWithOwner", repo)
+                    .put("defaultBranchRef", new JSONObject()
+                            .put("name", "main")
+                            .put("target", new JSONObject()
+                                    .put("oid", headSha(repo))
+                                    .put("checkSuites", new JSONObject().put("nodes", suites)))));
+        }
+        JSONObject pageInfo = new JSONObject()
+                .put("hasNextPage", to < repos.size())
+                .put("endCursor", to < repos.size() ? String.valueOf(to) : JSONObject.NULL);
+        return json(200, new JSONObject().put("data", new JSONObject().put("viewer", new JSONObject()
+                .put("repositories", new JSONObject().put("pageInfo", pageInfo).put("nodes", nodes)))));
+    }
+
+    private MockResponse getContents(String repo) throws JSONException {
+        String[] file = workflowFiles.get(repo);
+        if (file == null) return json(404, new JSONObject().put("message", "Not Found"));
+        // Like GitHub: base64 wrapped at 60 columns
+        String encoded = ByteString.encodeUtf8(file[1]).base64();
+        StringBuilder wrapped = new StringBuilder();
+        for (int i = 0; i < encoded.length(); i += 60) {
+            wrapped.append(encoded, i, Math.min(i + 60, encoded.length())).append('\n');
+        }
+        return json(200, new JSONObject().put("sha", file[0]).put("path", WORKFLOW_PATH)
+                .put("encoding", "base64").put("content", wrapped.toString()));
+    }
+
+    private MockResponse putContents(String repo, RecordedRequest request) throws JSONException {
+        JSONObject body = new JSONObject(request.getBody().readUtf8());
+        String[] existing = workflowFiles.get(repo);
+        String sha = body.optString("sha", null);
+        if (existing != null && !existing[0].equals(sha)) {
+            return json(409, new JSONObject().put("message", "sha does not match"));
+        }
+        ByteString decoded = ByteString.decodeBase64(body.getString("content"));
+        String newSha = newSha();
+        workflowFiles.put(repo, new String[] {newSha, decoded.utf8()});
+        headShas.put(repo, newSha()); // the contents API commits to main
+        return json(existing == null ? 201 : 200,
+                new JSONObject().put("content", new JSONObject().put("sha", newSha).put("path", WORKFLOW_PATH)));
+    }
+
+    private MockResponse getCommit(String repo, String ref, RecordedRequest request) throws JSONException {
+        if (!"main".equals(ref)) {
+            return json(422, new JSONObject().put("message", "No commit found for SHA: " + ref));
+        }
+        String sha = headSha(repo);
+        if ("application/vnd.github.sha".equals(request.getHeader("Accept"))) {
+            return conditional(request, sha, "text/plain");
+        }
+        return conditional(request, new JSONObject().put("sha", sha).toString(), "application/json");
+    }
+
+    private MockResponse dispatchRun(String repo, JSONObject body) {
+        List<Run> runs = runsByRepo.get(repo);
+        if (runs == null) {
+            runs = new ArrayList<>();
+            runsByRepo.put(repo, runs);
+        }
+        runs.add(new Run(nextRunId.getAndIncrement(), runs.size() + 1, repo, now(), headSha(repo),
+                displayTitle(repo, body.optJSONObject("client_payload"))));
+        return new MockResponse().setResponseCode(204);
+    }
+
+    /**
+     * The workflow's run-name with the client_payload expressions filled in, as Actions does;
+     * the event type when the workflow has no run-name.
+     */
+    private String displayTitle(String repo, JSONObject payload) {
+        String content = workflowContent(repo);
+        if (content != null) {
+            for (String line : content.split("\n")) {
+                if (!line.startsWith("run-name:")) continue;
+                String title = line.substring("run-name:".length()).trim();
+                for (Iterator<String> keys = payload != null ? payload.keys() : Collections.<String>emptyIterator(); keys.hasNext(); ) {
+                    String key = keys.next();
+                    title = title.replace("${{ github.event.client_payload." + key + " }}", payload.optString(key));
+                }
+                return title.replaceAll("\\$\\{\\{[^}]*}}", "");
+            }
+        }
+        return "run_android_build";
+    }
+
+    private MockResponse listRuns(String repo, HttpUrl url) throws JSONException {
+        String event = url.queryParameter("event");
+        String perPageParam = url.queryParameter("per_page");
+        int perPage = perPageParam != null ? Integer.parseInt(perPageParam) : 30;
+        List<Run> runs = runsByRepo.get(repo);
+        long now = now();
+
+        JSONArray array = new JSONArray();
+        if (runs != null && (event == null || "repository_dispatch".equals(event))) {
+            for (int i = runs.size() - 1; i >= 0 && array.length() < perPage; i--) {
+                array.put(runJson(runs.get(i), now)); // newest first
+            }
+        }
+        return json(200, new JSONObject().put("total_count", runs == null ? 0 : runs.size()).put("workflow_runs", array));
+    }
+
+    private MockResponse cancelRun(Run run) throws JSONException {
+        long now = now();
+        if (run.cancelledConclusion != null || now >= run.createdAt + queuedMillis + runningMillis) {
+            return json(409, new JSONObject().put("message", "Cannot cancel a workflow run that is completed."));
+        }
+        run.cancelledConclusion = "cancelled";
+        run.cancelledAt = now;
+        return json(202, new JSONObject());
+    }
+
+    private Run findRun(String repo, String id) {
+        List<Run> runs = runsByRepo.get(repo);
+        if (runs == null) return null;
+        for (Run run : runs) {
+            if (String.valueOf(run.id).equals(id)) return run;
+        }
+        return null;
+    }
+
+    private JSONObject runJson(Run run, long now) throws JSONException {
+        String status;
+        Object conclusion = JSONObject.NULL;
+        long updatedAt;
+        if (run.cancelledConclusion != null) {
+            status = "completed";
+            conclusion = run.cancelledConclusion;
+            updatedAt = run.cancelledAt;
+        } else if (now < run.createdAt + queuedMillis) {
+            status = "queued";
+            updatedAt = run.createdAt;
+        } else if (now < run.createdAt + queuedMillis + runningMillis) {
+            status = "in_progress";
+            updatedAt = run.createdAt + queuedMillis;
+        } else {
+            status = "completed";
+            conclusion = runConclusion;
+            updatedAt = run.createdAt + queuedMillis + runningMillis;
+        }
+        return new JSONObject()
+                .put("id", run.id)
+                .put("run_number", run.number)
+                .put("name", "Android CI with APK Builder Pro")
+                .put("display_title", run.displayTitle)
+                .put("event", "repository_dispatch")
+                .put("head_branch", "main")
+                .put("head_sha", run.headSha)
+                .put("status", status)
+                .put("conclusion", conclusion)
+                .put("html_url", "https://github.com/" + run.repo + "/actions/runs/" + run.id)
+                .put("created_at", iso(run.createdAt))
+                .put("updated_at", iso(updatedAt));
+    }
+
+    /**
+     * The run's single job, its steps laid out back to back over the running phase.
+     */
+    private JSONObject jobsJson(Run run, long now) throws JSONException {
+        long started = run.createdAt + queuedMillis;
+        long end = run.cancelledConclusion != null ? Math.min(run.cancelledAt, started + runningMillis) : started + runningMillis;
+        JSONArray steps = new JSONArray();
+        long stepStart = started;
+        for (int i = 0; i < stepNames.length; i++) {
+            long stepEnd = i == stepNames.length - 1 ? started + runningMillis : stepStart + Math.round(runningMillis * stepShares[i]);
+            JSONObject step = new JSONObject().put("name", stepNames[i]).put("number", i + 1);
+            if (now < stepStart || stepStart >= end) {
+                step.put("status", "queued").put("conclusion", JSONObject.NULL)
+                        .put("started_at", JSONObject.NULL).put("completed_at", JSONObject.NULL);
+            } else if (now < stepEnd && stepEnd <= end) {
+                step.put("status", "in_progress").put("conclusion", JSONObject.NULL)
+                        .put("started_at", iso(stepStart)).put("completed_at", JSONObject.NULL);
+            } else {
+                boolean cut = stepEnd > end;
+                step.put("status", "completed").put("conclusion", cut ? run.cancelledConclusion : "success")
+                        .put("started_at", iso(stepStart)).put("completed_at", iso(Math.min(stepEnd, end)));
+            }
+            steps.put(step);
+            stepStart = stepEnd;
+        }
+        JSONObject job = runJson(run, now);
+        return new JSONObject().put("total_count", 1).put("jobs", new JSONArray().put(new JSONObject()
+                .put("id", run.id * 10)
+                .put("run_id", run.id)
+                .put("name", "build")
+                .put("status", job.get("status"))
+                .put("conclusion", job.get("conclusion"))
+                .put("steps", steps)));
+    }
+
+    /**
+     * Answers 304 when the client already has this representation (If-None-Match).
+     */
+    private static MockResponse conditional(RecordedRequest request, String body, String contentType) {
+        String etag = "\"" + ByteString.encodeUtf8(body).md5().hex() + "\"";
+        if (etag.equals(request.getHeader("If-None-Match"))) {
+            return new MockResponse().setResponseCode(304).setHeader("ETag", etag);
+        }
+        return new MockResponse().setResponseCode(200)
+                .setHeader("Content-Type", contentType)
+                .setHeader("ETag", etag)
+                .setBody(body);
+    }
+
+    private String newSha() {
+        return String.format("%040x", nextSha.getAndIncrement());
+    }
+
+    private static MockResponse withRateHeaders(MockResponse response, int remaining, long resetSeconds) {
+        return response
+                .setHeader("X-RateLimit-Limit", "5000")
+                .setHeader("X-RateLimit-Remaining", String.valueOf(remaining))
+                .setHeader("X-RateLimit-Reset", String.valueOf(resetSeconds));
+    }
+
+    private static MockResponse json(int code, JSONObject body) {
+        return new MockResponse().setResponseCode(code)
+                .setHeader("Content-Type", "application/json")
+                .setBody(body.toString());
+    }
+
+    private long now() {
+        return System.currentTimeMillis() + clockOffsetMillis;
+    }
+
+    private static String iso(long millis) {
+        return Instant.ofEpochMilli(millis).truncatedTo(ChronoUnit.SECONDS).toString();
+    }
+
+    /**
+     * Route template for stats, e.g. "GET /repos/{owner}/{repo}/actions/runs/{id}".
+     */
+    static String route(String method, List<String> segments) {
+        StringBuilder sb = new StringBuilder(method).append(' ');
+        for (int i = 0; i < segments.size(); i++) {
+            String segment = segments.get(i);
+            sb.append('/');
+            if ("repos".equals(segments.get(0)) && (i == 1 || i == 2)) {
+                sb.append(i == 1 ? "{owner}" : "{repo}");
+            } else if ("contents".equals(segment) && i == 3) {
+                sb.append("contents/{path}");
+                break;
+            } else if (i == 4 && "commits".equals(segments.get(3))) {
+                sb.append("{ref}");
+            } else if (i == 5 && "runs".equals(segments.get(4))) {
+                sb.append("{id}");
+            } else {
+                sb.append(segment);
+            }
+        }
+        return sb.toString();
+    }
+
+    static int parseStatus(String statusLine) {
+        // "HTTP/1.1 404 Client Error"
+        String[] parts = statusLine.split(" ");
+        return parts.length > 1 ? Integer.parseInt(parts[1]) : 200;
+    }
+}
@@ -0,0 +1,56 @@
+package com.apkbuilder.pro.simulator;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server-side request counters, keyed by route ("GET /repos/{owner}/{repo}") and by status code.
+ */
+public class RequestStats {
+
+    private final ConcurrentHashMap<String, AtomicInteger> byRoute = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, AtomicInteger> byStatus = new ConcurrentHashMap<>();
+    private final AtomicInteger total = new AtomicInteger();
+
+    void record(String route, int status) {
+        total.incrementAndGet();
+        increment(byRoute, route);
+        increment(byStatus, status);
+    }
+
+    public int total() {
+        return total.get();
+    }
+
+    public int count(String route) {
+        AtomicInteger count = byRoute.get(route);
+        return count == null ? 0 : count.get();
+    }
+
+    public int countStatus(int status) {
+        AtomicInteger count = byStatus.get(status);
+        return count == null ? 0 : count.get();
+    }
+
+    public Map<String, Integer> byRoute() {
+        Map<String, Integer> copy = new TreeMap<>();
+        for (Map.Entry<String, AtomicInteger> entry : byRoute.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().get());
+        }
+        return copy;
+    }
+
+    public Map<Integer, Integer> byStatus() {
+        Map<Integer, Integer> copy = new TreeMap<>();
+        for (Map.Entry<Integer, AtomicInteger> entry : byStatus.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().get());
+        }
+        return copy;
+    }
+
+    private static <K> void increment(ConcurrentHashMap<K, AtomicInteger> map, K key) {
+        map.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+    }
+}
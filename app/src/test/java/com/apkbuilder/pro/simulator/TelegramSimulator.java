@@ -0,0 +1,221 @@
+package com.apkbuilder.pro.simulator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * In-process stand-in for the Telegram Bot API methods the app calls:
+ * getMe, sendMessage and editMessageText. Keeps the latest text of every message
+ * so tests can check what a chat would show. Rate limits use Telegram's own shape:
+ * 429 with a Retry-After header and {@code parameters.retry_after} in the body, either
+ * injected through {@link Faults} or enforced like Telegram's flood control
+ * ({@link #floodLimits}).
+ */
+public class TelegramSimulator extends Dispatcher implements Closeable {
+
+    private final MockWebServer server = new MockWebServer();
+    private final Faults faults;
+    private final RequestStats stats = new RequestStats();
+
+    // Guarded by this
+    private final Set<String> botTokens = new HashSet<>();
+    private final Map<String, Integer> nextMessageId = new HashMap<>();
+    private final Map<String, String> messages = new HashMap<>(); // "chat:id" -> text
+    private int edits;
+    // Flood control: 0 disables. Timestamps of accepted sends/edits, per chat and for the bot
+    private int chatPerSecond;
+    private int botPerSecond;
+    private final Map<String, Deque<Long>> chatCalls = new HashMap<>();
+    private final Deque<Long> botCalls = new ArrayDeque<>();
+    private int floodRejections;
+
+    public TelegramSimulator() {
+        this(new Faults(7));
+    }
+
+    public TelegramSimulator(Faults faults) {
+        this.faults = faults;
+        server.setDispatcher(this);
+    }
+
+    public TelegramSimulator start() throws IOException {
+        server.start();
+        return this;
+    }
+
+    public void close() throws IOException {
+        server.shutdown();
+    }
+
+    /**
+     * API root to hand to {@code new TelegramService(...)}, without a trailing slash.
+     */
+    public String baseUrl() {
+        String url = server.url("/").toString();
+        return url.substring(0, url.length() - 1);
+    }
+
+    public Faults faults() { return faults; }
+    public RequestStats stats() { return stats; }
+
+    public synchronized TelegramSimulator addBot(String botToken) {
+        botTokens.add(botToken);
+        return this;
+    }
+
+    public synchronized String message(String chatId, String messageId) {
+        return messages.get(chatId + ":" + messageId);
+    }
+
+    public synchronized int messageCount() {
+        return messages.size();
+    }
+
+    public synchronized int editCount() {
+        return edits;
+    }
+
+    /**
+     * Rejects sends and edits beyond {@code chatPerSecond} in one chat or {@code botPerSecond}
+     * overall in any one-second window, with 429 and retry_after like Telegram.
+     */
+    public synchronized TelegramSimulator floodLimits(int chatPerSecond, int botPerSecond) {
+        this.chatPerSecond = chatPerSecond;
+        this.botPerSecond = botPerSecond;
+        return this;
+    }
+
+    public synchronized int floodRejections() {
+        return floodRejections;
+    }
+
+    /**
+     * Messages that exist in {@code chatId}.
+     */
+    public synchronized int messageCount(String chatId) {
+        Integer last = nextMessageId.get(chatId);
+        return last == null ? 0 : last;
+    }
+
+    /**
+     * Text of the newest message in {@code chatId}, or null if there is none.
+     */
+    public synchronized String latestMessage(String chatId) {
+        Integer last = nextMessageId.get(chatId);
+        return last == null ? null : messages.get(chatId + ":" + last);
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+        List<String> segments = request.getRequestUrl().pathSegments();
+        String method = segments.size() == 2 ? segments.get(1) : "";
+        String route = request.getMethod() + " /bot{token}/" + method;
+
+        MockResponse response = faults.pick();
+        if (response != null && response.getStatus().contains(" 429")) {
+            // Telegram repeats the delay in the body
+            response.setBody("{\"ok\":false,\"error_code\":429,\"description\":\"Too Many Requests\"," +
+                    "\"parameters\":{\"retry_after\":" + response.getHeaders().get("Retry-After") + "}}");
+        }
+        if (response == null) {
+            try {
+                response = handle(request, segments, method);
+            } catch (JSONException e) {
+                response = error(400, "Bad Request: " + e.getMessage());
+            }
+        }
+        stats.record(route, GitHubSimulator.parseStatus(response.getStatus()));
+        return faults.delay(response);
+    }
+
+    private synchronized MockResponse handle(RecordedRequest request, List<String> segments, String method) throws JSONException {
+        if (segments.isEmpty() || !segments.get(0).startsWith("bot") || !botTokens.contains(segments.get(0).substring(3))) {
+            return error(401, "Unauthorized");
+        }
+
+        if ("sendMessage".equals(method) || "editMessageText".equals(method)) {
+            String chatId = new JSONObject(request.getBody().clone().readUtf8()).getString("chat_id");
+            if (flooded(chatId)) {
+                floodRejections++;
+                return new MockResponse().setResponseCode(429)
+                        .setHeader("Content-Type", "application/json")
+                        .setHeader("Retry-After", "1")
+                        .setBody("{\"ok\":false,\"error_code\":429,\"description\":\"Too Many Requests: retry after 1\"," +
+                                "\"parameters\":{\"retry_after\":1}}");
+            }
+        }
+
+        switch (method) {
+            case "getMe":
+                return ok(new JSONObject().put("id", 1).put("is_bot", true).put("username", "apk_builder_sim_bot"));
+            case "sendMessage": {
+                JSONObject body = new JSONObject(request.getBody().readUtf8());
+                String chatId = body.getString("chat_id");
+                Integer last = nextMessageId.get(chatId);
+                int id = last == null ? 1 : last + 1;
+                nextMessageId.put(chatId, id);
+                messages.put(chatId + ":" + id, body.getString("text"));
+                return ok(new JSONObject().put("message_id", id).put("chat", new JSONObject().put("id", chatId)));
+            }
+            case "editMessageText": {
+                JSONObject body = new JSONObject(request.getBody().readUtf8());
+                String key = body.getString("chat_id") + ":" + body.getString("message_id");
+                if (!messages.containsKey(key)) {
+                    return error(400, "Bad Request: message to edit not found");
+                }
+                String text = body.getString("text");
+                if (text.equals(messages.get(key))) {
+                    return error(400, "Bad Request: message is not modified");
+                }
+                messages.put(key, text);
+                edits++;
+                return ok(new JSONObject().put("message_id", Integer.parseInt(body.getString("message_id"))));
+            }
+            default:
+                return error(404, "Not Found");
+        }
+    }
+
+    // Records the call if it is within the limits
+    private boolean flooded(String chatId) {
+        long now = System.currentTimeMillis();
+        Deque<Long> chat = chatCalls.get(chatId);
+        if (chat == null) {
+            chat = new ArrayDeque<>();
+            chatCalls.put(chatId, chat);
+        }
+        while (!chat.isEmpty() && now - chat.peekFirst() >= 1000) chat.removeFirst();
+        while (!botCalls.isEmpty() && now - botCalls.peekFirst() >= 1000) botCalls.removeFirst();
+        if ((chatPerSecond > 0 && chat.size() >= chatPerSecond) || (botPerSecond > 0 && botCalls.size() >= botPerSecond)) {
+            return true;
+        }
+        chat.addLast(now);
+        botCalls.addLast(now);
+        return false;
+    }
+
+    private static MockResponse ok(JSONObject result) throws JSONException {
+        return new MockResponse().setResponseCode(200)
+                .setHeader("Content-Type", "application/json")
+                .setBody(new JSONObject().put("ok", true).put("result", result).toString());
+    }
+
+    private static MockResponse error(int code, String description) {
+        return new MockResponse().setResponseCode(code)
+                .setHeader("Content-Type", "application/json")
+                .setBody("{\"ok\":false,\"error_code\":" + code + ",\"description\":\"" + description + "\"}");
+    }
+}
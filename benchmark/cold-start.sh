@@ -0,0 +1,49 @@
+#!/usr/bin/env bash
+# Cold-start time of the app on a connected device or emulator.
+#
+# Usage: benchmark/cold-start.sh [runs]   (default 20; set ANDROID_SERIAL to pick a device)
+#
+# Install a release build first (./gradlew :app:installRelease); debug builds start slower.
+# Each run force-stops the app and starts MainActivity with `am start -W`, recording
+# TotalTime (first frame) and the "Fully drawn" time the activity reports once its
+# services are warmed up. For the startup:* trace sections, capture a Perfetto/systrace
+# trace of one run with the app's process selected.
+set -euo pipefail
+
+RUNS=${1:-20}
+COMPONENT=com.apkbuilder.pro/.MainActivity
+
+# "+1s234ms" -> 1234
+to_millis() {
+    if [[ $1 =~ ^\+(([0-9]+)s)?([0-9]+)ms$ ]]; then
+        echo $(( ${BASH_REMATCH[2]:-0} * 1000 + 10#${BASH_REMATCH[3]} ))
+    fi
+}
+
+stats() {
+    sort -n | awk '{ v[NR] = $1; sum += $1 }
+        END {
+            if (NR == 0 || (NR == 1 && v[1] == "")) { print "n/a"; exit }
+            p90 = int((NR * 9 + 9) / 10); if (p90 > NR) p90 = NR
+            printf "min %d  median %d  p90 %d  mean %.0f ms (n=%d)\n", v[1], v[int((NR + 1) / 2)], v[p90], sum / NR, NR
+        }'
+}
+
+first_frame=()
+fully_drawn=()
+for ((i = 1; i <= RUNS; i++)); do
+    adb logcat -c
+    total=$(adb shell am start -W -S -n "$COMPONENT" | tr -d '\r' | awk -F': ' '/^TotalTime/ { print $2 }')
+    sleep 2 # let reportFullyDrawn land in the log
+    drawn=$(adb logcat -d -s ActivityTaskManager:I ActivityManager:I | tr -d '\r' |
+            sed -nE 's/.*Fully drawn com\.apkbuilder\.pro\/\.MainActivity: (\+[0-9sm]+).*/\1/p' | tail -n 1)
+    first_frame+=("$total")
+    if [[ -n "$drawn" ]]; then
+        fully_drawn+=("$(to_millis "$drawn")")
+    fi
+    echo "run $i: first frame ${total} ms, fully drawn ${drawn:-?}"
+done
+
+echo
+echo "First frame: $(printf '%s\n' "${first_frame[@]}" | stats)"
+echo "Fully drawn: $(printf '%s\n' "${fully_drawn[@]+"${fully_drawn[@]}"}" | stats)"
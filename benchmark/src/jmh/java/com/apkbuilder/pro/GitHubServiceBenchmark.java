@@ -0,0 +1,43 @@
+package com.apkbuilder.pro;
+
+import com.apkbuilder.pro.benchmark.Fixtures;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Response handling in {@link GitHubService#getRepositories}, without the network:
+ * one 100-repository page and its Link header.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GitHubServiceBenchmark {
+
+    private static final String LINK_HEADER =
+            "<https://api.github.com/user/repos?per_page=100&affiliation=owner,collaborator&page=2>; rel=\"next\", " +
+            "<https://api.github.com/user/repos?per_page=100&affiliation=owner,collaborator&page=3>; rel=\"last\"";
+
+    private String reposPageBody;
+
+    @Setup
+    public void setUp() throws Exception {
+        reposPageBody = Fixtures.load(Fixtures.USER_REPOS_PAGE);
+    }
+
+    @Benchmark
+    public List<String> parseRepositoryPage() throws Exception {
+        return GitHubService.parseRepositoryNames(reposPageBody);
+    }
+
+    @Benchmark
+    public String parseNextLink() {
+        return GitHubService.parseNextLink(LINK_HEADER);
+    }
+}
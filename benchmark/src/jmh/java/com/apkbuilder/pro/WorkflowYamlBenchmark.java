@@ -0,0 +1,31 @@
+package com.apkbuilder.pro;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Workflow file generation, run once per build before the file is compared and committed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class WorkflowYamlBenchmark {
+
+    // One chat, or several (one send step each)
+    @Param({"987654321", "987654321,-1001234567890,@builds"})
+    public String chatId;
+
+    // Non-final so the JIT cannot fold the whole concatenation into a constant
+    private String botToken = "1234567890:AAExampleBotTokenForBenchmarksOnly00";
+
+    @Benchmark
+    public String generate() {
+        return WorkflowYamlGenerator.generate(botToken, chatId);
+    }
+}
@@ -0,0 +1,34 @@
+package com.apkbuilder.pro.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Loads the response bodies under {@code src/jmh/resources/fixtures}. They follow the
+ * full GitHub REST schema, so parsing costs include the fields the app skips over.
+ */
+public final class Fixtures {
+
+    /** One page of GET /repos/{owner}/{repo}/actions/runs?per_page=100. */
+    public static final String ACTIONS_RUNS_PAGE = "actions-runs-page.json";
+    /** GET /repos/{owner}/{repo}/actions/runs/{id} for a run in progress. */
+    public static final String WORKFLOW_RUN = "workflow-run.json";
+    /** One page of GET /user/repos?per_page=100. */
+    public static final String USER_REPOS_PAGE = "user-repos-page.json";
+
+    private Fixtures() {}
+
+    public static String load(String name) throws IOException {
+        try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) throw new IOException("Missing fixture " + name);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toString("UTF-8");
+        }
+    }
+}
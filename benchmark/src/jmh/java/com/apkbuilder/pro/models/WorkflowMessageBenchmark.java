@@ -0,0 +1,61 @@
+package com.apkbuilder.pro.models;
+
+import com.apkbuilder.pro.benchmark.Fixtures;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Status text and date formatting, run for every dashboard row and Telegram update.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class WorkflowMessageBenchmark {
+
+    /** Run state to format: the messages differ per state. */
+    @Param({"queued", "in_progress", "completed"})
+    public String status;
+
+    private WorkflowResponse response;
+    private long epochMillis;
+
+    @Setup
+    public void setUp() throws Exception {
+        for (WorkflowResponse run : WorkflowResponse.listRuns(new JSONObject(Fixtures.load(Fixtures.ACTIONS_RUNS_PAGE)))) {
+            if (status.equals(run.getStatus())) {
+                response = run;
+                break;
+            }
+        }
+        if (response == null) throw new IllegalStateException("No " + status + " run in the fixture");
+        epochMillis = RunSnapshot.parseIsoMillis(response.getCreatedAt());
+    }
+
+    @Benchmark
+    public String formatStatusMessage() {
+        return response.formatStatusMessage();
+    }
+
+    @Benchmark
+    public String formatTelegramMessage() {
+        return response.formatTelegramMessage("example-dev/weather-app");
+    }
+
+    @Benchmark
+    public String formatIsoDate() {
+        return WorkflowResponse.formatDate(response.getCreatedAt());
+    }
+
+    @Benchmark
+    public String formatEpochDate() {
+        return RunSnapshot.formatDate(epochMillis);
+    }
+}
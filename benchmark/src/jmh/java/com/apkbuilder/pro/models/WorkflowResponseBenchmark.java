@@ -0,0 +1,51 @@
+package com.apkbuilder.pro.models;
+
+import com.apkbuilder.pro.benchmark.Fixtures;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Parsing of workflow run responses: what every status poll costs on the CPU.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class WorkflowResponseBenchmark {
+
+    private String runBody;
+    private String runsPageBody;
+    private JSONObject runJson;
+
+    @Setup
+    public void setUp() throws Exception {
+        runBody = Fixtures.load(Fixtures.WORKFLOW_RUN);
+        runsPageBody = Fixtures.load(Fixtures.ACTIONS_RUNS_PAGE);
+        runJson = new JSONObject(runBody);
+    }
+
+    /** Single-run poll: body to model, including the JSON tokenizer. */
+    @Benchmark
+    public WorkflowResponse parseRun() throws Exception {
+        return new WorkflowResponse(new JSONObject(runBody));
+    }
+
+    /** Model construction alone, from an already parsed run object. */
+    @Benchmark
+    public WorkflowResponse constructFromJson() throws Exception {
+        return new WorkflowResponse(runJson);
+    }
+
+    /** A full 100-run page, as findDispatchedRun reads it. */
+    @Benchmark
+    public List<WorkflowResponse> parseRunsPage() throws Exception {
+        return WorkflowResponse.listRuns(new JSONObject(runsPageBody));
+    }
+}